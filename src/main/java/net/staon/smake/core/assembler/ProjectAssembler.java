@@ -19,13 +19,20 @@
 package net.staon.smake.core.assembler;
 
 import net.staon.smake.core.exception.SMakeException;
+import net.staon.smake.core.execution.ResourceIDTable;
 import net.staon.smake.core.execution.ResourceMap;
+import net.staon.smake.core.execution.ResourceMapConcurrent;
+import net.staon.smake.core.execution.ResourceMapSnapshot;
 import net.staon.smake.core.model.dsl.ModelReader;
 import net.staon.smake.core.resolver.ResolverContext;
 import net.staon.smake.core.resolver.ResolverLayer;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 /**
  * Project assembler
@@ -38,6 +45,7 @@ import java.io.StringReader;
 public class ProjectAssembler {
   private final ResolverLayer resolver_stack;
   private final ModelReader reader;
+  private final ForkJoinPool pool;
   
   /**
    * Ctor
@@ -47,6 +55,19 @@ public class ProjectAssembler {
   public ProjectAssembler(ResolverLayer resolver_stack_) {
     resolver_stack = resolver_stack_;
     reader = new ModelReader();
+    pool = null;
+  }
+  
+  /**
+   * Ctor - the artefacts are resolved in parallel
+   *
+   * @param resolver_stack_ Configured resolver stack
+   * @param pool_ Pool resolving the artefacts
+   */
+  public ProjectAssembler(ResolverLayer resolver_stack_, ForkJoinPool pool_) {
+    resolver_stack = resolver_stack_;
+    reader = new ModelReader();
+    pool = pool_;
   }
   
   /**
@@ -62,6 +83,14 @@ public class ProjectAssembler {
     var project_model_ = reader.readProject(smakefile_, filename_);
     
     /* -- resolve the project */
+    if(pool != null) {
+      var resource_map_ = new ResourceMapConcurrent();
+      var resolver_context_ = new ResolverContext(
+          resolver_stack, resource_map_, pool);
+      resolver_context_.resolveProject(project_model_);
+      return new SMakeProject(resource_map_.createResourceMap());
+    }
+    
     var resource_map_ = new ResourceMap();
     var resolver_context_ = new ResolverContext(resolver_stack, resource_map_);
     resolver_context_.resolveProject(project_model_);
@@ -80,4 +109,70 @@ public class ProjectAssembler {
       throws SMakeException {
     return assemblyProject(new StringReader(smakefile_), filename_);
   }
+  
+  /**
+   * Assembly an smake project using a snapshot of the resource map
+   *
+   * Failures of the snapshot file are reported as warnings by the platform
+   * logger.
+   *
+   * @see #assemblyProject(String, String, String, Path, Consumer)
+   */
+  public SMakeProject assemblyProject(
+      String smakefile_, String filename_, String config_, Path snapshot_)
+      throws SMakeException {
+    return assemblyProject(
+        smakefile_, filename_, config_, snapshot_,
+        (ex_) -> System.getLogger(ProjectAssembler.class.getName()).log(
+            System.Logger.Level.WARNING,
+            "snapshot " + snapshot_ + " cannot be used", ex_));
+  }
+  
+  /**
+   * Assembly an smake project using a snapshot of the resource map
+   *
+   * If the snapshot file exists and it has been created from the same
+   * SMakefile and configuration, the resource map is loaded from the snapshot
+   * and neither the model reader nor the resolvers are run. Otherwise,
+   * the project is assembled from scratch and the snapshot is rewritten.
+   *
+   * @param smakefile_ Content of the project's SMakefile
+   * @param filename_ Name of the file shown in error messages
+   * @param config_ Description of the toolchain configuration. Any change
+   *     of the configuration must change this string.
+   * @param snapshot_ Path of the snapshot file
+   * @param errors_ Reporter of I/O errors of the snapshot file. The errors
+   *     are not fatal: the project is assembled from scratch if the snapshot
+   *     cannot be read, and it's just not stored if it cannot be written.
+   * @return The assembled project
+   */
+  public SMakeProject assemblyProject(
+      String smakefile_, String filename_, String config_, Path snapshot_,
+      Consumer<IOException> errors_)
+      throws SMakeException {
+    var fingerprint_ = ResourceMapSnapshot.computeFingerprint(
+        filename_, smakefile_, config_);
+    try {
+      var resource_map_ = ResourceMapSnapshot.read(
+          snapshot_, fingerprint_, new ResourceIDTable());
+      if(resource_map_ != null)
+        return new SMakeProject(resource_map_);
+    }
+    catch(IOException ex_) {
+      /* -- the snapshot is just a cache, assembly the project */
+      errors_.accept(ex_);
+    }
+    
+    var project_ = assemblyProject(smakefile_, filename_);
+    try {
+      ResourceMapSnapshot.write(
+          project_.getResourceMap(), fingerprint_, snapshot_);
+    }
+    catch(IOException ex_) {
+      /* -- the snapshot is just a cache, the next run assemblies
+       *    the project again */
+      errors_.accept(ex_);
+    }
+    return project_;
+  }
 }
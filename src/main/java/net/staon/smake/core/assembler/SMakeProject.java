@@ -34,4 +34,11 @@ public class SMakeProject {
   public SMakeProject(ResourceMap resource_map_) {
     resource_map = resource_map_;
   }
+  
+  /**
+   * Get project's resource map
+   */
+  public ResourceMap getResourceMap() {
+    return resource_map;
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+
+import java.util.Collection;
+
+/**
+ * Dependency graph rejecting dependency cycles
+ *
+ * The graph keeps the generic contract of the {@link Graph} interface.
+ * A dependency which would close a cycle is rejected by
+ * the {@link UncheckedDependencyCycleException} and the graph is not
+ * modified. Callers which handle the cycles may check the dependencies
+ * in advance.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public interface AcyclicGraph<N> extends Graph<N> {
+  /**
+   * Check whether a dependency may be added without closing a cycle
+   *
+   * The graph is not modified.
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @exception DependencyCycleException If the dependency would close
+   *     a cycle. The exception contains the cycle.
+   */
+  void checkDependency(ID from_, ID to_) throws DependencyCycleException;
+  
+  /**
+   * Check whether several dependencies of one node may be added
+   *
+   * All the dependencies share the source node. A simple cycle leaves
+   * the source node just once, so if the whole batch closes a cycle, one
+   * of the dependencies closes it alone. Hence, checking the dependencies
+   * one by one against the current graph is exact.
+   *
+   * @param graph_ The graph. Just the acyclic graphs are checked, the plain
+   *     ones accept any dependency.
+   * @param from_ ID of the source node
+   * @param to_ IDs of the target nodes
+   * @exception DependencyCycleException If a dependency would close
+   *     a cycle. The graph is not modified.
+   */
+  static void checkDependencies(Graph<?> graph_, ID from_, Collection<ID> to_)
+      throws DependencyCycleException {
+    if(graph_ instanceof AcyclicGraph<?> acyclic_) {
+      for(var target_ : to_)
+        acyclic_.checkDependency(from_, target_);
+    }
+  }
+  
+  /**
+   * Add a dependency into a graph, report a rejected cycle by the checked
+   * exception
+   *
+   * @param graph_ The graph. It may be any graph, the plain ones never
+   *     reject a dependency.
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @return True if the dependency has been newly added
+   * @exception DependencyCycleException If the graph rejects the dependency
+   *     because of a cycle. The graph is not modified in this case.
+   */
+  static boolean addDependencyChecked(Graph<?> graph_, ID from_, ID to_)
+      throws DependencyCycleException {
+    try {
+      return graph_.addDependency(from_, to_);
+    }
+    catch(UncheckedDependencyCycleException exc_) {
+      throw exc_.getCause();
+    }
+  }
+}
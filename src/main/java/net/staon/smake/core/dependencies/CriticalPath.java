@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computation of remaining critical paths
+ *
+ * For each node of a graph this class computes weighted length of
+ * the longest path from the node to the roots of the graph (nodes without
+ * predecessors) including the node itself. The value is a lower bound of
+ * time needed to finish the build after the node is started, hence nodes
+ * with the longest remaining path should be processed first.
+ */
+public final class CriticalPath {
+  private static class State {
+    long weight;
+    long longest_pred;
+    int remaining_preds;
+  }
+
+  private CriticalPath() {
+
+  }
+
+  /**
+   * Compute remaining path of all graph nodes
+   *
+   * Nodes lying in a dependency cycle are not computed exactly - their
+   * remaining path is just estimated by already known predecessors.
+   *
+   * @param graph_ The graph
+   * @param weight_ Weights of graph nodes
+   * @return Map of remaining paths of all nodes
+   */
+  public static <N> Map<ID, Long> computeRemainingPaths(
+      Graph<N> graph_,
+      NodeWeight<N> weight_) {
+    var states_ = new HashMap<ID, State>();
+    var queue_ = new ArrayDeque<ID>();
+
+    /* -- count predecessors, roots are the starting points */
+    graph_.forEachNode((id_, node_) -> {
+      var state_ = new State();
+      state_.weight = weight_.getWeight(id_, node_.getData());
+      assert state_.weight >= 0;
+      graph_.forEachPredecessor(id_, (pred_id_, pred_) -> {
+        ++state_.remaining_preds;
+      });
+      states_.put(id_, state_);
+      if(state_.remaining_preds == 0)
+        queue_.add(id_);
+    });
+
+    /* -- go from roots to leaves */
+    var paths_ = new HashMap<ID, Long>();
+    while(!queue_.isEmpty()) {
+      var id_ = queue_.poll();
+      var state_ = states_.get(id_);
+      var path_ = state_.weight + state_.longest_pred;
+      paths_.put(id_, path_);
+
+      graph_.forEachSuccessor(id_, (succ_id_, succ_) -> {
+        var succ_state_ = states_.get(succ_id_);
+        succ_state_.longest_pred = Math.max(succ_state_.longest_pred, path_);
+        if(--succ_state_.remaining_preds == 0)
+          queue_.add(succ_id_);
+      });
+    }
+
+    /* -- nodes in cycles */
+    if(paths_.size() != states_.size()) {
+      states_.forEach((id_, state_) -> {
+        paths_.putIfAbsent(id_, state_.weight + state_.longest_pred);
+      });
+    }
+
+    return paths_;
+  }
+}
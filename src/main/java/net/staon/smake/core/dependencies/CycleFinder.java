@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Searching of a dependency cycle
+ *
+ * This helper is used to describe a cycle which has been detected by
+ * a topological order engine. It's not fast, it should be used just
+ * for error reporting.
+ */
+final class CycleFinder {
+  private CycleFinder() {
+
+  }
+
+  /**
+   * Find a dependency cycle
+   *
+   * @param graph_ The graph
+   * @param filter_ Just nodes accepted by the filter are searched
+   * @return The cycle (first node is the same as the last one) or an empty
+   *     list if there is no cycle.
+   */
+  static List<ID> findCycle(Graph<?> graph_, Predicate<ID> filter_) {
+    /* -- on_stack: grey nodes, finished: black nodes */
+    var on_stack_ = new HashMap<ID, ID>();   /* -- node -> DFS parent */
+    var finished_ = new HashSet<ID>();
+    var starts_ = new ArrayList<ID>();
+    graph_.forEachNode((id_, node_) -> {
+      if(filter_.test(id_))
+        starts_.add(id_);
+    });
+
+    for(var start_ : starts_) {
+      if(finished_.contains(start_))
+        continue;
+
+      var stack_ = new ArrayDeque<Iterator<ID>>();
+      var path_ = new ArrayDeque<ID>();
+      on_stack_.put(start_, null);
+      path_.push(start_);
+      stack_.push(collectSuccessors(graph_, start_, filter_));
+      while(!stack_.isEmpty()) {
+        var iter_ = stack_.peek();
+        if(!iter_.hasNext()) {
+          var done_ = path_.pop();
+          on_stack_.remove(done_);
+          finished_.add(done_);
+          stack_.pop();
+          continue;
+        }
+
+        var next_ = iter_.next();
+        if(on_stack_.containsKey(next_)) {
+          /* -- back edge: the cycle is the part of the path */
+          var cycle_ = new ArrayList<ID>();
+          cycle_.add(next_);
+          var node_ = path_.peek();
+          var backward_ = new ArrayList<ID>();
+          while(!next_.equals(node_)) {
+            backward_.add(node_);
+            node_ = on_stack_.get(node_);
+          }
+          Collections.reverse(backward_);
+          cycle_.addAll(backward_);
+          cycle_.add(next_);
+          return cycle_;
+        }
+        if(!finished_.contains(next_)) {
+          on_stack_.put(next_, path_.peek());
+          path_.push(next_);
+          stack_.push(collectSuccessors(graph_, next_, filter_));
+        }
+      }
+    }
+
+    return List.of();
+  }
+
+  private static Iterator<ID> collectSuccessors(
+      Graph<?> graph_, ID id_, Predicate<ID> filter_) {
+    var succs_ = new ArrayList<ID>();
+    graph_.forEachSuccessor(id_, (succ_id_, succ_) -> {
+      if(filter_.test(succ_id_))
+        succs_.add(succ_id_);
+    });
+    return succs_.iterator();
+  }
+}
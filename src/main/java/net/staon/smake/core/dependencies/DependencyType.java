@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of SMake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OTest2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+/**
+ * Kind of a dependency (graph edge)
+ *
+ * Both kinds order processing of the nodes: the target node is processed
+ * prior the source node. They differ in propagation of changes.
+ */
+public enum DependencyType {
+  /**
+   * The source node consumes content of the target node. A change
+   * of the target node invalidates the source node.
+   */
+  DATA,
+  
+  /**
+   * The target node must be just processed before the source node
+   * (e.g. a directory must exist before a file is generated into it).
+   * A change of the target node doesn't invalidate the source node.
+   */
+  ORDER_ONLY,
+}
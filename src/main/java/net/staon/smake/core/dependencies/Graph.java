@@ -70,9 +70,60 @@ public interface Graph<N> {
    * @param to_ ID of the target node
    * @return True if the dependency has been newly added. False if it
    *     has already existed.
+   * @see AcyclicGraph
    */
   boolean addDependency(ID from_, ID to_);
   
+  /**
+   * Add new dependency of a specified type
+   *
+   * If the dependency already exists, its type may be just upgraded from
+   * the order-only to the data one. A data dependency is never downgraded.
+   *
+   * The default implementation keeps all dependencies as data ones. It's
+   * safe for graphs which don't distinguish the types - the order is
+   * the same, just more nodes are invalidated.
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @param type_ Type of the dependency
+   * @return True if the dependency has been newly added. False if it
+   *     has already existed (even if its type has been upgraded).
+   */
+  default boolean addDependency(ID from_, ID to_, DependencyType type_) {
+    return addDependency(from_, to_);
+  }
+  
+  /**
+   * Get type of an existing dependency
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node. The dependency must exist!
+   * @return The type. The default implementation returns the data type.
+   */
+  default DependencyType getDependencyType(ID from_, ID to_) {
+    return DependencyType.DATA;
+  }
+  
+  /**
+   * Check whether a dependency exists
+   *
+   * The default implementation scans successors of the source node.
+   * Graphs with hashed or indexed adjacency override it.
+   *
+   * @param from_ ID of the source node. The node must exist!
+   * @param to_ ID of the target node
+   * @return True if the dependency exists
+   */
+  default boolean containsDependency(ID from_, ID to_) {
+    var exists_ = new boolean[] {false};
+    forEachSuccessor(from_, (id_, node_) -> {
+      if(id_.equals(to_))
+        exists_[0] = true;
+    });
+    return exists_[0];
+  }
+  
   /**
    * Get node
    *
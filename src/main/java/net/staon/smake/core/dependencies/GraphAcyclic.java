@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Dependency graph rejecting dependency cycles
+ *
+ * This class wraps a graph and keeps a topological order of its nodes
+ * (dependencies first) up to date while new nodes and dependencies are
+ * added. The order is maintained incrementally by the Pearce-Kelly
+ * algorithm - just the nodes lying between the ends of a new dependency
+ * are reordered. Hence, a dependency which would create a cycle is
+ * rejected immediately and the cycle is reported by
+ * the {@link UncheckedDependencyCycleException}.
+ *
+ * All modifications must go through this object, the base graph must not
+ * be modified directly.
+ *
+ * Bulk loads (e.g. a stored graph) may skip the incremental checks:
+ * the dependencies are added by {@link #addDependencyUnchecked} and
+ * the whole graph is checked at once by {@link #validate()}, which is
+ * a single pass of the Kahn's algorithm.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class GraphAcyclic<N> implements AcyclicGraph<N> {
+  private static class Order {
+    public int value;
+
+    public Order(int value_) {
+      value = value_;
+    }
+  }
+
+  private final Graph<N> base_graph;
+  private final Map<ID, Order> orders;
+  private int next_order;
+  private boolean unchecked;
+
+  /**
+   * Ctor
+   *
+   * @param base_graph_ The wrapped graph. It may already contain nodes
+   *     and dependencies.
+   * @exception DependencyCycleException If the base graph already contains
+   *     a cycle.
+   */
+  public GraphAcyclic(Graph<N> base_graph_) throws DependencyCycleException {
+    base_graph = base_graph_;
+    orders = new HashMap<>();
+    next_order = 0;
+    unchecked = false;
+
+    computeInitialOrder();
+  }
+
+  private void computeInitialOrder() throws DependencyCycleException {
+    /* -- Kahn's algorithm, leaves get the lowest numbers */
+    var degrees_ = new HashMap<ID, Order>();
+    var queue_ = new ArrayDeque<ID>();
+    base_graph.forEachNode((id_, node_) -> {
+      degrees_.put(id_, new Order(node_.getOutDegree()));
+      if(node_.getOutDegree() == 0)
+        queue_.add(id_);
+    });
+
+    while(!queue_.isEmpty()) {
+      var id_ = queue_.poll();
+      orders.put(id_, new Order(next_order++));
+      base_graph.forEachPredecessor(id_, (pred_id_, pred_) -> {
+        if(--degrees_.get(pred_id_).value == 0)
+          queue_.add(pred_id_);
+      });
+    }
+
+    if(orders.size() != degrees_.size()) {
+      throw new DependencyCycleException(CycleFinder.findCycle(
+          base_graph, (id_) -> !orders.containsKey(id_)));
+    }
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return base_graph.containsNode(node_id_);
+  }
+
+  @Override
+  public void addNode(ID node_id_, N node_data_) {
+    base_graph.addNode(node_id_, node_data_);
+
+    /* -- a new node has no dependencies, it may be placed anywhere */
+    orders.put(node_id_, new Order(next_order++));
+  }
+
+  /**
+   * Add new dependency
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @return True if the dependency has been newly added.
+   * @exception UncheckedDependencyCycleException If the new dependency
+   *     would create a cycle. The graph is not modified in this case.
+   */
+  @Override
+  public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
+    assert !from_.equals(to_);  /* -- loops are not allowed in the graph */
+    assert !unchecked;          /* -- the order is not valid */
+
+    var from_order_ = orders.get(from_);
+    assert from_order_ != null;
+    var to_order_ = orders.get(to_);
+    assert to_order_ != null;
+
+    if(to_order_.value > from_order_.value) {
+      try {
+        reorder(from_, from_order_.value, to_, to_order_.value);
+      }
+      catch(DependencyCycleException exc_) {
+        throw new UncheckedDependencyCycleException(exc_);
+      }
+    }
+
+    return base_graph.addDependency(from_, to_, type_);
+  }
+
+  /**
+   * Add new dependency without checking of dependency cycles
+   *
+   * The topological order is not maintained. The graph must be checked
+   * by the {@link #validate()} method before any other checked
+   * dependency is added.
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @param type_ Type of the dependency
+   * @return True if the dependency has been newly added.
+   */
+  public boolean addDependencyUnchecked(
+      ID from_, ID to_, DependencyType type_) {
+    assert !from_.equals(to_);  /* -- loops are not allowed in the graph */
+    unchecked = true;
+    return base_graph.addDependency(from_, to_, type_);
+  }
+
+  /**
+   * Check the dependencies added by {@link #addDependencyUnchecked}
+   *
+   * The topological order is computed again from scratch, the cost is
+   * linear in the size of the graph. If a cycle is found, the graph stays
+   * invalid and it should be dropped.
+   *
+   * @exception DependencyCycleException If the graph contains a cycle
+   */
+  public void validate() throws DependencyCycleException {
+    if(!unchecked)
+      return;
+    orders.clear();
+    next_order = 0;
+    computeInitialOrder();
+    unchecked = false;
+  }
+
+  @Override
+  public void checkDependency(ID from_, ID to_)
+      throws DependencyCycleException {
+    assert !unchecked;
+    if(from_.equals(to_))
+      throw new DependencyCycleException(List.of(from_, to_));
+
+    var from_order_ = orders.get(from_).value;
+    var to_order_ = orders.get(to_).value;
+    if(to_order_ > from_order_)
+      searchForward(from_, to_order_, to_);
+  }
+
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    return base_graph.getDependencyType(from_, to_);
+  }
+
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    return base_graph.containsDependency(from_, to_);
+  }
+
+  private void reorder(ID from_, int lower_, ID to_, int upper_)
+      throws DependencyCycleException {
+    var forward_ = searchForward(from_, upper_, to_);
+
+    /* -- Backward search: dependencies of the target node lying in
+     *    the affected region */
+    var stack_ = new ArrayDeque<ID>();
+    var backward_ = new HashSet<ID>();
+    backward_.add(to_);
+    stack_.push(to_);
+    while(!stack_.isEmpty()) {
+      var top_ = stack_.pop();
+      base_graph.forEachSuccessor(top_, (succ_id_, succ_) -> {
+        if(!backward_.contains(succ_id_)
+            && orders.get(succ_id_).value > lower_) {
+          backward_.add(succ_id_);
+          stack_.push(succ_id_);
+        }
+      });
+    }
+
+    /* -- Reassign the orders: the backward set must precede the forward
+     *    set. Both sets keep their internal ordering and they reuse
+     *    the same pool of order numbers. */
+    var backward_list_ = sortByOrder(backward_);
+    var forward_list_ = sortByOrder(forward_.keySet());
+    var pool_ = new int[backward_list_.size() + forward_list_.size()];
+    int index_ = 0;
+    for(var id_ : backward_list_)
+      pool_[index_++] = orders.get(id_).value;
+    for(var id_ : forward_list_)
+      pool_[index_++] = orders.get(id_).value;
+    Arrays.sort(pool_);
+
+    index_ = 0;
+    for(var id_ : backward_list_)
+      orders.get(id_).value = pool_[index_++];
+    for(var id_ : forward_list_)
+      orders.get(id_).value = pool_[index_++];
+  }
+
+  private Map<ID, ID> searchForward(ID from_, int upper_, ID to_)
+      throws DependencyCycleException {
+    /* -- Forward search: nodes depending on the source node and lying
+     *    in the affected region. If the target node is reached, the new
+     *    dependency would close a cycle. */
+    var forward_ = new HashMap<ID, ID>();   /* -- node -> search parent */
+    var stack_ = new ArrayDeque<ID>();
+    forward_.put(from_, null);
+    stack_.push(from_);
+    while(!stack_.isEmpty()) {
+      var top_ = stack_.pop();
+      var cycle_ = new boolean[] {false};
+      base_graph.forEachPredecessor(top_, (pred_id_, pred_) -> {
+        if(cycle_[0] || forward_.containsKey(pred_id_))
+          return;
+        var order_ = orders.get(pred_id_).value;
+        if(order_ == upper_) {
+          forward_.put(pred_id_, top_);
+          cycle_[0] = true;
+        }
+        else if(order_ < upper_) {
+          forward_.put(pred_id_, top_);
+          stack_.push(pred_id_);
+        }
+      });
+      if(cycle_[0])
+        throw new DependencyCycleException(composeCycle(forward_, from_, to_));
+    }
+    return forward_;
+  }
+
+  private List<ID> sortByOrder(Collection<ID> ids_) {
+    var list_ = new ArrayList<>(ids_);
+    list_.sort(Comparator.comparingInt((id_) -> orders.get(id_).value));
+    return list_;
+  }
+
+  private static List<ID> composeCycle(Map<ID, ID> parents_, ID from_, ID to_) {
+    /* -- The parents chain leads from the target node back to the source
+     *    node following dependent nodes. Hence, the target node depends on
+     *    its parent, the parent on its parent etc. */
+    var cycle_ = new ArrayList<ID>();
+    cycle_.add(from_);
+    var node_ = to_;
+    while(node_ != null) {
+      cycle_.add(node_);
+      node_ = parents_.get(node_);
+    }
+    return cycle_;
+  }
+
+  @Override
+  public Node<N> getNode(ID node_id_) {
+    return base_graph.getNode(node_id_);
+  }
+
+  @Override
+  public void forEachNode(BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachNode(fn_);
+  }
+
+  @Override
+  public void forEachPredecessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachPredecessor(node_id_, fn_);
+  }
+
+  @Override
+  public void forEachSuccessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachSuccessor(node_id_, fn_);
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Compact read-only implementation of the dependency graph
+ *
+ * Nodes of the graph are identified by dense integer indices and the edges
+ * are stored in primitive arrays in the compressed-sparse-row form (one
+ * array of successors and one array of predecessors, both indexed by
+ * offsets of nodes). The graph is immutable - it's usually created by
+ * freezing of a mutable graph after all nodes and dependencies are known.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class GraphCompact<N> implements GraphIndexed<N> {
+  private static class NodeImpl<N> implements Node<N> {
+    private final int index;
+    private final int out_degree;
+    private final N data;
+
+    public NodeImpl(int index_, int out_degree_, N data_) {
+      index = index_;
+      out_degree = out_degree_;
+      data = data_;
+    }
+
+    public N getData() {
+      return data;
+    }
+
+    public int getOutDegree() {
+      return out_degree;
+    }
+  }
+
+  private final ID[] ids;
+  private final NodeImpl<N>[] nodes;
+  private final Map<ID, NodeImpl<N>> index_map;
+  private final int[] succ_offsets;
+  private final int[] succs;
+  private final int[] pred_offsets;
+  private final int[] preds;
+  private final BitSet order_only;   /* -- indexed as succs, may be null */
+
+  /**
+   * Ctor
+   *
+   * @param ids_ IDs of nodes (indexed by node indices)
+   * @param data_ Data of nodes (indexed by node indices)
+   * @param succ_offsets_ Offsets of nodes into the successor array. The
+   *     array must have one more item - end of the last node.
+   * @param succs_ Successor array
+   */
+  GraphCompact(ID[] ids_, N[] data_, int[] succ_offsets_, int[] succs_) {
+    this(ids_, data_, succ_offsets_, succs_, null);
+  }
+
+  /**
+   * Ctor
+   *
+   * @param ids_ IDs of nodes (indexed by node indices)
+   * @param data_ Data of nodes (indexed by node indices)
+   * @param succ_offsets_ Offsets of nodes into the successor array. The
+   *     array must have one more item - end of the last node.
+   * @param succs_ Successor array
+   * @param order_only_ Positions of order-only dependencies in the successor
+   *     array. It may be null if all dependencies are data ones.
+   */
+  GraphCompact(
+      ID[] ids_, N[] data_, int[] succ_offsets_, int[] succs_,
+      BitSet order_only_) {
+    assert ids_.length == data_.length;
+    assert succ_offsets_.length == ids_.length + 1;
+
+    ids = ids_;
+    succ_offsets = succ_offsets_;
+    succs = succs_;
+    order_only = order_only_ != null && !order_only_.isEmpty() ? order_only_ : null;
+
+    /* -- create the nodes */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    var nodes_ = (NodeImpl<N>[]) new NodeImpl[ids.length];
+    nodes = nodes_;
+    index_map = new HashMap<>(ids.length * 4 / 3 + 1);
+    for(int i_ = 0; i_ < ids.length; ++i_) {
+      nodes[i_] = new NodeImpl<>(
+          i_, succ_offsets[i_ + 1] - succ_offsets[i_], data_[i_]);
+      var previous_ = index_map.put(ids[i_], nodes[i_]);
+      assert previous_ == null;
+    }
+
+    /* -- transpose the successor array */
+    pred_offsets = new int[ids.length + 1];
+    for(var succ_ : succs) {
+      ++pred_offsets[succ_ + 1];
+    }
+    for(int i_ = 0; i_ < ids.length; ++i_) {
+      pred_offsets[i_ + 1] += pred_offsets[i_];
+    }
+    preds = new int[succs.length];
+    var fill_ = new int[ids.length];
+    for(int i_ = 0; i_ < ids.length; ++i_) {
+      for(int j_ = succ_offsets[i_]; j_ < succ_offsets[i_ + 1]; ++j_) {
+        var succ_ = succs[j_];
+        preds[pred_offsets[succ_] + fill_[succ_]++] = i_;
+      }
+    }
+  }
+
+  /**
+   * Ctor - the graph with precomputed predecessors
+   *
+   * The node objects and the map of IDs are created in parallel.
+   *
+   * @param ids_ IDs of nodes (indexed by node indices)
+   * @param data_ Data of nodes (indexed by node indices)
+   * @param succ_offsets_ Offsets of nodes into the successor array. The
+   *     array must have one more item - end of the last node.
+   * @param succs_ Successor array
+   * @param order_only_ Positions of order-only dependencies in the successor
+   *     array. It may be null if all dependencies are data ones.
+   * @param pred_offsets_ Offsets of nodes into the predecessor array
+   * @param preds_ Predecessor array (the transposed successor array)
+   */
+  GraphCompact(
+      ID[] ids_, N[] data_, int[] succ_offsets_, int[] succs_,
+      BitSet order_only_, int[] pred_offsets_, int[] preds_) {
+    assert ids_.length == data_.length;
+    assert succ_offsets_.length == ids_.length + 1;
+    assert pred_offsets_.length == ids_.length + 1;
+    assert preds_.length == succs_.length;
+
+    ids = ids_;
+    succ_offsets = succ_offsets_;
+    succs = succs_;
+    order_only = order_only_ != null && !order_only_.isEmpty() ? order_only_ : null;
+    pred_offsets = pred_offsets_;
+    preds = preds_;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    var nodes_ = (NodeImpl<N>[]) new NodeImpl[ids.length];
+    var index_map_ = new ConcurrentHashMap<ID, NodeImpl<N>>(ids.length * 4 / 3 + 1);
+    IntStream.range(0, ids.length).parallel().forEach((i_) -> {
+      nodes_[i_] = new NodeImpl<>(
+          i_, succ_offsets_[i_ + 1] - succ_offsets_[i_], data_[i_]);
+      var previous_ = index_map_.put(ids_[i_], nodes_[i_]);
+      assert previous_ == null;
+    });
+    nodes = nodes_;
+    index_map = index_map_;
+  }
+
+  /**
+   * Freeze a graph
+   *
+   * @param graph_ The frozen graph
+   * @return New compact graph with the same content as @a graph_
+   */
+  public static <N> GraphCompact<N> freeze(Graph<N> graph_) {
+    /* -- assign node indices */
+    var indices_ = new HashMap<ID, Integer>();
+    graph_.forEachNode((id_, node_) -> indices_.put(id_, indices_.size()));
+
+    var count_ = indices_.size();
+    var ids_ = new ID[count_];
+    @SuppressWarnings("unchecked")
+    var data_ = (N[]) new Object[count_];
+    var succ_offsets_ = new int[count_ + 1];
+    graph_.forEachNode((id_, node_) -> {
+      int index_ = indices_.get(id_);
+      ids_[index_] = id_;
+      data_[index_] = node_.getData();
+      succ_offsets_[index_ + 1] = node_.getOutDegree();
+    });
+    for(int i_ = 0; i_ < count_; ++i_) {
+      succ_offsets_[i_ + 1] += succ_offsets_[i_];
+    }
+
+    /* -- fill the successors */
+    var succs_ = new int[succ_offsets_[count_]];
+    var order_only_ = new BitSet();
+    for(int i_ = 0; i_ < count_; ++i_) {
+      var fill_ = new int[] {succ_offsets_[i_]};
+      var from_ = ids_[i_];
+      graph_.forEachSuccessor(from_, (id_, node_) -> {
+        if(graph_.getDependencyType(from_, id_) == DependencyType.ORDER_ONLY)
+          order_only_.set(fill_[0]);
+        succs_[fill_[0]++] = indices_.get(id_);
+      });
+      assert fill_[0] == succ_offsets_[i_ + 1];
+    }
+
+    return new GraphCompact<>(ids_, data_, succ_offsets_, succs_, order_only_);
+  }
+
+  private NodeImpl<N> getNodeImpl(ID node_id_) {
+    var node_ = index_map.get(node_id_);
+    assert node_ != null;
+    return node_;
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return index_map.containsKey(node_id_);
+  }
+
+  @Override
+  public void addNode(ID node_id_, N node_data_) {
+    throw new UnsupportedOperationException("the compact graph is read-only");
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_) {
+    throw new UnsupportedOperationException("the compact graph is read-only");
+  }
+
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    if(order_only == null)
+      return DependencyType.DATA;
+
+    var from_index_ = getNodeImpl(from_).index;
+    var to_index_ = getNodeImpl(to_).index;
+    for(int i_ = succ_offsets[from_index_]; i_ < succ_offsets[from_index_ + 1]; ++i_) {
+      if(succs[i_] == to_index_)
+        return order_only.get(i_) ? DependencyType.ORDER_ONLY : DependencyType.DATA;
+    }
+    assert false;   /* -- the dependency must exist */
+    return DependencyType.DATA;
+  }
+
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    var to_node_ = index_map.get(to_);
+    if(to_node_ == null)
+      return false;
+    var from_index_ = getNodeImpl(from_).index;
+    for(int i_ = succ_offsets[from_index_]; i_ < succ_offsets[from_index_ + 1]; ++i_) {
+      if(succs[i_] == to_node_.index)
+        return true;
+    }
+    return false;
+  }
+
+  @Override
+  public Node<N> getNode(ID node_id_) {
+    return getNodeImpl(node_id_);
+  }
+
+  @Override
+  public void forEachNode(BiConsumer<ID, Node<N>> fn_) {
+    for(int i_ = 0; i_ < ids.length; ++i_) {
+      fn_.accept(ids[i_], nodes[i_]);
+    }
+  }
+
+  @Override
+  public void forEachPredecessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    var index_ = getNodeImpl(node_id_).index;
+    for(int i_ = pred_offsets[index_]; i_ < pred_offsets[index_ + 1]; ++i_) {
+      var pred_ = preds[i_];
+      fn_.accept(ids[pred_], nodes[pred_]);
+    }
+  }
+
+  @Override
+  public void forEachSuccessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    var index_ = getNodeImpl(node_id_).index;
+    for(int i_ = succ_offsets[index_]; i_ < succ_offsets[index_ + 1]; ++i_) {
+      var succ_ = succs[i_];
+      fn_.accept(ids[succ_], nodes[succ_]);
+    }
+  }
+
+  @Override
+  public int getIndexLimit() {
+    return ids.length;
+  }
+
+  @Override
+  public boolean containsIndex(int index_) {
+    return index_ >= 0 && index_ < ids.length;
+  }
+
+  @Override
+  public int getIndex(ID node_id_) {
+    var node_ = index_map.get(node_id_);
+    return node_ != null ? node_.index : -1;
+  }
+
+  @Override
+  public ID getID(int index_) {
+    return ids[index_];
+  }
+
+  @Override
+  public Node<N> getNode(int index_) {
+    return nodes[index_];
+  }
+
+  @Override
+  public void forEachNodeIndex(IntConsumer fn_) {
+    for(int i_ = 0; i_ < ids.length; ++i_) {
+      fn_.accept(i_);
+    }
+  }
+
+  @Override
+  public void forEachPredecessorIndex(int index_, IntConsumer fn_) {
+    for(int i_ = pred_offsets[index_]; i_ < pred_offsets[index_ + 1]; ++i_) {
+      fn_.accept(preds[i_]);
+    }
+  }
+
+  @Override
+  public void forEachSuccessorIndex(int index_, IntConsumer fn_) {
+    for(int i_ = succ_offsets[index_]; i_ < succ_offsets[index_ + 1]; ++i_) {
+      fn_.accept(succs[i_]);
+    }
+  }
+}
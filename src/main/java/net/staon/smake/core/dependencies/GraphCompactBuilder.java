@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel bulk loader of a compact graph
+ *
+ * The builder collects nodes and dependencies of a graph from several
+ * threads and creates a {@link GraphCompact} at the end. The dependencies
+ * are added through batches - each thread fills its own batch without any
+ * synchronization, and it commits the batch into the builder when it's
+ * done. Each dependency is packed into one long number.
+ *
+ * Nodes are registered in a concurrent map, the dense index is taken
+ * from an atomic counter under the lock of the map bin. Hence, concurrent
+ * registrations of different nodes don't block each other.
+ *
+ * The build runs in parallel as well: the dependencies are sorted by
+ * a parallel sort, the duplicates are removed by a parallel prefix sum
+ * and the offsets of the compressed-sparse-row form are filled from
+ * the boundaries of the sorted runs. The predecessor arrays (the transposed
+ * graph) are built in the same way from the swapped dependencies.
+ *
+ * A node must be added before a dependency referring it is added into
+ * a batch.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class GraphCompactBuilder<N> {
+  /**
+   * Batch of dependencies filled by one thread
+   */
+  public class Batch {
+    private long[] edges;
+    private int size;
+
+    private Batch() {
+      edges = new long[64];
+      size = 0;
+    }
+
+    /**
+     * Add a data dependency into the batch
+     *
+     * @param from_ ID of the source node. The node must exist.
+     * @param to_ ID of the target node. The node must exist.
+     */
+    public void addDependency(ID from_, ID to_) {
+      addDependency(from_, to_, DependencyType.DATA);
+    }
+
+    /**
+     * Add a dependency into the batch
+     *
+     * Duplicated dependencies are allowed, they are merged during the build.
+     * The data type wins if one dependency is added with both types.
+     *
+     * @param from_ ID of the source node. The node must exist.
+     * @param to_ ID of the target node. The node must exist.
+     * @param type_ Type of the dependency
+     */
+    public void addDependency(ID from_, ID to_, DependencyType type_) {
+      var from_index_ = getIndex(from_);
+      var to_index_ = getIndex(to_);
+      assert from_index_ != to_index_;   /* -- loops are not allowed */
+
+      if(size == edges.length)
+        edges = Arrays.copyOf(edges, size * 2);
+      edges[size++] = packEdge(from_index_, to_index_, type_);
+    }
+
+    /**
+     * Move the dependencies into the builder
+     *
+     * The batch is empty after the commit and it may be filled again.
+     */
+    public void commit() {
+      if(size == 0)
+        return;
+      var edges_ = size == edges.length ? edges : Arrays.copyOf(edges, size);
+      synchronized(committed) {
+        committed.add(edges_);
+        committed_size += size;
+      }
+      edges = new long[64];
+      size = 0;
+    }
+  }
+
+  private static class Entry<N> {
+    public final int index;
+    public final N data;
+
+    public Entry(int index_, N data_) {
+      index = index_;
+      data = data_;
+    }
+  }
+
+  private final ConcurrentHashMap<ID, Entry<N>> nodes;
+  private final AtomicInteger node_count;
+  private final List<long[]> committed;
+  private long committed_size;
+
+  /**
+   * Ctor
+   */
+  public GraphCompactBuilder() {
+    nodes = new ConcurrentHashMap<>();
+    node_count = new AtomicInteger(0);
+    committed = new ArrayList<>();
+    committed_size = 0;
+  }
+
+  /**
+   * Add new node
+   *
+   * The method may be invoked by several threads at once.
+   *
+   * @param node_id_ ID of the node. It must be unique.
+   * @param node_data_ Data associated with the node
+   * @return Index of the node in the built graph
+   * @exception IllegalArgumentException If the node has been already added.
+   *     The builder is not modified in this case.
+   */
+  public int addNode(ID node_id_, N node_data_) {
+    /* -- the index is taken inside the computation, so a rejected node
+     *    doesn't leave a hole in the indices */
+    return nodes.compute(node_id_, (id_, previous_) -> {
+      if(previous_ != null)
+        throw new IllegalArgumentException("duplicated node " + id_);
+      return new Entry<>(node_count.getAndIncrement(), node_data_);
+    }).index;
+  }
+
+  /**
+   * Check whether a node has been added
+   */
+  public boolean containsNode(ID node_id_) {
+    return nodes.containsKey(node_id_);
+  }
+
+  private int getIndex(ID node_id_) {
+    var entry_ = nodes.get(node_id_);
+    assert entry_ != null;
+    return entry_.index;
+  }
+
+  /**
+   * Create new batch of dependencies
+   *
+   * The batch is not thread-safe, each thread should fill its own batch.
+   */
+  public Batch createBatch() {
+    return new Batch();
+  }
+
+  /*
+   * The dependency is packed as: source index (upper 32 bits), target index
+   * shifted by one, and the type in the lowest bit (data = 0). Sorting then
+   * groups the duplicates and places the data type first.
+   */
+  private static long packEdge(int from_, int to_, DependencyType type_) {
+    return ((long) from_ << 32)
+        | ((long) to_ << 1)
+        | (type_ == DependencyType.ORDER_ONLY ? 1L : 0L);
+  }
+
+  private static int sourceOf(long edge_) {
+    return (int) (edge_ >>> 32);
+  }
+
+  private static int targetOf(long edge_) {
+    return (int) ((edge_ & 0xffffffffL) >>> 1);
+  }
+
+  /**
+   * Build the compact graph
+   *
+   * All batches must be committed and no other thread may use the builder
+   * during the build. The builder cannot be used after the build.
+   *
+   * @return The graph
+   */
+  public GraphCompact<N> build() {
+    var node_count_ = node_count.get();
+    var ids_ = new ID[node_count_];
+    @SuppressWarnings("unchecked")
+    var data_ = (N[]) new Object[node_count_];
+    nodes.forEach(1, (id_, entry_) -> {
+      ids_[entry_.index] = id_;
+      data_[entry_.index] = entry_.data;
+    });
+
+    var edges_ = removeDuplicates(collectEdges());
+    var count_ = edges_.length;
+
+    /* -- the edges are sorted by the source node - it's the CSR form */
+    var succ_offsets_ = computeOffsets(edges_, node_count_);
+    var succs_ = new int[count_];
+    IntStream.range(0, count_).parallel().forEach(
+        (i_) -> succs_[i_] = targetOf(edges_[i_]));
+    var order_only_ = new long[(count_ + 63) / 64];
+    IntStream.range(0, order_only_.length).parallel().forEach((word_) -> {
+      long bits_ = 0;
+      for(int i_ = word_ * 64; i_ < Math.min(count_, word_ * 64 + 64); ++i_) {
+        if((edges_[i_] & 1L) != 0)
+          bits_ |= 1L << (i_ - word_ * 64);
+      }
+      order_only_[word_] = bits_;
+    });
+
+    /* -- the transposition: the swapped edges sorted by the target node */
+    var swapped_ = new long[count_];
+    IntStream.range(0, count_).parallel().forEach(
+        (i_) -> swapped_[i_] = ((long) targetOf(edges_[i_]) << 32)
+            | sourceOf(edges_[i_]));
+    Arrays.parallelSort(swapped_);
+    var pred_offsets_ = computeOffsets(swapped_, node_count_);
+    var preds_ = new int[count_];
+    IntStream.range(0, count_).parallel().forEach(
+        (i_) -> preds_[i_] = (int) swapped_[i_]);
+
+    return new GraphCompact<>(
+        ids_, data_, succ_offsets_, succs_, BitSet.valueOf(order_only_),
+        pred_offsets_, preds_);
+  }
+
+  private long[] collectEdges() {
+    /* -- copy all committed dependencies into one array */
+    if(committed_size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("too many dependencies");
+    var edges_ = new long[(int) committed_size];
+    var starts_ = new int[committed.size()];
+    for(int i_ = 1; i_ < starts_.length; ++i_)
+      starts_[i_] = starts_[i_ - 1] + committed.get(i_ - 1).length;
+    IntStream.range(0, starts_.length).parallel().forEach((i_) -> {
+      var chunk_ = committed.get(i_);
+      System.arraycopy(chunk_, 0, edges_, starts_[i_], chunk_.length);
+    });
+    committed.clear();
+    committed_size = 0;
+    return edges_;
+  }
+
+  private static long[] removeDuplicates(long[] edges_) {
+    /* -- Sorted edges, the first one of a run of duplicates is kept (it's
+     *    the data one if both types are present). The positions of the kept
+     *    edges are computed by a prefix sum of the flags. */
+    Arrays.parallelSort(edges_);
+    var positions_ = new int[edges_.length];
+    IntStream.range(0, edges_.length).parallel().forEach((i_) -> {
+      positions_[i_] = isFirst(edges_, i_) ? 1 : 0;
+    });
+    Arrays.parallelPrefix(positions_, Integer::sum);
+
+    var unique_ = new long[edges_.length > 0 ? positions_[edges_.length - 1] : 0];
+    IntStream.range(0, edges_.length).parallel().forEach((i_) -> {
+      if(isFirst(edges_, i_))
+        unique_[positions_[i_] - 1] = edges_[i_];
+    });
+    return unique_;
+  }
+
+  private static boolean isFirst(long[] edges_, int index_) {
+    return index_ == 0 || (edges_[index_] >>> 1) != (edges_[index_ - 1] >>> 1);
+  }
+
+  private static int[] computeOffsets(long[] edges_, int node_count_) {
+    /* -- Every boundary of the sorted runs (including both ends of the
+     *    array) sets the offsets of the nodes between the neighbouring
+     *    sources. The ranges of the boundaries are disjoint, so they're
+     *    filled in parallel. */
+    var offsets_ = new int[node_count_ + 1];
+    var count_ = edges_.length;
+    IntStream.rangeClosed(0, count_).parallel().forEach((i_) -> {
+      var begin_ = i_ == 0 ? 0 : sourceOf(edges_[i_ - 1]) + 1;
+      var end_ = i_ == count_ ? node_count_ : sourceOf(edges_[i_]);
+      for(int node_ = begin_; node_ <= end_; ++node_)
+        offsets_[node_] = i_;
+    });
+    return offsets_;
+  }
+}
@@ -77,11 +77,26 @@ public class GraphFiltered<N> implements Graph<N> {
   
   @Override
   public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+  
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
     assert from_ != to_;   /* -- loops are not allowed */
     assert nodes.contains(from_);
     assert nodes.contains(to_);
     
-    return base_graph.addDependency(from_, to_);
+    return base_graph.addDependency(from_, to_, type_);
+  }
+  
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    return base_graph.getDependencyType(from_, to_);
+  }
+  
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    return nodes.contains(to_) && base_graph.containsDependency(from_, to_);
   }
   
   @Override
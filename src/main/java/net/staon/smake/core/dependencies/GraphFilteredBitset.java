@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Implementation of a subgraph over an indexed graph
+ *
+ * This class is an alternative to the {@link GraphFiltered}. The set
+ * of nodes of the subgraph is kept in a bitset indexed by node indices
+ * of the base graph. Hence, the membership test is just a bit test
+ * and the subgraph of a large graph occupies a few kilobytes only.
+ *
+ * The subgraph is closed under the successor relation: it contains
+ * all nodes reachable from the roots. The static method
+ * {@link #filterMany(GraphIndexed, List)} computes subgraphs of several
+ * root sets by one shared traversal of the base graph.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class GraphFilteredBitset<N> implements GraphIndexed<N> {
+  private final GraphIndexed<N> base_graph;
+  private final BitSet nodes;
+
+  private GraphFilteredBitset(GraphIndexed<N> base_graph_, BitSet nodes_) {
+    base_graph = base_graph_;
+    nodes = nodes_;
+  }
+
+  /**
+   * Ctor
+   *
+   * @param base_graph_ The base graph
+   * @param roots_ Root nodes of the filtered graph (roots of the DFS filter)
+   */
+  public GraphFilteredBitset(GraphIndexed<N> base_graph_, List<ID> roots_) {
+    base_graph = base_graph_;
+    nodes = new BitSet(base_graph.getIndexLimit());
+
+    runDFS(roots_);
+  }
+
+  private void runDFS(List<ID> roots_) {
+    /* -- Nodes are marked when they are pushed, so every node is pushed
+     *    at most once and the stack cannot be larger than the graph. */
+    var stack_ = new IndexStack();
+    for(var root_ : roots_) {
+      var index_ = base_graph.getIndex(root_);
+      assert index_ >= 0;
+      if(!nodes.get(index_)) {
+        nodes.set(index_);
+        stack_.push(index_);
+      }
+    }
+
+    while(stack_.top > 0) {
+      var index_ = stack_.stack[--stack_.top];
+      base_graph.forEachSuccessorIndex(index_, (succ_) -> {
+        if(!nodes.get(succ_)) {
+          nodes.set(succ_);
+          stack_.push(succ_);
+        }
+      });
+    }
+  }
+
+  private static class IndexStack {
+    public int[] stack;
+    public int top;
+
+    public IndexStack() {
+      stack = new int[16];
+      top = 0;
+    }
+
+    public void push(int index_) {
+      if(top == stack.length)
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      stack[top++] = index_;
+    }
+  }
+
+  /**
+   * Compute subgraphs of several root sets
+   *
+   * The root sets are processed in groups of 64. Each node of the base
+   * graph gets a 64-bit mask of root sets which it's reachable from.
+   * The masks are propagated along the successor edges, a node is
+   * visited again only if its mask grows. Hence, nodes shared by several
+   * subgraphs are mostly visited once instead of once per subgraph.
+   *
+   * @param base_graph_ The base graph
+   * @param root_sets_ List of root sets
+   * @return List of subgraphs in the same order as the root sets
+   */
+  public static <N> List<GraphFilteredBitset<N>> filterMany(
+      GraphIndexed<N> base_graph_, List<List<ID>> root_sets_) {
+    var limit_ = base_graph_.getIndexLimit();
+    var result_ = new ArrayList<GraphFilteredBitset<N>>(root_sets_.size());
+    long[] masks_ = null;
+    for(int group_ = 0; group_ < root_sets_.size(); group_ += Long.SIZE) {
+      var group_end_ = Math.min(group_ + Long.SIZE, root_sets_.size());
+      if(masks_ == null)
+        masks_ = new long[limit_];
+      else
+        Arrays.fill(masks_, 0);
+
+      /* -- seed the roots */
+      var queued_ = new BitSet(limit_);
+      var stack_ = new IndexStack();
+      for(int i_ = group_; i_ < group_end_; ++i_) {
+        var bit_ = 1L << (i_ - group_);
+        for(var root_ : root_sets_.get(i_)) {
+          var index_ = base_graph_.getIndex(root_);
+          assert index_ >= 0;
+          masks_[index_] |= bit_;
+          if(!queued_.get(index_)) {
+            queued_.set(index_);
+            stack_.push(index_);
+          }
+        }
+      }
+
+      /* -- propagate the masks */
+      final var group_masks_ = masks_;
+      while(stack_.top > 0) {
+        var index_ = stack_.stack[--stack_.top];
+        queued_.clear(index_);
+        var mask_ = group_masks_[index_];
+        base_graph_.forEachSuccessorIndex(index_, (succ_) -> {
+          var succ_mask_ = group_masks_[succ_];
+          if((succ_mask_ | mask_) != succ_mask_) {
+            group_masks_[succ_] = succ_mask_ | mask_;
+            if(!queued_.get(succ_)) {
+              queued_.set(succ_);
+              stack_.push(succ_);
+            }
+          }
+        });
+      }
+
+      /* -- distribute the masks into the bitsets */
+      var bitsets_ = new BitSet[group_end_ - group_];
+      for(int i_ = 0; i_ < bitsets_.length; ++i_)
+        bitsets_[i_] = new BitSet(limit_);
+      for(int index_ = 0; index_ < limit_; ++index_) {
+        var mask_ = group_masks_[index_];
+        while(mask_ != 0) {
+          var bit_ = Long.numberOfTrailingZeros(mask_);
+          bitsets_[bit_].set(index_);
+          mask_ &= mask_ - 1;
+        }
+      }
+      for(var bitset_ : bitsets_)
+        result_.add(new GraphFilteredBitset<>(base_graph_, bitset_));
+    }
+    return result_;
+  }
+
+  /**
+   * Get number of nodes of the subgraph
+   */
+  public int getNodeCount() {
+    return nodes.cardinality();
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    var index_ = base_graph.getIndex(node_id_);
+    return index_ >= 0 && nodes.get(index_);
+  }
+
+  @Override
+  public void addNode(ID node_id_, N node_data_) {
+    base_graph.addNode(node_id_, node_data_);
+    nodes.set(base_graph.getIndex(node_id_));
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
+    assert !from_.equals(to_);   /* -- loops are not allowed */
+    assert containsNode(from_);
+    assert containsNode(to_);
+
+    return base_graph.addDependency(from_, to_, type_);
+  }
+
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    return base_graph.getDependencyType(from_, to_);
+  }
+
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    return containsNode(to_) && base_graph.containsDependency(from_, to_);
+  }
+
+  @Override
+  public Node<N> getNode(ID node_id_) {
+    assert containsNode(node_id_);
+    return base_graph.getNode(node_id_);
+  }
+
+  @Override
+  public void forEachNode(BiConsumer<ID, Node<N>> fn_) {
+    for(int i_ = nodes.nextSetBit(0); i_ >= 0; i_ = nodes.nextSetBit(i_ + 1)) {
+      fn_.accept(base_graph.getID(i_), base_graph.getNode(i_));
+    }
+  }
+
+  @Override
+  public void forEachPredecessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    forEachPredecessorIndex(base_graph.getIndex(node_id_), (pred_) -> {
+      fn_.accept(base_graph.getID(pred_), base_graph.getNode(pred_));
+    });
+  }
+
+  @Override
+  public void forEachSuccessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    forEachSuccessorIndex(base_graph.getIndex(node_id_), (succ_) -> {
+      fn_.accept(base_graph.getID(succ_), base_graph.getNode(succ_));
+    });
+  }
+
+  @Override
+  public int getIndexLimit() {
+    return base_graph.getIndexLimit();
+  }
+
+  @Override
+  public boolean containsIndex(int index_) {
+    return index_ >= 0 && nodes.get(index_);
+  }
+
+  @Override
+  public int getIndex(ID node_id_) {
+    var index_ = base_graph.getIndex(node_id_);
+    return index_ >= 0 && nodes.get(index_) ? index_ : -1;
+  }
+
+  @Override
+  public ID getID(int index_) {
+    assert nodes.get(index_);
+    return base_graph.getID(index_);
+  }
+
+  @Override
+  public Node<N> getNode(int index_) {
+    assert nodes.get(index_);
+    return base_graph.getNode(index_);
+  }
+
+  @Override
+  public void forEachNodeIndex(IntConsumer fn_) {
+    for(int i_ = nodes.nextSetBit(0); i_ >= 0; i_ = nodes.nextSetBit(i_ + 1)) {
+      fn_.accept(i_);
+    }
+  }
+
+  @Override
+  public void forEachPredecessorIndex(int index_, IntConsumer fn_) {
+    base_graph.forEachPredecessorIndex(index_, (pred_) -> {
+      if(nodes.get(pred_))
+        fn_.accept(pred_);
+    });
+  }
+
+  @Override
+  public void forEachSuccessorIndex(int index_, IntConsumer fn_) {
+    base_graph.forEachSuccessorIndex(index_, (succ_) -> {
+      if(nodes.get(succ_))
+        fn_.accept(succ_);
+    });
+  }
+}
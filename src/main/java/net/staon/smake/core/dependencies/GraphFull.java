@@ -18,8 +18,6 @@
  */
 package net.staon.smake.core.dependencies;
 
-import org.checkerframework.checker.signature.qual.ClassGetSimpleName;
-
 import java.util.*;
 import java.util.function.BiConsumer;
 
@@ -36,6 +34,7 @@ public class GraphFull<N> implements Graph<N> {
     private final N data;
     private final Set<NodeImpl> outs;
     private final Set<NodeImpl> ins;
+    private Set<NodeImpl> order_only;   /* -- subset of outs, may be null */
     
     public NodeImpl(ID id_, N data_) {
       id = id_;
@@ -44,8 +43,20 @@ public class GraphFull<N> implements Graph<N> {
       ins = new HashSet<>();
     }
     
-    private boolean addOutEdge(NodeImpl target_node_) {
-      return outs.add(target_node_);
+    private boolean addOutEdge(NodeImpl target_node_, DependencyType type_) {
+      if(outs.add(target_node_)) {
+        if(type_ == DependencyType.ORDER_ONLY) {
+          if(order_only == null)
+            order_only = new HashSet<>();
+          order_only.add(target_node_);
+        }
+        return true;
+      }
+      
+      /* -- the dependency exists, the data type wins */
+      if(type_ == DependencyType.DATA && order_only != null)
+        order_only.remove(target_node_);
+      return false;
     }
     
     private void addInEdge(NodeImpl source_node_) {
@@ -62,12 +73,24 @@ public class GraphFull<N> implements Graph<N> {
   }
   
   HashMap<ID, NodeImpl> nodes;
+  private final SymbolTable symbols;
   
   /**
    * Ctor - empty graph
    */
   public GraphFull() {
+    this(null);
+  }
+  
+  /**
+   * Ctor - empty graph interning its node IDs
+   *
+   * @param symbols_ Symbol table used to intern IDs of added nodes. It
+   *     may be null if the IDs are not interned.
+   */
+  public GraphFull(SymbolTable symbols_) {
     nodes = new HashMap<>();
+    symbols = symbols_;
   }
   
   @Override
@@ -80,12 +103,19 @@ public class GraphFull<N> implements Graph<N> {
     assert node_id_ != null;
     assert !nodes.containsKey(node_id_);
     
+    if(symbols != null)
+      node_id_ = symbols.intern(node_id_);
     var node = new NodeImpl(node_id_, node_data_);
     nodes.put(node_id_, node);
   }
   
   @Override
   public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+  
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
     assert from_ != to_;  /* -- loops are not allowed in the graph */
     
     var from_node_ = nodes.get(from_);
@@ -95,7 +125,27 @@ public class GraphFull<N> implements Graph<N> {
     
     /* -- create the graph edge */
     to_node_.addInEdge(from_node_);
-    return from_node_.addOutEdge(to_node_);
+    return from_node_.addOutEdge(to_node_, type_);
+  }
+  
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    var from_node_ = nodes.get(from_);
+    assert from_node_ != null;
+    var to_node_ = nodes.get(to_);
+    assert to_node_ != null && from_node_.outs.contains(to_node_);
+    
+    if(from_node_.order_only != null && from_node_.order_only.contains(to_node_))
+      return DependencyType.ORDER_ONLY;
+    return DependencyType.DATA;
+  }
+  
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    var from_node_ = nodes.get(from_);
+    assert from_node_ != null;
+    var to_node_ = nodes.get(to_);
+    return to_node_ != null && from_node_.outs.contains(to_node_);
   }
   
   @Override
@@ -123,4 +173,13 @@ public class GraphFull<N> implements Graph<N> {
     assert node_ != null;
     node_.outs.forEach((n_) -> fn_.accept(n_.id, n_));
   }
+  
+  /**
+   * Create compact read-only copy of the graph
+   *
+   * @return The compact graph
+   */
+  public GraphCompact<N> freeze() {
+    return GraphCompact.freeze(this);
+  }
 }
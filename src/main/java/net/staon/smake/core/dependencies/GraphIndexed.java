@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Dependency graph with dense integer indices of nodes
+ *
+ * Each node of the graph is identified by an integer index besides its ID.
+ * The indices are dense - they lie in the range [0, getIndexLimit()).
+ * Algorithms can use the indices to keep their data in primitive arrays
+ * instead of hash maps.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public interface GraphIndexed<N> extends Graph<N> {
+  /**
+   * Get upper limit of node indices (all indices are lower)
+   */
+  int getIndexLimit();
+  
+  /**
+   * Check whether a node is present in the graph
+   *
+   * @param index_ Index of the node. It must lie in the range
+   *     [0, getIndexLimit()).
+   */
+  boolean containsIndex(int index_);
+  
+  /**
+   * Get index of a node
+   *
+   * @param node_id_ ID of the node
+   * @return The index or -1 if the node doesn't exist
+   */
+  int getIndex(ID node_id_);
+  
+  /**
+   * Get ID of a node
+   *
+   * @param index_ Index of the node. The node must exist!
+   */
+  ID getID(int index_);
+  
+  /**
+   * Get node
+   *
+   * @param index_ Index of the node. The node must exist!
+   */
+  Graph.Node<N> getNode(int index_);
+  
+  /**
+   * Evaluate @a fn_ on index of every node in the graph
+   */
+  void forEachNodeIndex(IntConsumer fn_);
+  
+  /**
+   * Evaluate a function on index of every predecessor of a node
+   *
+   * @param index_ Index of the node
+   * @param fn_ The function
+   */
+  void forEachPredecessorIndex(int index_, IntConsumer fn_);
+  
+  /**
+   * Evaluate a function on index of every successor of a node
+   *
+   * @param index_ Index of the node
+   * @param fn_ The function
+   */
+  void forEachSuccessorIndex(int index_, IntConsumer fn_);
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Private modifications of a shared graph
+ *
+ * The overlay presents a base graph together with nodes and dependencies
+ * added into the overlay. The base graph is never modified. Hence, several
+ * overlays (e.g. several topological orders of different targets) may
+ * share one base graph without copying it, and each of them sees just
+ * its own additions.
+ *
+ * The base graph must not be modified while the overlays exist. Then
+ * the overlays may be used by different threads at once, although one
+ * overlay is not thread-safe itself.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class GraphOverlay<N> implements Graph<N> {
+  private class OverlayNode implements Graph.Node<N> {
+    private final N data;
+    private final Graph.Node<N> base_node;   /* -- null for added nodes */
+    private Set<ID> successors;
+    private Set<ID> predecessors;
+    private Set<ID> order_only;   /* -- order-only added successors */
+    private Set<ID> upgraded;     /* -- base order-only deps made data ones */
+
+    public OverlayNode(N data_, Graph.Node<N> base_node_) {
+      data = data_;
+      base_node = base_node_;
+    }
+
+    @Override
+    public N getData() {
+      return data;
+    }
+
+    @Override
+    public int getOutDegree() {
+      var degree_ = successors != null ? successors.size() : 0;
+      if(base_node != null)
+        degree_ += base_node.getOutDegree();
+      return degree_;
+    }
+  }
+
+  private final Graph<N> base_graph;
+  private final Map<ID, OverlayNode> nodes;   /* -- added and touched nodes */
+  private int added_nodes;
+
+  /**
+   * Ctor
+   *
+   * @param base_graph_ The shared base graph
+   */
+  public GraphOverlay(Graph<N> base_graph_) {
+    base_graph = base_graph_;
+    nodes = new HashMap<>();
+    added_nodes = 0;
+  }
+
+  /**
+   * Get the shared base graph
+   */
+  public Graph<N> getBaseGraph() {
+    return base_graph;
+  }
+
+  private OverlayNode touchNode(ID node_id_) {
+    var node_ = nodes.get(node_id_);
+    if(node_ == null) {
+      var base_node_ = base_graph.getNode(node_id_);
+      node_ = new OverlayNode(base_node_.getData(), base_node_);
+      nodes.put(node_id_, node_);
+    }
+    return node_;
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return nodes.containsKey(node_id_) || base_graph.containsNode(node_id_);
+  }
+
+  @Override
+  public void addNode(ID node_id_, N node_data_) {
+    assert !containsNode(node_id_);
+    nodes.put(node_id_, new OverlayNode(node_data_, null));
+    ++added_nodes;
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
+    assert !from_.equals(to_);   /* -- loops are not allowed */
+    assert containsNode(from_);
+    assert containsNode(to_);
+
+    var from_node_ = touchNode(from_);
+    if(from_node_.successors != null && from_node_.successors.contains(to_)) {
+      /* -- the data type wins */
+      if(type_ == DependencyType.DATA && from_node_.order_only != null)
+        from_node_.order_only.remove(to_);
+      return false;
+    }
+    if(from_node_.base_node != null && base_graph.containsDependency(from_, to_)) {
+      /* -- the base dependency exists, just its type may be upgraded */
+      if(type_ == DependencyType.DATA
+          && base_graph.getDependencyType(from_, to_) == DependencyType.ORDER_ONLY) {
+        if(from_node_.upgraded == null)
+          from_node_.upgraded = new HashSet<>();
+        from_node_.upgraded.add(to_);
+      }
+      return false;
+    }
+
+    var to_node_ = touchNode(to_);
+    if(from_node_.successors == null)
+      from_node_.successors = new LinkedHashSet<>();
+    from_node_.successors.add(to_);
+    if(type_ == DependencyType.ORDER_ONLY) {
+      if(from_node_.order_only == null)
+        from_node_.order_only = new HashSet<>();
+      from_node_.order_only.add(to_);
+    }
+    if(to_node_.predecessors == null)
+      to_node_.predecessors = new LinkedHashSet<>();
+    to_node_.predecessors.add(from_);
+    return true;
+  }
+
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    var node_ = nodes.get(from_);
+    if(node_ != null) {
+      if(node_.successors != null && node_.successors.contains(to_)) {
+        if(node_.order_only != null && node_.order_only.contains(to_))
+          return DependencyType.ORDER_ONLY;
+        return DependencyType.DATA;
+      }
+      if(node_.upgraded != null && node_.upgraded.contains(to_))
+        return DependencyType.DATA;
+    }
+    return base_graph.getDependencyType(from_, to_);
+  }
+
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    var node_ = nodes.get(from_);
+    if(node_ != null && node_.successors != null && node_.successors.contains(to_))
+      return true;
+    return (node_ == null || node_.base_node != null)
+        && base_graph.containsDependency(from_, to_);
+  }
+
+  @Override
+  public Node<N> getNode(ID node_id_) {
+    var node_ = nodes.get(node_id_);
+    if(node_ != null)
+      return node_;
+    return base_graph.getNode(node_id_);
+  }
+
+  private Node<N> overlayNode(ID node_id_, Node<N> base_node_) {
+    if(nodes.isEmpty())
+      return base_node_;
+    var node_ = nodes.get(node_id_);
+    return node_ != null ? node_ : base_node_;
+  }
+
+  @Override
+  public void forEachNode(BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachNode((id_, node_) -> {
+      fn_.accept(id_, overlayNode(id_, node_));
+    });
+    if(added_nodes > 0) {
+      nodes.forEach((id_, node_) -> {
+        if(node_.base_node == null)
+          fn_.accept(id_, node_);
+      });
+    }
+  }
+
+  @Override
+  public void forEachPredecessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    var node_ = nodes.get(node_id_);
+    if(node_ == null || node_.base_node != null) {
+      base_graph.forEachPredecessor(node_id_, (id_, pred_) -> {
+        fn_.accept(id_, overlayNode(id_, pred_));
+      });
+    }
+    if(node_ != null && node_.predecessors != null) {
+      for(var id_ : node_.predecessors)
+        fn_.accept(id_, nodes.get(id_));
+    }
+  }
+
+  @Override
+  public void forEachSuccessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    var node_ = nodes.get(node_id_);
+    if(node_ == null || node_.base_node != null) {
+      base_graph.forEachSuccessor(node_id_, (id_, succ_) -> {
+        fn_.accept(id_, overlayNode(id_, succ_));
+      });
+    }
+    if(node_ != null && node_.successors != null) {
+      for(var id_ : node_.successors)
+        fn_.accept(id_, nodes.get(id_));
+    }
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.*;
+
+/**
+ * Shape statistics and parallelism profile of a dependency graph
+ *
+ * The statistics describe how parallel processing of the graph can be:
+ * <ul>
+ *   <li>total work (sum of weights of all nodes),</li>
+ *   <li>length of the critical path and its nodes,</li>
+ *   <li>width of topological levels (level 0 contains the leaves,
+ *       level N contains nodes whose longest dependency chain has N
+ *       nodes),</li>
+ *   <li>histograms of fan-in (number of dependent nodes) and fan-out
+ *       (number of dependencies),</li>
+ *   <li>bounds of the speedup and a simulation of the build with
+ *       a limited number of workers.</li>
+ * </ul>
+ *
+ * The statistics may be computed for any graph including filtered views.
+ * Nodes lying in dependency cycles are not assigned to any level.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public final class GraphStatistics<N> {
+  private final Graph<N> graph;
+  private final NodeWeight<N> weights;
+  private final Map<ID, Long> remaining_paths;
+  private int node_count;
+  private int edge_count;
+  private long total_work;
+  private long critical_path_length;
+  private final List<ID> critical_path;
+  private final List<Integer> level_widths;
+  private final SortedMap<Integer, Integer> fan_in_histogram;
+  private final SortedMap<Integer, Integer> fan_out_histogram;
+  private final Map<ID, Integer> fan_ins;
+
+  private static class RunningNode {
+    public final ID id;
+    public final long finish;
+
+    public RunningNode(ID id_, long finish_) {
+      id = id_;
+      finish = finish_;
+    }
+  }
+
+  private GraphStatistics(Graph<N> graph_, NodeWeight<N> weights_) {
+    graph = graph_;
+    weights = weights_;
+    remaining_paths = CriticalPath.computeRemainingPaths(graph, weights);
+    node_count = 0;
+    edge_count = 0;
+    total_work = 0;
+    critical_path_length = 0;
+    critical_path = new ArrayList<>();
+    level_widths = new ArrayList<>();
+    fan_in_histogram = new TreeMap<>();
+    fan_out_histogram = new TreeMap<>();
+    fan_ins = new HashMap<>();
+  }
+
+  /**
+   * Compute statistics of a graph
+   *
+   * @param graph_ The graph
+   * @param weights_ Weights (costs) of graph nodes
+   */
+  public static <N> GraphStatistics<N> compute(
+      Graph<N> graph_, NodeWeight<N> weights_) {
+    var stats_ = new GraphStatistics<>(graph_, weights_);
+    stats_.computeDegrees();
+    stats_.computeCriticalPath();
+    stats_.computeLevels();
+    return stats_;
+  }
+
+  /**
+   * Compute statistics of a graph with uniform weights of the nodes
+   *
+   * @param graph_ The graph
+   */
+  public static <N> GraphStatistics<N> compute(Graph<N> graph_) {
+    return compute(graph_, NodeWeight.uniform());
+  }
+
+  private void computeDegrees() {
+    graph.forEachNode((id_, node_) -> {
+      ++node_count;
+      total_work += weights.getWeight(id_, node_.getData());
+
+      var fan_in_ = new int[] {0};
+      graph.forEachPredecessor(id_, (pred_id_, pred_) -> ++fan_in_[0]);
+      var fan_out_ = new int[] {0};
+      graph.forEachSuccessor(id_, (succ_id_, succ_) -> ++fan_out_[0]);
+
+      edge_count += fan_out_[0];
+      fan_ins.put(id_, fan_in_[0]);
+      fan_in_histogram.merge(fan_in_[0], 1, Integer::sum);
+      fan_out_histogram.merge(fan_out_[0], 1, Integer::sum);
+    });
+  }
+
+  private void computeCriticalPath() {
+    /* -- start at the node with the longest remaining path, and follow
+     *    the dependencies which the path goes through */
+    ID current_ = null;
+    for(var entry_ : remaining_paths.entrySet()) {
+      if(current_ == null || entry_.getValue() > critical_path_length) {
+        current_ = entry_.getKey();
+        critical_path_length = entry_.getValue();
+      }
+    }
+
+    var visited_ = new HashSet<ID>();
+    while(current_ != null && visited_.add(current_)) {
+      critical_path.add(current_);
+      var rest_ = remaining_paths.get(current_)
+          - weights.getWeight(current_, graph.getNode(current_).getData());
+      var next_ = new ID[] {null};
+      graph.forEachPredecessor(current_, (pred_id_, pred_) -> {
+        if(next_[0] == null && remaining_paths.get(pred_id_) == rest_)
+          next_[0] = pred_id_;
+      });
+      current_ = next_[0];
+    }
+  }
+
+  private void computeLevels() {
+    /* -- Kahn's algorithm from the leaves, level of a node is one more
+     *    than the maximal level of its dependencies */
+    var degrees_ = new HashMap<ID, Integer>();
+    var levels_ = new HashMap<ID, Integer>();
+    var queue_ = new ArrayDeque<ID>();
+    graph.forEachNode((id_, node_) -> {
+      var degree_ = new int[] {0};
+      graph.forEachSuccessor(id_, (succ_id_, succ_) -> ++degree_[0]);
+      degrees_.put(id_, degree_[0]);
+      if(degree_[0] == 0) {
+        levels_.put(id_, 0);
+        queue_.add(id_);
+      }
+    });
+
+    while(!queue_.isEmpty()) {
+      var id_ = queue_.poll();
+      int level_ = levels_.get(id_);
+      while(level_widths.size() <= level_)
+        level_widths.add(0);
+      level_widths.set(level_, level_widths.get(level_) + 1);
+
+      graph.forEachPredecessor(id_, (pred_id_, pred_) -> {
+        levels_.merge(pred_id_, level_ + 1, Math::max);
+        var degree_ = degrees_.get(pred_id_) - 1;
+        degrees_.put(pred_id_, degree_);
+        if(degree_ == 0)
+          queue_.add(pred_id_);
+      });
+    }
+  }
+
+  /**
+   * Get number of nodes
+   */
+  public int getNodeCount() {
+    return node_count;
+  }
+
+  /**
+   * Get number of dependencies (edges)
+   */
+  public int getEdgeCount() {
+    return edge_count;
+  }
+
+  /**
+   * Get total work - sum of weights of all nodes
+   */
+  public long getTotalWork() {
+    return total_work;
+  }
+
+  /**
+   * Get weighted length of the critical path
+   */
+  public long getCriticalPathLength() {
+    return critical_path_length;
+  }
+
+  /**
+   * Get nodes of the critical path
+   *
+   * @return The nodes. The first one is the leaf, the last one is a root
+   *     of the graph. Every node depends on the previous one.
+   */
+  public List<ID> getCriticalPath() {
+    return Collections.unmodifiableList(critical_path);
+  }
+
+  /**
+   * Get widths of topological levels
+   *
+   * @return Number of nodes in each level. The level 0 are the leaves.
+   */
+  public List<Integer> getLevelWidths() {
+    return Collections.unmodifiableList(level_widths);
+  }
+
+  /**
+   * Get maximal width of topological levels
+   */
+  public int getMaxLevelWidth() {
+    int max_ = 0;
+    for(var width_ : level_widths)
+      max_ = Math.max(max_, width_);
+    return max_;
+  }
+
+  /**
+   * Get histogram of fan-in (number of nodes directly depending on a node)
+   *
+   * @return Map fan-in -> number of nodes
+   */
+  public SortedMap<Integer, Integer> getFanInHistogram() {
+    return Collections.unmodifiableSortedMap(fan_in_histogram);
+  }
+
+  /**
+   * Get histogram of fan-out (number of direct dependencies of a node)
+   *
+   * @return Map fan-out -> number of nodes
+   */
+  public SortedMap<Integer, Integer> getFanOutHistogram() {
+    return Collections.unmodifiableSortedMap(fan_out_histogram);
+  }
+
+  /**
+   * Get nodes with the highest fan-in
+   *
+   * Such nodes are potential serialization points - e.g. a generated
+   * header which all sources depend on.
+   *
+   * @param count_ Maximal number of returned nodes
+   * @return The nodes ordered by fan-in descending
+   */
+  public List<ID> getHighestFanIn(int count_) {
+    var result_ = new ArrayList<>(fan_ins.keySet());
+    result_.sort(Comparator.comparingInt((ID id_) -> -fan_ins.get(id_)));
+    return new ArrayList<>(result_.subList(0, Math.min(count_, result_.size())));
+  }
+
+  /**
+   * Get average parallelism - total work divided by the critical path
+   *
+   * It's the maximal speedup achievable with unlimited number of workers.
+   */
+  public double getAverageParallelism() {
+    if(critical_path_length == 0)
+      return 0.0;
+    return (double) total_work / critical_path_length;
+  }
+
+  /**
+   * Get upper bound of the speedup achievable by a number of workers
+   *
+   * The speedup cannot exceed the number of workers and it cannot exceed
+   * the average parallelism.
+   *
+   * @param workers_ Number of workers
+   */
+  public double getSpeedupBound(int workers_) {
+    assert workers_ > 0;
+    return Math.min(workers_, getAverageParallelism());
+  }
+
+  /**
+   * Simulate processing of the graph by a number of workers
+   *
+   * The simulation uses the same strategy as the {@link TopologicalOrder}
+   * with node weights: the ready node with the longest remaining path
+   * is started first. The weights are used as durations of the nodes.
+   *
+   * @param workers_ Number of workers
+   * @return Simulated duration of the build (makespan). Nodes lying
+   *     in cycles are never started.
+   */
+  public long simulateMakespan(int workers_) {
+    assert workers_ > 0;
+
+    var degrees_ = new HashMap<ID, Integer>();
+    var ready_ = new PriorityQueue<ID>(
+        Comparator.comparingLong((ID id_) -> -remaining_paths.get(id_)));
+    graph.forEachNode((id_, node_) -> {
+      var degree_ = new int[] {0};
+      graph.forEachSuccessor(id_, (succ_id_, succ_) -> ++degree_[0]);
+      degrees_.put(id_, degree_[0]);
+      if(degree_[0] == 0)
+        ready_.add(id_);
+    });
+
+    var running_ = new PriorityQueue<RunningNode>(
+        Comparator.comparingLong((RunningNode n_) -> n_.finish));
+    long time_ = 0;
+    while(!ready_.isEmpty() || !running_.isEmpty()) {
+      /* -- start as many nodes as possible */
+      while(running_.size() < workers_ && !ready_.isEmpty()) {
+        var id_ = ready_.poll();
+        var weight_ = weights.getWeight(id_, graph.getNode(id_).getData());
+        running_.add(new RunningNode(id_, time_ + weight_));
+      }
+
+      /* -- finish the first running node */
+      var finished_ = running_.poll();
+      time_ = finished_.finish;
+      graph.forEachPredecessor(finished_.id, (pred_id_, pred_) -> {
+        var degree_ = degrees_.get(pred_id_) - 1;
+        degrees_.put(pred_id_, degree_);
+        if(degree_ == 0)
+          ready_.add(pred_id_);
+      });
+    }
+    return time_;
+  }
+
+  /**
+   * Simulate speedup achieved by a number of workers
+   *
+   * @param workers_ Number of workers
+   * @return Total work divided by the simulated makespan
+   * @see #simulateMakespan(int)
+   */
+  public double simulateSpeedup(int workers_) {
+    var makespan_ = simulateMakespan(workers_);
+    if(makespan_ == 0)
+      return 0.0;
+    return (double) total_work / makespan_;
+  }
+}
@@ -18,13 +18,17 @@
  */
 package net.staon.smake.core.dependencies;
 
-import java.util.Objects;
-
 /**
  * Identifier of a dependency node
+ *
+ * IDs can be interned in a {@link SymbolTable}. An interned ID is
+ * the canonical object of its string value, and it owns a stable integer
+ * handle unique in the table.
  */
 public final class ID {
   final private String id;
+  final private int hash;
+  final private int handle;
   
   /**
    * Ctor
@@ -32,7 +36,42 @@ public final class ID {
    * @param id_ String id
    */
   public ID(String id_) {
+    this(id_, -1);
+  }
+  
+  /**
+   * Ctor - interned ID
+   *
+   * @param id_ String id
+   * @param handle_ Handle of the ID in a symbol table
+   */
+  ID(String id_, int handle_) {
     id = id_;
+    hash = id_.hashCode();
+    handle = handle_;
+  }
+  
+  /**
+   * Get handle of the ID in its symbol table
+   *
+   * @return The handle or -1 if the ID isn't interned
+   */
+  public int getHandle() {
+    return handle;
+  }
+  
+  /**
+   * Check whether the ID is interned in a symbol table
+   */
+  public boolean isInterned() {
+    return handle >= 0;
+  }
+  
+  /**
+   * Get the string value of the ID
+   */
+  public String asString() {
+    return id;
   }
   
   @Override
@@ -47,11 +86,11 @@ public final class ID {
     if(o == null || getClass() != o.getClass())
       return false;
     ID id1 = (ID) o;
-    return id.equals(id1.id);
+    return hash == id1.hash && id.equals(id1.id);
   }
   
   @Override
   public int hashCode() {
-    return Objects.hash(id);
+    return hash;
   }
 }
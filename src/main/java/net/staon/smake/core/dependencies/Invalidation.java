@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of SMake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OTest2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Propagation of changes through a dependency graph
+ *
+ * A change of a node invalidates all nodes which depend on it by a data
+ * dependency, directly or transitively. Order-only dependencies
+ * ({@link DependencyType#ORDER_ONLY}) don't propagate the change - they
+ * just order the processing of the nodes.
+ */
+public final class Invalidation {
+  private Invalidation() {
+
+  }
+
+  /**
+   * Compute nodes invalidated by changed nodes
+   *
+   * @param graph_ The graph
+   * @param changed_ IDs of the changed nodes
+   * @return IDs of the invalidated nodes including the changed ones
+   */
+  public static <N> Set<ID> computeInvalidated(
+      Graph<N> graph_,
+      Collection<ID> changed_) {
+    var invalidated_ = new HashSet<ID>();
+    var stack_ = new ArrayDeque<ID>();
+    for(var id_ : changed_) {
+      if(invalidated_.add(id_))
+        stack_.push(id_);
+    }
+
+    while(!stack_.isEmpty()) {
+      var id_ = stack_.pop();
+      graph_.forEachPredecessor(id_, (pred_id_, pred_) -> {
+        if(!invalidated_.contains(pred_id_)
+            && graph_.getDependencyType(pred_id_, id_) == DependencyType.DATA) {
+          invalidated_.add(pred_id_);
+          stack_.push(pred_id_);
+        }
+      });
+    }
+    return invalidated_;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+
+import java.util.Collection;
+
+/**
+ * Generic interface of a topological order engine
+ *
+ * The engine computes topological order of a graph by cutting of leaves.
+ * A user in a cycle queries leaves until the graph is empty or a cycle
+ * is detected. A cut leaf is opened (in progress) until the user closes
+ * it. Dependencies may be added to nodes which have not been cut yet.
+ *
+ * @param <N> Data associated with graph nodes
+ */
+public interface LeafOrder<N> {
+  /**
+   * A leaf cut from the graph
+   *
+   * @param <N> Data associated with graph nodes
+   */
+  interface Leaf<N> {
+    /**
+     * Close the opened leaf (the node has been processed)
+     */
+    void closeLeaf();
+
+    /**
+     * Get data associated with the node
+     */
+    N getData();
+  }
+
+  /**
+   * Get a leaf from the graph
+   *
+   * @return The cut leaf or null if no leaf is available.
+   * @exception DependencyCycleException If dependency cycle is detected.
+   */
+  Leaf<N> cutLeaf() throws DependencyCycleException;
+
+  /**
+   * Check that all nodes have been already cut and closed
+   */
+  boolean isEmpty();
+
+  /**
+   * Check whether a node exists in the graph
+   */
+  boolean containsNode(ID node_id_);
+
+  /**
+   * Append new node into the underlying graph
+   *
+   * @param node_id_ ID of the new node. It must be unique
+   * @param data_ Data associated with the node
+   */
+  void addNode(ID node_id_, N data_);
+
+  /**
+   * Add new dependency into the graph
+   *
+   * The source node must not be cut yet.
+   *
+   * @param from_ ID of the dependency source node
+   * @param to_ ID of the dependency target node
+   * @return True if the dependency is new
+   * @exception DependencyCycleException If the underlying graph rejects
+   *     the dependency because of a cycle.
+   */
+  boolean addDependency(ID from_, ID to_) throws DependencyCycleException;
+
+  /**
+   * Add several dependencies of one node into the graph
+   *
+   * The source node must not be cut yet. Implementations coalesce
+   * updates of the source node, so this method is cheaper than adding
+   * the dependencies one by one.
+   *
+   * The batch is atomic: if the underlying graph rejects cycles (see
+   * the {@link AcyclicGraph}), all dependencies are checked before
+   * the first one is added.
+   *
+   * @param from_ ID of the dependency source node
+   * @param to_ IDs of the dependency target nodes
+   * @return Number of new dependencies
+   * @exception DependencyCycleException If the underlying graph rejects
+   *     a dependency because of a cycle. No dependency of the batch is
+   *     added in this case.
+   */
+  int addDependencies(ID from_, Collection<ID> to_)
+      throws DependencyCycleException;
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.Map;
+
+/**
+ * Weight (cost) of a graph node
+ *
+ * The weight is an estimated cost of processing of the node. It can be
+ * a static cost or a duration measured in earlier runs. The weight must
+ * not be negative.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+@FunctionalInterface
+public interface NodeWeight<N> {
+  /**
+   * Get weight of a node
+   *
+   * @param node_id_ ID of the node
+   * @param data_ Data associated with the node
+   * @return The weight
+   */
+  long getWeight(ID node_id_, N data_);
+
+  /**
+   * Weight function giving the same weight to all nodes
+   *
+   * The critical path is then the longest path measured in number of nodes.
+   */
+  static <N> NodeWeight<N> uniform() {
+    return (id_, data_) -> 1;
+  }
+
+  /**
+   * Weight function reading weights from a map (e.g. durations from
+   * earlier runs)
+   *
+   * @param weights_ The weights
+   * @param default_ A weight used for nodes missing in the map
+   */
+  static <N> NodeWeight<N> fromMap(Map<ID, Long> weights_, long default_) {
+    return (id_, data_) -> weights_.getOrDefault(id_, default_);
+  }
+}
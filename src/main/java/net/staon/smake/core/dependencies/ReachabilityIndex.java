@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Dependency graph with an index of transitive dependencies
+ *
+ * This class wraps a graph and answers queries whether a node depends
+ * on another node transitively. The index is an interval labelling
+ * (Agrawal, Borgida, Jagadish): the nodes are numbered in post-order
+ * of a DFS, so every subtree of the DFS spanning forest is a continuous
+ * range of numbers. Every node keeps a sorted list of disjoint intervals
+ * of numbers covering exactly the nodes it reaches. The tree reachability
+ * costs one interval, just the dependencies reached through non-tree
+ * edges add more intervals.
+ *
+ * Two labellings are kept: the forward one over the successors answers
+ * the dependency queries, the reverse one over the predecessors answers
+ * the dependent (impact) queries. Hence, {@link #dependsOn(ID, ID)} is
+ * a binary search in O(log I) and both enumerations cost O(I + R), where
+ * I is the number of intervals of the node and R is the number of
+ * reported nodes. No graph traversal is needed.
+ *
+ * The labellings are computed by one DFS per direction in the ctor. Then
+ * they are maintained incrementally: a new dependency merges the intervals
+ * of the target node into the source node and into all nodes depending
+ * on it (and vice versa for the reverse labelling). The propagation stops
+ * at nodes which already reach the merged node. New nodes get new numbers
+ * at the end of the range, the numbering is never recomputed.
+ *
+ * The size of the index depends on the shape of the graph. A forest needs
+ * one interval per node, typical build graphs (mostly trees with shared
+ * libraries) need few intervals per node. The worst case (e.g. a complete
+ * bipartite graph) is still quadratic.
+ *
+ * The index rejects dependency cycles. All modifications must go through
+ * this object, the base graph must not be modified directly.
+ *
+ * @param <N> Type of data associated with graph's nodes
+ */
+public class ReachabilityIndex<N> implements AcyclicGraph<N> {
+  /* -- one direction of the index */
+  private static class Labelling {
+    public int[] numbers;                   /* -- node -> post-order number */
+    public int[] nodes;                     /* -- post-order number -> node */
+    public final ArrayList<int[]> intervals;  /* -- node -> [begin, end]* */
+
+    public Labelling(int capacity_) {
+      numbers = new int[Math.max(capacity_, 16)];
+      nodes = new int[numbers.length];
+      intervals = new ArrayList<>(capacity_);
+    }
+
+    public void assign(int node_, int number_) {
+      if(node_ >= numbers.length) {
+        numbers = Arrays.copyOf(numbers, numbers.length * 2);
+        nodes = Arrays.copyOf(nodes, numbers.length);
+      }
+      numbers[node_] = number_;
+      nodes[number_] = node_;
+    }
+
+    public boolean reaches(int node_, int target_) {
+      return contains(intervals.get(node_), numbers[target_]);
+    }
+  }
+
+  /* -- opened node of the DFS */
+  private static class Frame {
+    public final int node;
+    public final int[] neighbours;
+    public final int low;
+    public int next;
+
+    public Frame(int node_, int[] neighbours_, int low_) {
+      node = node_;
+      neighbours = neighbours_;
+      low = low_;
+      next = 0;
+    }
+  }
+
+  private final Graph<N> base_graph;
+  private final Map<ID, Integer> indices;
+  private final ArrayList<ID> ids;
+  private final Labelling forward;
+  private final Labelling reverse;
+
+  /**
+   * Ctor
+   *
+   * @param base_graph_ The wrapped graph. It may already contain nodes
+   *     and dependencies.
+   * @exception DependencyCycleException If the base graph contains a cycle.
+   */
+  public ReachabilityIndex(Graph<N> base_graph_)
+      throws DependencyCycleException {
+    base_graph = base_graph_;
+    indices = new HashMap<>();
+    ids = new ArrayList<>();
+    base_graph.forEachNode((id_, node_) -> {
+      indices.put(id_, ids.size());
+      ids.add(id_);
+    });
+
+    forward = new Labelling(ids.size());
+    reverse = new Labelling(ids.size());
+    computeLabelling(forward, true);
+    computeLabelling(reverse, false);
+  }
+
+  private void computeLabelling(Labelling labelling_, boolean successors_)
+      throws DependencyCycleException {
+    /* -- Iterative DFS. A node is numbered when all its neighbours are
+     *    finished, so the nodes finished meanwhile (its subtree) occupy
+     *    the range from the counter value at the opening time. Reaching
+     *    an opened node means a cycle - it's checked in the forward
+     *    direction only, the reverse one cannot find anything new. */
+    for(int i_ = 0; i_ < ids.size(); ++i_)
+      labelling_.intervals.add(null);
+    var opened_ = new boolean[ids.size()];
+    var path_ = new ArrayList<Frame>();
+    int counter_ = 0;
+    for(int root_ = 0; root_ < ids.size(); ++root_) {
+      if(opened_[root_])
+        continue;
+
+      opened_[root_] = true;
+      path_.add(new Frame(root_, collectNeighbours(root_, successors_), counter_));
+      while(!path_.isEmpty()) {
+        var top_ = path_.get(path_.size() - 1);
+        if(top_.next < top_.neighbours.length) {
+          int next_ = top_.neighbours[top_.next++];
+          if(!opened_[next_]) {
+            opened_[next_] = true;
+            path_.add(new Frame(
+                next_, collectNeighbours(next_, successors_), counter_));
+          }
+          else if(labelling_.intervals.get(next_) == null) {
+            /* -- the node is opened but not finished, it lies on the path */
+            var cycle_ = new ArrayList<ID>();
+            int i_ = path_.size() - 1;
+            while(path_.get(i_).node != next_)
+              --i_;
+            for(; i_ < path_.size(); ++i_)
+              cycle_.add(ids.get(path_.get(i_).node));
+            cycle_.add(ids.get(next_));
+            throw new DependencyCycleException(cycle_);
+          }
+        }
+        else {
+          /* -- all neighbours are finished, the node reaches its subtree
+           *    and everything its neighbours reach */
+          path_.remove(path_.size() - 1);
+          int number_ = counter_++;
+          labelling_.assign(top_.node, number_);
+          var intervals_ = new int[] {top_.low, number_};
+          for(var neighbour_ : top_.neighbours)
+            intervals_ = union(intervals_, labelling_.intervals.get(neighbour_));
+          labelling_.intervals.set(top_.node, intervals_);
+        }
+      }
+    }
+  }
+
+  private int[] collectNeighbours(int index_, boolean successors_) {
+    var list_ = new ArrayList<Integer>();
+    BiConsumer<ID, Node<N>> fn_ = (id_, node_) -> list_.add(indices.get(id_));
+    if(successors_)
+      base_graph.forEachSuccessor(ids.get(index_), fn_);
+    else
+      base_graph.forEachPredecessor(ids.get(index_), fn_);
+    var result_ = new int[list_.size()];
+    for(int i_ = 0; i_ < result_.length; ++i_)
+      result_[i_] = list_.get(i_);
+    return result_;
+  }
+
+  private static boolean contains(int[] intervals_, int number_) {
+    /* -- binary search of the last interval beginning at most at
+     *    the number */
+    int low_ = 0;
+    int high_ = intervals_.length / 2 - 1;
+    while(low_ <= high_) {
+      int middle_ = (low_ + high_) >>> 1;
+      if(intervals_[2 * middle_] <= number_)
+        low_ = middle_ + 1;
+      else
+        high_ = middle_ - 1;
+    }
+    return high_ >= 0 && intervals_[2 * high_ + 1] >= number_;
+  }
+
+  private static int[] union(int[] left_, int[] right_) {
+    /* -- merge of two sorted interval lists, overlapping and adjacent
+     *    intervals are joined */
+    var result_ = new int[left_.length + right_.length];
+    int size_ = 0;
+    int l_ = 0;
+    int r_ = 0;
+    while(l_ < left_.length || r_ < right_.length) {
+      int[] source_;
+      int index_;
+      if(r_ >= right_.length
+          || (l_ < left_.length && left_[l_] <= right_[r_])) {
+        source_ = left_;
+        index_ = l_;
+        l_ += 2;
+      }
+      else {
+        source_ = right_;
+        index_ = r_;
+        r_ += 2;
+      }
+      if(size_ > 0 && source_[index_] <= result_[size_ - 1] + 1) {
+        result_[size_ - 1] = Math.max(result_[size_ - 1], source_[index_ + 1]);
+      }
+      else {
+        result_[size_++] = source_[index_];
+        result_[size_++] = source_[index_ + 1];
+      }
+    }
+    return size_ == result_.length ? result_ : Arrays.copyOf(result_, size_);
+  }
+
+  private int getIndex(ID id_) {
+    var index_ = indices.get(id_);
+    assert index_ != null;
+    return index_;
+  }
+
+  /**
+   * Check whether a node depends on another node transitively
+   *
+   * @param from_ ID of the dependent node
+   * @param to_ ID of the dependency
+   * @return True if there is a path from @a from_ to @a to_. A node doesn't
+   *     depend on itself.
+   */
+  public boolean dependsOn(ID from_, ID to_) {
+    int from_index_ = getIndex(from_);
+    int to_index_ = getIndex(to_);
+    return from_index_ != to_index_ && forward.reaches(from_index_, to_index_);
+  }
+
+  /**
+   * Evaluate a function on every node which a node depends on transitively
+   *
+   * @param node_id_ ID of the node
+   * @param fn_ The function
+   */
+  public void forEachDependency(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    forEachLabelled(forward, getIndex(node_id_), fn_);
+  }
+
+  /**
+   * Evaluate a function on every node depending on a node transitively
+   *
+   * This is the impact query: the visited nodes are the nodes which must
+   * be rebuilt if the node changes. The query is answered by the reverse
+   * labelling, the base graph is not traversed.
+   *
+   * @param node_id_ ID of the node
+   * @param fn_ The function
+   */
+  public void forEachDependent(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    forEachLabelled(reverse, getIndex(node_id_), fn_);
+  }
+
+  private void forEachLabelled(
+      Labelling labelling_, int index_, BiConsumer<ID, Node<N>> fn_) {
+    var intervals_ = labelling_.intervals.get(index_);
+    for(int i_ = 0; i_ < intervals_.length; i_ += 2) {
+      for(int number_ = intervals_[i_]; number_ <= intervals_[i_ + 1]; ++number_) {
+        int node_ = labelling_.nodes[number_];
+        if(node_ != index_) {
+          var id_ = ids.get(node_);
+          fn_.accept(id_, base_graph.getNode(id_));
+        }
+      }
+    }
+  }
+
+  /**
+   * Get number of intervals of the index
+   *
+   * The value describes the size of the index - it's twice the number
+   * of nodes for a forest.
+   */
+  public long getIntervalCount() {
+    long count_ = 0;
+    for(int i_ = 0; i_ < ids.size(); ++i_)
+      count_ += forward.intervals.get(i_).length / 2
+          + reverse.intervals.get(i_).length / 2;
+    return count_;
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return base_graph.containsNode(node_id_);
+  }
+
+  @Override
+  public void addNode(ID node_id_, N node_data_) {
+    base_graph.addNode(node_id_, node_data_);
+
+    /* -- an isolated node reaches just itself */
+    int index_ = ids.size();
+    indices.put(node_id_, index_);
+    ids.add(node_id_);
+    forward.assign(index_, index_);
+    forward.intervals.add(new int[] {index_, index_});
+    reverse.assign(index_, index_);
+    reverse.intervals.add(new int[] {index_, index_});
+  }
+
+  /**
+   * Add new dependency
+   *
+   * @param from_ ID of the source node
+   * @param to_ ID of the target node
+   * @return True if the dependency has been newly added.
+   * @exception UncheckedDependencyCycleException If the new dependency
+   *     would create a cycle. The graph is not modified in this case.
+   */
+  @Override
+  public boolean addDependency(ID from_, ID to_) {
+    return addDependency(from_, to_, DependencyType.DATA);
+  }
+
+  @Override
+  public boolean addDependency(ID from_, ID to_, DependencyType type_) {
+    try {
+      checkDependency(from_, to_);
+    }
+    catch(DependencyCycleException exc_) {
+      throw new UncheckedDependencyCycleException(exc_);
+    }
+
+    if(!base_graph.addDependency(from_, to_, type_))
+      return false;
+
+    /* -- the source node and its dependents reach everything the target
+     *    node reaches, the target node and its dependencies are reached
+     *    by everything reaching the source node */
+    int from_index_ = getIndex(from_);
+    int to_index_ = getIndex(to_);
+    propagate(forward, from_index_, to_index_, false);
+    propagate(reverse, to_index_, from_index_, true);
+    return true;
+  }
+
+  private void propagate(
+      Labelling labelling_, int start_, int source_, boolean successors_) {
+    /* -- A node already reaching the source node already contains all its
+     *    intervals and so do the nodes reaching it. The source node itself
+     *    is never met, the graph is acyclic. */
+    var merged_ = labelling_.intervals.get(source_);
+    var stack_ = new ArrayDeque<Integer>();
+    stack_.push(start_);
+    while(!stack_.isEmpty()) {
+      int index_ = stack_.pop();
+      if(labelling_.reaches(index_, source_))
+        continue;
+      labelling_.intervals.set(
+          index_, union(labelling_.intervals.get(index_), merged_));
+      BiConsumer<ID, Node<N>> fn_ = (id_, node_) -> stack_.push(indices.get(id_));
+      if(successors_)
+        base_graph.forEachSuccessor(ids.get(index_), fn_);
+      else
+        base_graph.forEachPredecessor(ids.get(index_), fn_);
+    }
+  }
+
+  @Override
+  public void checkDependency(ID from_, ID to_)
+      throws DependencyCycleException {
+    if(from_.equals(to_) || dependsOn(to_, from_))
+      throw new DependencyCycleException(composeCycle(from_, to_));
+  }
+
+  private List<ID> composeCycle(ID from_, ID to_) {
+    /* -- Walk from the target node back to the source node. Every step
+     *    goes to a successor which is the source node or which depends
+     *    on it, so the walk never gets stuck. */
+    var cycle_ = new ArrayList<ID>();
+    cycle_.add(from_);
+    var node_ = to_;
+    while(!node_.equals(from_)) {
+      cycle_.add(node_);
+      var next_ = new ID[] {null};
+      base_graph.forEachSuccessor(node_, (succ_id_, succ_) -> {
+        if(next_[0] == null
+            && (succ_id_.equals(from_) || dependsOn(succ_id_, from_)))
+          next_[0] = succ_id_;
+      });
+      node_ = next_[0];
+    }
+    cycle_.add(from_);
+    return cycle_;
+  }
+
+  @Override
+  public DependencyType getDependencyType(ID from_, ID to_) {
+    return base_graph.getDependencyType(from_, to_);
+  }
+
+  @Override
+  public boolean containsDependency(ID from_, ID to_) {
+    return base_graph.containsDependency(from_, to_);
+  }
+
+  @Override
+  public Node<N> getNode(ID node_id_) {
+    return base_graph.getNode(node_id_);
+  }
+
+  @Override
+  public void forEachNode(BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachNode(fn_);
+  }
+
+  @Override
+  public void forEachPredecessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachPredecessor(node_id_, fn_);
+  }
+
+  @Override
+  public void forEachSuccessor(ID node_id_, BiConsumer<ID, Node<N>> fn_) {
+    base_graph.forEachSuccessor(node_id_, fn_);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Symbol table of graph IDs
+ *
+ * The table interns IDs - it maps each string value to one canonical ID
+ * object. The canonical object has precomputed hash, and it gets a stable
+ * integer handle. Hence, comparison of interned IDs is mostly just
+ * the identity check.
+ *
+ * The table is thread-safe.
+ */
+public final class SymbolTable {
+  private final ConcurrentHashMap<String, ID> ids;
+  private final AtomicInteger next_handle;
+
+  /**
+   * Ctor - empty table
+   */
+  public SymbolTable() {
+    ids = new ConcurrentHashMap<>();
+    next_handle = new AtomicInteger(0);
+  }
+
+  /**
+   * Get canonical ID of a string value
+   *
+   * @param id_ The string value
+   * @return The canonical ID. It's created if the value isn't interned yet.
+   */
+  public ID intern(String id_) {
+    var interned_ = ids.get(id_);
+    if(interned_ != null)
+      return interned_;
+    return ids.computeIfAbsent(
+        id_, (key_) -> new ID(key_, next_handle.getAndIncrement()));
+  }
+
+  /**
+   * Get canonical object of an ID
+   *
+   * @param id_ The ID
+   * @return The canonical ID. It's created if the ID isn't interned yet.
+   */
+  public ID intern(ID id_) {
+    var interned_ = ids.get(id_.asString());
+    if(interned_ != null)
+      return interned_;
+    return intern(id_.asString());
+  }
+
+  /**
+   * Get number of interned IDs
+   */
+  public int size() {
+    return ids.size();
+  }
+}
@@ -20,7 +20,9 @@ package net.staon.smake.core.dependencies;
 
 import net.staon.smake.core.exception.DependencyCycleException;
 import net.staon.smake.core.heap.BinomialHeap;
+import net.staon.smake.core.heap.DaryHeap;
 import net.staon.smake.core.heap.Heap;
+import net.staon.smake.core.heap.HeapIndexer;
 
 import java.util.*;
 
@@ -36,11 +38,37 @@ import java.util.*;
  * in progress - new dependency must be added just between nodes
  * which have not been processed yet.
  *
+ * The order of returned leaves may be driven by weights of nodes. If
+ * the weights are specified, the leaf with the longest remaining path
+ * to the roots of the graph (the critical path) is returned first. Without
+ * the weights the order of leaves is arbitrary.
+ *
+ * The heap of nodes may be selected by the {@link HeapType}. The binomial
+ * heap is the default one, the d-ary heap avoids allocations and map
+ * lookups of the binomial heap.
+ *
+ * The dynamic additions modify the underlying graph. If several orders
+ * with dynamic additions share one graph, create each of them over its own
+ * {@link GraphOverlay}. The overlay keeps the additions private.
+ *
+ * The class is not thread-safe. Use the {@link TopologicalOrderConcurrent}
+ * wrapper if the order is processed by several workers.
+ *
  * @param <N> Data associated with graph nodes
  */
-public class TopologicalOrder<N> {
+public class TopologicalOrder<N> implements LeafOrder<N> {
   private final Graph<N> graph;
   
+  /**
+   * Implementation of the heap of nodes
+   */
+  public enum HeapType {
+    /** Binomial heap ({@link BinomialHeap}) */
+    BINOMIAL,
+    /** D-ary heap with intrusive handles ({@link DaryHeap}) */
+    DARY,
+  }
+  
   private enum Color {
     WHITE,
     GREY,
@@ -51,10 +79,27 @@ public class TopologicalOrder<N> {
     public ID id;
     public Color color;
     public int out_degree;
+    public long weight;
+    public long priority;   /* -- length of the remaining critical path */
+    public int heap_index = HeapIndexer.NOT_IN_HEAP;
   }
   
-  private final Map<ID, Node> nodes;
-  private final Heap<Node> nodes_heap;
+  private static final HeapIndexer<Node> NODE_INDEXER = new HeapIndexer<>() {
+    @Override
+    public int getHeapIndex(Node item_) {
+      return item_.heap_index;
+    }
+    
+    @Override
+    public void setHeapIndex(Node item_, int index_) {
+      item_.heap_index = index_;
+    }
+  };
+  
+  private final NodeWeight<N> weights;
+  private Map<ID, Node> nodes;
+  private final HeapType heap_type;
+  private Heap<Node> nodes_heap;
   private final Set<Node> grey_nodes;
   
   /**
@@ -63,25 +108,80 @@ public class TopologicalOrder<N> {
    * @param graph_ The graph which the order is computed for.
    */
   public TopologicalOrder(Graph<N> graph_) {
+    this(graph_, null);
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   * @param weights_ Weights of graph nodes used to prioritize leaves
+   *     lying on the critical path. It may be null, if the order
+   *     of leaves doesn't matter.
+   */
+  public TopologicalOrder(Graph<N> graph_, NodeWeight<N> weights_) {
+    this(graph_, weights_, HeapType.BINOMIAL);
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   * @param weights_ Weights of graph nodes used to prioritize leaves
+   *     lying on the critical path. It may be null, if the order
+   *     of leaves doesn't matter.
+   * @param heap_type_ Implementation of the heap of nodes
+   */
+  public TopologicalOrder(
+      Graph<N> graph_, NodeWeight<N> weights_, HeapType heap_type_) {
     graph = graph_;
+    weights = weights_;
     nodes = new HashMap<>();
-    nodes_heap = new BinomialHeap<>(Comparator.comparingInt(n -> n.out_degree));
+    heap_type = heap_type_;
+    nodes_heap = createHeap();
     grey_nodes = new HashSet<>();
     
-    /* -- fill the heap */
-    graph.forEachNode(this::insertNewNode);
+    /* -- compute priorities of the nodes */
+    final Map<ID, Long> priorities_;
+    if(weights != null)
+      priorities_ = CriticalPath.computeRemainingPaths(graph, weights);
+    else
+      priorities_ = null;
+    
+    /* -- fill the heap, all nodes are inserted at once */
+    var new_nodes_ = new ArrayList<Node>();
+    graph.forEachNode((id_, node_) -> new_nodes_.add(createNode(
+        id_, node_, priorities_ != null ? priorities_.get(id_) : 0)));
+    nodes_heap.insertAll(new_nodes_);
   }
   
-  private void insertNewNode(ID id_, GraphFull.Node<N> node_) {
+  private Heap<Node> createHeap() {
+    var comparator_ = Comparator.<Node>comparingInt(n -> n.out_degree)
+        .thenComparingLong(n -> -n.priority);
+    return switch(heap_type) {
+      case BINOMIAL -> new BinomialHeap<>(comparator_);
+      case DARY -> new DaryHeap<>(comparator_, NODE_INDEXER);
+    };
+  }
+  
+  private void insertNewNode(ID id_, GraphFull.Node<N> node_, long priority_) {
+    nodes_heap.insert(createNode(id_, node_, priority_));
+  }
+  
+  private Node createNode(ID id_, GraphFull.Node<N> node_, long priority_) {
     var to_node_ = new Node();
     to_node_.id = id_;
     to_node_.color = Color.WHITE;
     to_node_.out_degree = node_.getOutDegree();
+    if(weights != null) {
+      to_node_.weight = weights.getWeight(id_, node_.getData());
+      to_node_.priority = Math.max(priority_, to_node_.weight);
+    }
     nodes.put(id_, to_node_);
-    nodes_heap.insert(to_node_);
+    return to_node_;
   }
   
-  public class OpenedLeaf {
+  public class OpenedLeaf implements LeafOrder.Leaf<N> {
     private Node node;
     private final N data;
     
@@ -96,6 +196,7 @@ public class TopologicalOrder<N> {
      * This method makes the node black, and it decreases out degree of
      * all predecessors.
      */
+    @Override
     public void closeLeaf() {
       assert node != null;
       assert node.color == Color.GREY;
@@ -117,6 +218,7 @@ public class TopologicalOrder<N> {
       node = null;
     }
     
+    @Override
     public N getData() {
       return data;
     }
@@ -128,6 +230,7 @@ public class TopologicalOrder<N> {
    * @return The cut leaf or null if no leaf is available.
    * @exception DependencyCycleException If dependency cycle is detected.
    */
+  @Override
   public OpenedLeaf cutLeaf() throws DependencyCycleException {
     if(nodes_heap.isEmpty())
       return null;
@@ -145,7 +248,8 @@ public class TopologicalOrder<N> {
       if(grey_nodes.isEmpty()) {
         /* -- There are no in-progress nodes but there is no leaf. A cycle
          *    is detected. */
-        throw new DependencyCycleException();
+        throw new DependencyCycleException(CycleFinder.findCycle(
+            graph, (id_) -> getColor(id_) == Color.WHITE));
       }
       return null;
     }
@@ -154,13 +258,118 @@ public class TopologicalOrder<N> {
   /**
    * Check that all nodes have been already cut
    */
+  @Override
   public boolean isEmpty() {
     return nodes_heap.isEmpty() && grey_nodes.isEmpty();
   }
   
+  /**
+   * Mark nodes as processed without cutting them
+   *
+   * The clean nodes are made black and removed from the heap one by one.
+   * The out degrees of their white dependents are fixed by a pass over
+   * the predecessors of the clean nodes. Hence, the cost is proportional
+   * to the clean nodes and their edges. If most of the graph is clean
+   * (an incremental build), use {@link #retireAllExcept(Collection)}
+   * which walks just the dirty nodes.
+   *
+   * All dependencies of a clean node must be clean too (or already
+   * processed). The result is undefined otherwise.
+   *
+   * @param clean_ IDs of the clean nodes. All of them must be WHITE.
+   */
+  public void retireNodes(Set<ID> clean_) {
+    for(var id_ : clean_) {
+      var node_ = nodes.get(id_);
+      assert node_ != null && node_.color == Color.WHITE;
+      assert isRetirable(id_, clean_);
+      node_.color = Color.BLACK;
+      nodes_heap.remove(node_);
+    }
+    
+    /* -- the retired nodes are not closed, their white predecessors
+     *    must forget them */
+    for(var id_ : clean_) {
+      graph.forEachPredecessor(id_, (pred_id_, g_node_) -> {
+        var pred_ = nodes.get(pred_id_);
+        if(pred_ != null && pred_.color == Color.WHITE) {
+          --pred_.out_degree;
+          nodes_heap.update(pred_);
+        }
+      });
+    }
+  }
+  
+  private boolean isRetirable(ID id_, Set<ID> clean_) {
+    var retirable_ = new boolean[] {true};
+    graph.forEachSuccessor(id_, (succ_id_, succ_node_) -> {
+      if(!clean_.contains(succ_id_) && getColor(succ_id_) != Color.BLACK)
+        retirable_[0] = false;
+    });
+    return retirable_[0];
+  }
+  
+  /**
+   * Mark all nodes except the dirty ones as processed
+   *
+   * This is the counterpart of the {@link #retireNodes(Set)} for
+   * incremental builds where most of the graph is clean. Just the dirty
+   * nodes and their edges are visited: the dirty nodes are kept in a new
+   * map of nodes and in a new heap, the other nodes are dropped. A node
+   * missing in the map is processed (black).
+   *
+   * No node may be in progress (GREY) and all dependents of a dirty node
+   * must be dirty too. The result is undefined otherwise.
+   *
+   * @param dirty_ IDs of the dirty nodes. All of them must be WHITE.
+   */
+  public void retireAllExcept(Collection<ID> dirty_) {
+    assert grey_nodes.isEmpty();
+    
+    var retained_ = new HashMap<ID, Node>();
+    for(var id_ : dirty_) {
+      var node_ = nodes.get(id_);
+      assert node_ != null && node_.color == Color.WHITE;
+      retained_.put(id_, node_);
+    }
+    
+    /* -- the degrees count just the dirty dependencies, the other ones
+     *    are processed */
+    for(var node_ : retained_.values()) {
+      var degree_ = new int[] {0};
+      graph.forEachSuccessor(node_.id, (succ_id_, succ_) -> {
+        if(retained_.containsKey(succ_id_))
+          ++degree_[0];
+      });
+      assert isRetainable(node_.id, retained_);
+      node_.out_degree = degree_[0];
+      node_.heap_index = HeapIndexer.NOT_IN_HEAP;
+    }
+    
+    nodes = retained_;
+    nodes_heap = createHeap();
+    nodes_heap.insertAll(retained_.values());
+  }
+  
+  private boolean isRetainable(ID id_, Map<ID, Node> retained_) {
+    var retainable_ = new boolean[] {true};
+    graph.forEachPredecessor(id_, (pred_id_, pred_node_) -> {
+      if(!retained_.containsKey(pred_id_))
+        retainable_[0] = false;
+    });
+    return retainable_[0];
+  }
+  
+  private Color getColor(ID id_) {
+    /* -- nodes dropped by retireAllExcept() are processed */
+    var node_ = nodes.get(id_);
+    return node_ != null ? node_.color : Color.BLACK;
+  }
+  
   /**
    * Check whether a node exists in the graph
    */
+  @Override
   public boolean containsNode(ID node_id_) {
     return graph.containsNode(node_id_);
   }
@@ -168,16 +377,19 @@ public class TopologicalOrder<N> {
   /**
    * Append new node into the underlying graph
    *
-   * Warning! This method modifies the underlying graph. Just one topological
-   * order object may exist if this method is used!
+   * The node is added into the graph the order works over. Orders which
+   * share one base graph must work over their own {@link GraphOverlay}
+   * each, then the addition stays private to this order and the base graph
+   * is not modified.
    *
    * @param node_id_ ID of the new node. It must be unique
    * @param data_ Data associated with the node
    */
+  @Override
   public void addNode(ID node_id_, N data_) {
     graph.addNode(node_id_, data_);
     var g_node_ = graph.getNode(node_id_);
-    insertNewNode(node_id_, g_node_);
+    insertNewNode(node_id_, g_node_, 0);
   }
   
   /**
@@ -187,33 +399,112 @@ public class TopologicalOrder<N> {
    * must be WHITE as dependency cannot be added to an already processed
    * or in-progress node.
    *
-   * Warning! This method modifies the underlying graph. Just one topological
-   * order object may exist if this method is used!
+   * The dependency is added into the graph the order works over. Orders
+   * which share one base graph must work over their own
+   * {@link GraphOverlay} each, then the addition stays private to this
+   * order and the base graph is not modified.
    *
    * @param from_ ID of the dependency source node
    * @param to_ ID of the dependency target node
    */
-  public boolean addDependency(ID from_, ID to_) {
+  @Override
+  public boolean addDependency(ID from_, ID to_)
+      throws DependencyCycleException {
     var to_from_ = nodes.get(from_);
     assert to_from_ != null;
     assert to_from_.color == Color.WHITE;
     
     var to_to_ = nodes.get(to_);
-    assert to_to_ != null;
+    assert to_to_ != null || graph.containsNode(to_);  /* -- or retired */
+    var to_color_ = getColor(to_);
     
-    if(graph.addDependency(from_, to_)) {
+    if(AcyclicGraph.addDependencyChecked(graph, from_, to_)) {
       /* -- The dependency is new. Increase out degree of the source node
        *    only if the target source has not been processed yet - the degree
        *    is decreased during closing of the target node. */
-      if(to_to_.color != Color.BLACK) {
+      if(to_color_ != Color.BLACK) {
         ++to_from_.out_degree;
         nodes_heap.update(to_from_);
       }
       
+      /* -- The target node lies on a longer path now. Just the target
+       *    node is updated, the change is not propagated deeper, so
+       *    the priorities are only estimated for dynamically added
+       *    dependencies. */
+      if(weights != null && to_color_ == Color.WHITE) {
+        var priority_ = to_to_.weight + to_from_.priority;
+        if(priority_ > to_to_.priority) {
+          to_to_.priority = priority_;
+          nodes_heap.update(to_to_);
+        }
+      }
+      
       return true;
     }
     else {
       return false;
     }
   }
+  
+  /**
+   * Add several dependencies of one node into the graph
+   *
+   * The out degree of the source node is changed just once, so the node
+   * is moved in the heap once regardless of the number of dependencies.
+   * The raised priorities of the targets are applied after the degree,
+   * every target is moved in the heap at most once.
+   *
+   * The dependency is added into the graph the order works over. Orders
+   * which share one base graph must work over their own
+   * {@link GraphOverlay} each, then the addition stays private to this
+   * order and the base graph is not modified.
+   *
+   * @param from_ ID of the dependency source node. The node must be WHITE.
+   * @param to_ IDs of the dependency target nodes
+   * @return Number of new dependencies
+   */
+  @Override
+  public int addDependencies(ID from_, Collection<ID> to_)
+      throws DependencyCycleException {
+    var to_from_ = nodes.get(from_);
+    assert to_from_ != null;
+    assert to_from_.color == Color.WHITE;
+    
+    /* -- check the whole batch first, so the dependencies are added
+     *    all or none */
+    AcyclicGraph.checkDependencies(graph, from_, to_);
+    
+    int count_ = 0;
+    int degree_delta_ = 0;
+    var targets_ = new ArrayList<Node>();
+    for(var target_ : to_) {
+      var to_to_ = nodes.get(target_);
+      assert to_to_ != null || graph.containsNode(target_);
+      var to_color_ = getColor(target_);
+      
+      if(AcyclicGraph.addDependencyChecked(graph, from_, target_)) {
+        ++count_;
+        if(to_color_ != Color.BLACK)
+          ++degree_delta_;
+        if(weights != null && to_color_ == Color.WHITE)
+          targets_.add(to_to_);
+      }
+    }
+    
+    if(degree_delta_ > 0) {
+      to_from_.out_degree += degree_delta_;
+      nodes_heap.update(to_from_);
+    }
+    
+    /* -- the new dependencies are unique, so every target is updated
+     *    once. See addDependency() for the estimation. */
+    for(var to_to_ : targets_) {
+      var priority_ = to_to_.weight + to_from_.priority;
+      if(priority_ > to_to_.priority) {
+        to_to_.priority = priority_;
+        nodes_heap.update(to_to_);
+      }
+    }
+    return count_;
+  }
 }
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.SMakeException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe topological order shared by several workers
+ *
+ * This class wraps a topological order engine and makes it usable by many worker
+ * threads at once. All workers cut and close leaves of one order. If there
+ * is no leaf available at the moment, the worker is blocked until another
+ * worker closes its leaf (and new leaves may appear) or until the order
+ * is finished.
+ *
+ * Be careful, a worker must not keep an opened leaf while it's cutting
+ * another one. If all workers do it, they can block each other forever.
+ *
+ * @param <N> Data associated with graph nodes
+ */
+public class TopologicalOrderConcurrent<N> {
+  private final LeafOrder<N> order;
+  private final ReentrantLock lock;
+  private final Condition changed;
+  private boolean aborted;
+
+  /**
+   * Processing function of one graph node
+   *
+   * @param <N> Data associated with graph nodes
+   */
+  @FunctionalInterface
+  public interface LeafProcessor<N> {
+    /**
+     * Process one node of the graph
+     *
+     * @param data_ Data associated with the node
+     */
+    void processLeaf(N data_) throws SMakeException;
+  }
+
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   */
+  public TopologicalOrderConcurrent(Graph<N> graph_) {
+    this(new TopologicalOrder<>(graph_));
+  }
+
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   * @param weights_ Weights of graph nodes used to prioritize leaves
+   *     lying on the critical path.
+   */
+  public TopologicalOrderConcurrent(Graph<N> graph_, NodeWeight<N> weights_) {
+    this(new TopologicalOrder<>(graph_, weights_));
+  }
+
+  /**
+   * Ctor
+   *
+   * @param order_ The wrapped topological order engine. The engine must
+   *     not be used directly since this moment.
+   */
+  public TopologicalOrderConcurrent(LeafOrder<N> order_) {
+    order = order_;
+    lock = new ReentrantLock();
+    changed = lock.newCondition();
+    aborted = false;
+  }
+
+  public class OpenedLeaf {
+    private LeafOrder.Leaf<N> leaf;
+
+    private OpenedLeaf(LeafOrder.Leaf<N> leaf_) {
+      leaf = leaf_;
+    }
+
+    /**
+     * Close opened graph node
+     *
+     * The method closes the node and wakes up all waiting workers as
+     * some new leaves may be available now.
+     */
+    public void closeLeaf() {
+      assert leaf != null;
+
+      lock.lock();
+      try {
+        leaf.closeLeaf();
+        leaf = null;
+        changed.signalAll();
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+
+    public N getData() {
+      return leaf.getData();
+    }
+  }
+
+  /**
+   * Get a leaf from the graph
+   *
+   * The method blocks the calling thread until a leaf is available.
+   *
+   * @return The cut leaf or null if the order is finished (all nodes have
+   *     been processed) or the order has been aborted.
+   * @exception DependencyCycleException If dependency cycle is detected.
+   * @exception InterruptedException If the waiting thread is interrupted.
+   */
+  public OpenedLeaf cutLeaf()
+      throws DependencyCycleException, InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while(true) {
+        if(aborted || order.isEmpty())
+          return null;
+
+        var leaf_ = order.cutLeaf();
+        if(leaf_ != null)
+          return new OpenedLeaf(leaf_);
+
+        /* -- there is no leaf, wait until some opened node is closed */
+        changed.await();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get a leaf from the graph without blocking
+   *
+   * @return The cut leaf or null if no leaf is available.
+   * @exception DependencyCycleException If dependency cycle is detected.
+   */
+  public OpenedLeaf tryCutLeaf() throws DependencyCycleException {
+    lock.lock();
+    try {
+      if(aborted)
+        return null;
+      var leaf_ = order.cutLeaf();
+      return leaf_ != null ? new OpenedLeaf(leaf_) : null;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Abort the order
+   *
+   * All waiting workers are woken up and no other leaf is returned
+   * since this moment.
+   */
+  public void abort() {
+    lock.lock();
+    try {
+      aborted = true;
+      changed.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Check that all nodes have been already cut and closed
+   */
+  public boolean isEmpty() {
+    lock.lock();
+    try {
+      return order.isEmpty();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Check whether a node exists in the graph
+   */
+  public boolean containsNode(ID node_id_) {
+    lock.lock();
+    try {
+      return order.containsNode(node_id_);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Append new node into the underlying graph
+   *
+   * @param node_id_ ID of the new node. It must be unique
+   * @param data_ Data associated with the node
+   * @see LeafOrder#addNode(ID, Object)
+   */
+  public void addNode(ID node_id_, N data_) {
+    lock.lock();
+    try {
+      order.addNode(node_id_, data_);
+      changed.signalAll();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add new dependency into the graph
+   *
+   * @param from_ ID of the dependency source node
+   * @param to_ ID of the dependency target node
+   * @see LeafOrder#addDependency(ID, ID)
+   */
+  public boolean addDependency(ID from_, ID to_)
+      throws DependencyCycleException {
+    lock.lock();
+    try {
+      return order.addDependency(from_, to_);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add several dependencies of one node into the graph
+   *
+   * The dependencies are added atomically - other workers cannot cut
+   * a leaf while the dependencies are being inserted. This method is
+   * intended for dependencies discovered during processing of the graph
+   * (e.g. included headers reported by a compiler).
+   *
+   * @param from_ ID of the dependency source node. The node must not be
+   *     cut yet.
+   * @param to_ IDs of the dependency target nodes
+   * @return Number of new dependencies
+   * @see LeafOrder#addDependencies(ID, Collection)
+   */
+  public int addDependencies(ID from_, Collection<ID> to_)
+      throws DependencyCycleException {
+    lock.lock();
+    try {
+      return order.addDependencies(from_, to_);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Process entire graph by a pool of worker threads
+   *
+   * The method starts @a workers_ threads. Each of them cuts leaves and
+   * passes them to the @a processor_ until the order is finished. If
+   * the processor fails the order is aborted and the first failure is
+   * rethrown.
+   *
+   * @param workers_ Number of worker threads
+   * @param processor_ Processing function of graph nodes
+   */
+  public void process(int workers_, LeafProcessor<N> processor_)
+      throws SMakeException, InterruptedException {
+    assert workers_ > 0;
+
+    var failure_ = new Throwable[1];
+    var threads_ = new ArrayList<Thread>(workers_);
+    for(int i_ = 0; i_ < workers_; ++i_) {
+      var thread_ = new Thread(() -> {
+        try {
+          OpenedLeaf leaf_;
+          while((leaf_ = cutLeaf()) != null) {
+            processor_.processLeaf(leaf_.getData());
+            leaf_.closeLeaf();
+          }
+        }
+        catch(Throwable exc_) {
+          synchronized(failure_) {
+            if(failure_[0] == null)
+              failure_[0] = exc_;
+          }
+          abort();
+        }
+      });
+      threads_.add(thread_);
+      thread_.start();
+    }
+
+    try {
+      for(var thread_ : threads_) {
+        thread_.join();
+      }
+    }
+    catch(InterruptedException exc_) {
+      abort();
+      for(var thread_ : threads_) {
+        thread_.interrupt();
+      }
+      throw exc_;
+    }
+
+    /* -- rethrow the failure */
+    Throwable exc_;
+    synchronized(failure_) {
+      exc_ = failure_[0];
+    }
+    if(exc_ instanceof SMakeException smake_exc_)
+      throw smake_exc_;
+    if(exc_ instanceof InterruptedException interrupted_exc_)
+      throw interrupted_exc_;
+    if(exc_ instanceof RuntimeException runtime_exc_)
+      throw runtime_exc_;
+    if(exc_ instanceof Error error_)
+      throw error_;
+  }
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computation of the graph topological order over dense node indices
+ *
+ * This class works in the same way as the {@link TopologicalOrder}, but
+ * it requires a graph with dense node indices ({@link GraphIndexed}).
+ * The state of the nodes (colors, out degrees and priorities) is kept
+ * in primitive arrays indexed by the node indices and the heap of nodes
+ * is a d-ary heap of the indices. Hence, neither cutting nor closing
+ * of a leaf look up any hash map or allocate any node object.
+ *
+ * The class is not thread-safe. Use the {@link TopologicalOrderConcurrent}
+ * wrapper if the order is processed by several workers.
+ *
+ * @param <N> Data associated with graph nodes
+ */
+public class TopologicalOrderIndexed<N> implements LeafOrder<N> {
+  /* -- zero color marks indices without any node */
+  private static final byte WHITE = 1;
+  private static final byte GREY = 2;
+  private static final byte BLACK = 3;
+  private static final byte RETIRED = 4;   /* -- temporary, see retireNodes() */
+
+  private static final int NOT_IN_HEAP = -1;
+  private static final int HEAP_ARITY = 4;
+
+  private final GraphIndexed<N> graph;
+  private final NodeWeight<N> weights;
+  private byte[] colors;
+  private int[] out_degrees;
+  private long[] node_weights;
+  private long[] priorities;   /* -- lengths of the remaining critical paths */
+  private int[] heap_positions;
+  private int[] heap;
+  private int heap_size;
+  private int grey_count;
+
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   */
+  public TopologicalOrderIndexed(GraphIndexed<N> graph_) {
+    this(graph_, null);
+  }
+
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   * @param weights_ Weights of graph nodes used to prioritize leaves
+   *     lying on the critical path. It may be null, if the order
+   *     of leaves doesn't matter.
+   */
+  public TopologicalOrderIndexed(GraphIndexed<N> graph_, NodeWeight<N> weights_) {
+    graph = graph_;
+    weights = weights_;
+    var limit_ = graph.getIndexLimit();
+    colors = new byte[limit_];
+    out_degrees = new int[limit_];
+    node_weights = new long[limit_];
+    priorities = new long[limit_];
+    heap_positions = new int[limit_];
+    Arrays.fill(heap_positions, NOT_IN_HEAP);
+    heap = new int[Math.max(16, limit_)];
+    heap_size = 0;
+    grey_count = 0;
+
+    /* -- compute priorities of the nodes */
+    final Map<ID, Long> remaining_paths_;
+    if(weights != null)
+      remaining_paths_ = CriticalPath.computeRemainingPaths(graph, weights);
+    else
+      remaining_paths_ = null;
+
+    /* -- initialize the nodes and build the heap at once */
+    graph.forEachNodeIndex(index_ -> {
+      initNode(index_, remaining_paths_ != null
+          ? remaining_paths_.get(graph.getID(index_)) : 0);
+      heap[heap_size] = index_;
+      heap_positions[index_] = heap_size;
+      ++heap_size;
+    });
+    for(int i_ = (heap_size - 2) / HEAP_ARITY; i_ >= 0 && heap_size > 0; --i_)
+      siftDown(heap[i_], i_);
+  }
+
+  private void initNode(int index_, long remaining_path_) {
+    var node_ = graph.getNode(index_);
+    colors[index_] = WHITE;
+    out_degrees[index_] = node_.getOutDegree();
+    if(weights != null) {
+      node_weights[index_] = weights.getWeight(graph.getID(index_), node_.getData());
+      priorities[index_] = Math.max(remaining_path_, node_weights[index_]);
+    }
+  }
+
+  public class OpenedLeaf implements LeafOrder.Leaf<N> {
+    private int index;
+    private final N data;
+
+    private OpenedLeaf(int index_, N data_) {
+      index = index_;
+      data = data_;
+    }
+
+    /**
+     * Close opened graph node
+     *
+     * This method makes the node black, and it decreases out degree of
+     * all predecessors.
+     */
+    @Override
+    public void closeLeaf() {
+      assert index >= 0;
+      assert colors[index] == GREY;
+
+      colors[index] = BLACK;
+      --grey_count;
+
+      /* -- decrease out degree of all predecessors */
+      graph.forEachPredecessorIndex(index, pred_ -> {
+        assert colors[pred_] == WHITE && out_degrees[pred_] > 0;
+        --out_degrees[pred_];
+        siftUp(pred_, heap_positions[pred_]);
+      });
+
+      index = -1;
+    }
+
+    @Override
+    public N getData() {
+      return data;
+    }
+  }
+
+  /**
+   * Get a leaf from the graph
+   *
+   * @return The cut leaf or null if no leaf is available.
+   * @exception DependencyCycleException If dependency cycle is detected.
+   */
+  @Override
+  public OpenedLeaf cutLeaf() throws DependencyCycleException {
+    if(heap_size == 0)
+      return null;
+
+    var leaf_ = heap[0];
+    assert out_degrees[leaf_] >= 0;
+    if(out_degrees[leaf_] == 0) {
+      /* -- the node at the top of the heap is a leaf */
+      pollMin();
+      colors[leaf_] = GREY;
+      ++grey_count;
+      return new OpenedLeaf(leaf_, graph.getNode(leaf_).getData());
+    }
+    else {
+      if(grey_count == 0) {
+        /* -- There are no in-progress nodes but there is no leaf. A cycle
+         *    is detected. */
+        throw new DependencyCycleException(CycleFinder.findCycle(
+            graph, (id_) -> colors[graph.getIndex(id_)] == WHITE));
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Check that all nodes have been already cut
+   */
+  @Override
+  public boolean isEmpty() {
+    return heap_size == 0 && grey_count == 0;
+  }
+
+  /**
+   * Mark nodes as processed without cutting them
+   *
+   * The clean nodes are made black and removed from the heap one by one,
+   * the out degrees of their white dependents are fixed by a pass over
+   * the predecessors of the clean nodes. See
+   * {@link TopologicalOrder#retireNodes(Set)}.
+   *
+   * @param clean_ IDs of the clean nodes. All of them must be WHITE and
+   *     all their dependencies must be clean too (or already processed).
+   */
+  public void retireNodes(Set<ID> clean_) {
+    /* -- the retired nodes are marked by a temporary color, so the pass
+     *    over the edges doesn't need to look up the set */
+    var retired_ = new int[clean_.size()];
+    int count_ = 0;
+    for(var id_ : clean_) {
+      var index_ = graph.getIndex(id_);
+      assert index_ >= 0 && colors[index_] == WHITE;
+      colors[index_] = RETIRED;
+      removeFromHeap(index_);
+      retired_[count_++] = index_;
+    }
+
+    /* -- fix the degrees of the white predecessors */
+    for(var index_ : retired_) {
+      assert isRetirable(index_);
+      graph.forEachPredecessorIndex(index_, pred_ -> {
+        if(colors[pred_] == WHITE) {
+          --out_degrees[pred_];
+          siftUp(pred_, heap_positions[pred_]);
+        }
+      });
+    }
+
+    for(var index_ : retired_)
+      colors[index_] = BLACK;
+  }
+
+  private boolean isRetirable(int index_) {
+    var retirable_ = new boolean[] {true};
+    graph.forEachSuccessorIndex(index_, succ_ -> {
+      if(colors[succ_] != RETIRED && colors[succ_] != BLACK)
+        retirable_[0] = false;
+    });
+    return retirable_[0];
+  }
+
+  /**
+   * Mark all nodes except the dirty ones as processed
+   *
+   * Just the dirty nodes and their edges are visited, the heap is rebuilt
+   * from the dirty nodes. The other nodes are made black by one fill
+   * of the color array, no graph traversal is involved. See
+   * {@link TopologicalOrder#retireAllExcept(Collection)}.
+   *
+   * @param dirty_ IDs of the dirty nodes. All of them must be WHITE and
+   *     all their dependents must be dirty too. No node may be in progress.
+   */
+  public void retireAllExcept(Collection<ID> dirty_) {
+    assert grey_count == 0;
+    assert dirty_.stream().allMatch(id_ -> colors[graph.getIndex(id_)] == WHITE);
+
+    /* -- the positions of the black nodes are never read, just the dirty
+     *    nodes are placed into the new heap */
+    Arrays.fill(colors, BLACK);
+    heap_size = 0;
+    for(var id_ : dirty_) {
+      var index_ = graph.getIndex(id_);
+      if(colors[index_] == WHITE)
+        continue;   /* -- duplicated ID */
+      colors[index_] = WHITE;
+      place(index_, heap_size++);
+    }
+
+    /* -- the degrees count just the dirty dependencies */
+    for(int i_ = 0; i_ < heap_size; ++i_) {
+      var index_ = heap[i_];
+      var degree_ = new int[] {0};
+      graph.forEachSuccessorIndex(index_, succ_ -> {
+        if(colors[succ_] == WHITE)
+          ++degree_[0];
+      });
+      assert isRetainable(index_);
+      out_degrees[index_] = degree_[0];
+    }
+    for(int i_ = (heap_size - 2) / HEAP_ARITY; i_ >= 0 && heap_size > 0; --i_)
+      siftDown(heap[i_], i_);
+  }
+
+  private boolean isRetainable(int index_) {
+    var retainable_ = new boolean[] {true};
+    graph.forEachPredecessorIndex(index_, pred_ -> {
+      if(colors[pred_] != WHITE)
+        retainable_[0] = false;
+    });
+    return retainable_[0];
+  }
+
+  /**
+   * Check whether a node exists in the graph
+   */
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return graph.containsNode(node_id_);
+  }
+
+  /**
+   * Append new node into the underlying graph
+   *
+   * The node is added into the underlying graph, which must support
+   * modifications. The overlay doesn't provide dense indices, so orders
+   * sharing one indexed graph must not add anything - use
+   * the {@link TopologicalOrder} over a {@link GraphOverlay} if each order
+   * needs private additions.
+   *
+   * @param node_id_ ID of the new node. It must be unique
+   * @param data_ Data associated with the node
+   */
+  @Override
+  public void addNode(ID node_id_, N data_) {
+    graph.addNode(node_id_, data_);
+    var index_ = graph.getIndex(node_id_);
+    ensureCapacity(graph.getIndexLimit());
+    initNode(index_, 0);
+    if(heap_size == heap.length)
+      heap = Arrays.copyOf(heap, heap_size * 2);
+    siftUp(index_, heap_size++);
+  }
+
+  private void ensureCapacity(int limit_) {
+    if(limit_ <= colors.length)
+      return;
+
+    var capacity_ = Math.max(limit_, colors.length * 2);
+    colors = Arrays.copyOf(colors, capacity_);
+    out_degrees = Arrays.copyOf(out_degrees, capacity_);
+    node_weights = Arrays.copyOf(node_weights, capacity_);
+    priorities = Arrays.copyOf(priorities, capacity_);
+    var old_length_ = heap_positions.length;
+    heap_positions = Arrays.copyOf(heap_positions, capacity_);
+    Arrays.fill(heap_positions, old_length_, capacity_, NOT_IN_HEAP);
+  }
+
+  /**
+   * Add new dependency into the graph
+   *
+   * The dependency is added into the underlying graph, which must support
+   * modifications. See {@link #addNode(ID, Object)} for orders sharing one
+   * graph.
+   *
+   * @param from_ ID of the dependency source node. The node must be WHITE.
+   * @param to_ ID of the dependency target node
+   */
+  @Override
+  public boolean addDependency(ID from_, ID to_)
+      throws DependencyCycleException {
+    var from_index_ = graph.getIndex(from_);
+    assert from_index_ >= 0 && colors[from_index_] == WHITE;
+    var to_index_ = graph.getIndex(to_);
+    assert to_index_ >= 0;
+
+    if(!AcyclicGraph.addDependencyChecked(graph, from_, to_))
+      return false;
+
+    if(colors[to_index_] != BLACK) {
+      ++out_degrees[from_index_];
+      siftDown(from_index_, heap_positions[from_index_]);
+    }
+    raisePriority(from_index_, to_index_);
+    return true;
+  }
+
+  /**
+   * Add several dependencies of one node into the graph
+   *
+   * @param from_ ID of the dependency source node. The node must be WHITE.
+   * @param to_ IDs of the dependency target nodes
+   * @return Number of new dependencies
+   * @see #addDependency(ID, ID)
+   */
+  @Override
+  public int addDependencies(ID from_, Collection<ID> to_)
+      throws DependencyCycleException {
+    var from_index_ = graph.getIndex(from_);
+    assert from_index_ >= 0 && colors[from_index_] == WHITE;
+
+    /* -- check the whole batch first, so the dependencies are added
+     *    all or none */
+    AcyclicGraph.checkDependencies(graph, from_, to_);
+
+    int count_ = 0;
+    int degree_delta_ = 0;
+    var targets_ = new int[to_.size()];
+    for(var target_ : to_) {
+      var to_index_ = graph.getIndex(target_);
+      assert to_index_ >= 0;
+      if(AcyclicGraph.addDependencyChecked(graph, from_, target_)) {
+        if(colors[to_index_] != BLACK)
+          ++degree_delta_;
+        targets_[count_++] = to_index_;
+      }
+    }
+
+    if(degree_delta_ > 0) {
+      out_degrees[from_index_] += degree_delta_;
+      siftDown(from_index_, heap_positions[from_index_]);
+    }
+    for(int i_ = 0; i_ < count_; ++i_)
+      raisePriority(from_index_, targets_[i_]);
+    return count_;
+  }
+
+  private void raisePriority(int from_index_, int to_index_) {
+    /* -- The target node lies on a longer path now. The change is not
+     *    propagated deeper, see the TopologicalOrder. */
+    if(weights != null && colors[to_index_] == WHITE) {
+      var priority_ = node_weights[to_index_] + priorities[from_index_];
+      if(priority_ > priorities[to_index_]) {
+        priorities[to_index_] = priority_;
+        siftUp(to_index_, heap_positions[to_index_]);
+      }
+    }
+  }
+
+  /* -- Heap of node indices. The nodes are ordered by the out degree,
+   *    the nodes with equal degree by the priority (descending). */
+  private boolean less(int index1_, int index2_) {
+    if(out_degrees[index1_] != out_degrees[index2_])
+      return out_degrees[index1_] < out_degrees[index2_];
+    return priorities[index1_] > priorities[index2_];
+  }
+
+  private void place(int index_, int position_) {
+    heap[position_] = index_;
+    heap_positions[index_] = position_;
+  }
+
+  private void pollMin() {
+    heap_positions[heap[0]] = NOT_IN_HEAP;
+    --heap_size;
+    if(heap_size > 0)
+      siftDown(heap[heap_size], 0);
+  }
+
+  private void removeFromHeap(int index_) {
+    /* -- the last item fills the gap, it may move in both directions */
+    var position_ = heap_positions[index_];
+    heap_positions[index_] = NOT_IN_HEAP;
+    --heap_size;
+    if(position_ < heap_size) {
+      var last_ = heap[heap_size];
+      siftDown(last_, position_);
+      siftUp(last_, heap_positions[last_]);
+    }
+  }
+
+  private void siftUp(int index_, int position_) {
+    while(position_ > 0) {
+      var parent_position_ = (position_ - 1) / HEAP_ARITY;
+      var parent_ = heap[parent_position_];
+      if(!less(index_, parent_))
+        break;
+      place(parent_, position_);
+      position_ = parent_position_;
+    }
+    place(index_, position_);
+  }
+
+  private void siftDown(int index_, int position_) {
+    while(true) {
+      var first_child_ = position_ * HEAP_ARITY + 1;
+      if(first_child_ >= heap_size)
+        break;
+      var last_child_ = Math.min(first_child_ + HEAP_ARITY, heap_size);
+      var min_position_ = first_child_;
+      for(int i_ = first_child_ + 1; i_ < last_child_; ++i_) {
+        if(less(heap[i_], heap[min_position_]))
+          min_position_ = i_;
+      }
+      var min_child_ = heap[min_position_];
+      if(!less(min_child_, index_))
+        break;
+      place(min_child_, position_);
+      position_ = min_position_;
+    }
+    place(index_, position_);
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.dependencies;
+
+import net.staon.smake.core.exception.DependencyCycleException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Computation of the graph topological order by the Kahn's algorithm
+ *
+ * This class is an alternative to the {@link TopologicalOrder}. Instead
+ * of keeping all nodes in a heap, it keeps just a queue of ready nodes
+ * (nodes with zero out degree). Cutting and closing of a leaf costs
+ * amortized O(1) per touched edge. On the other hand, the leaves are
+ * returned in the FIFO order, they cannot be prioritized.
+ *
+ * The state of the nodes (colors and out degrees) is kept in primitive
+ * arrays indexed by dense node indices and the ready queue is a ring
+ * buffer of the indices. If the graph has its own dense indices
+ * ({@link GraphIndexed}), they are used directly and closing of a leaf
+ * doesn't look up any hash map. Other graphs get the indices assigned
+ * by the order, then one map lookup per visited edge remains.
+ *
+ * The queue is maintained lazily: a node which gets new dependency while
+ * it's waiting in the queue stays there, and it's skipped when it's
+ * polled.
+ *
+ * The class supports the same tricolor marking and dynamic additions
+ * of nodes and dependencies as the {@link TopologicalOrder}. It's not
+ * thread-safe.
+ *
+ * @param <N> Data associated with graph nodes
+ */
+public class TopologicalOrderKahn<N> implements LeafOrder<N> {
+  /* -- zero color marks indices without any node */
+  private static final byte WHITE = 1;
+  private static final byte GREY = 2;
+  private static final byte BLACK = 3;
+
+  private final Graph<N> graph;
+  private final GraphIndexed<N> indexed_graph;   /* -- null if not indexed */
+  private final Map<ID, Integer> indices;   /* -- null if indexed */
+  private final ArrayList<ID> ids;   /* -- null if indexed */
+  private byte[] colors;
+  private int[] out_degrees;
+  private int[] ready;
+  private int ready_head;
+  private int ready_size;
+  private int white_count;
+  private int grey_count;
+
+  /**
+   * Ctor
+   *
+   * @param graph_ The graph which the order is computed for.
+   */
+  public TopologicalOrderKahn(Graph<N> graph_) {
+    graph = graph_;
+    if(graph_ instanceof GraphIndexed<N> indexed_) {
+      indexed_graph = indexed_;
+      indices = null;
+      ids = null;
+    }
+    else {
+      indexed_graph = null;
+      indices = new HashMap<>();
+      ids = new ArrayList<>();
+    }
+    colors = new byte[0];
+    out_degrees = new int[0];
+    ready = new int[16];
+    ready_head = 0;
+    ready_size = 0;
+    white_count = 0;
+    grey_count = 0;
+
+    graph.forEachNode(this::insertNewNode);
+  }
+
+  private void insertNewNode(ID id_, Graph.Node<N> node_) {
+    int index_;
+    if(indexed_graph != null) {
+      index_ = indexed_graph.getIndex(id_);
+    }
+    else {
+      index_ = ids.size();
+      indices.put(id_, index_);
+      ids.add(id_);
+    }
+    if(index_ >= colors.length) {
+      var capacity_ = Math.max(index_ + 1, colors.length * 2);
+      colors = Arrays.copyOf(colors, capacity_);
+      out_degrees = Arrays.copyOf(out_degrees, capacity_);
+    }
+
+    colors[index_] = WHITE;
+    out_degrees[index_] = node_.getOutDegree();
+    ++white_count;
+    if(out_degrees[index_] == 0)
+      pushReady(index_);
+  }
+
+  private int getIndex(ID id_) {
+    if(indexed_graph != null)
+      return indexed_graph.getIndex(id_);
+    var index_ = indices.get(id_);
+    return index_ != null ? index_ : -1;
+  }
+
+  private N getData(int index_) {
+    if(indexed_graph != null)
+      return indexed_graph.getNode(index_).getData();
+    return graph.getNode(ids.get(index_)).getData();
+  }
+
+  private void forEachPredecessorIndex(int index_, IntConsumer fn_) {
+    if(indexed_graph != null) {
+      indexed_graph.forEachPredecessorIndex(index_, fn_);
+    }
+    else {
+      graph.forEachPredecessor(
+          ids.get(index_), (id_, node_) -> fn_.accept(indices.get(id_)));
+    }
+  }
+
+  private void pushReady(int index_) {
+    if(ready_size == ready.length) {
+      /* -- unroll the ring into a twice larger buffer */
+      var ready_ = new int[ready.length * 2];
+      var tail_ = ready.length - ready_head;
+      System.arraycopy(ready, ready_head, ready_, 0, tail_);
+      System.arraycopy(ready, 0, ready_, tail_, ready_head);
+      ready = ready_;
+      ready_head = 0;
+    }
+    ready[(ready_head + ready_size) % ready.length] = index_;
+    ++ready_size;
+  }
+
+  private int pollReady() {
+    var index_ = ready[ready_head];
+    ready_head = (ready_head + 1) % ready.length;
+    --ready_size;
+    return index_;
+  }
+
+  public class OpenedLeaf implements LeafOrder.Leaf<N> {
+    private int index;
+    private final N data;
+
+    private OpenedLeaf(int index_, N data_) {
+      index = index_;
+      data = data_;
+    }
+
+    @Override
+    public void closeLeaf() {
+      assert index >= 0;
+      assert colors[index] == GREY;
+
+      colors[index] = BLACK;
+      --grey_count;
+
+      /* -- decrease out degree of all predecessors, move new leaves
+       *    into the ready queue */
+      forEachPredecessorIndex(index, (pred_) -> {
+        assert colors[pred_] == WHITE && out_degrees[pred_] > 0;
+        if(--out_degrees[pred_] == 0)
+          pushReady(pred_);
+      });
+
+      index = -1;
+    }
+
+    @Override
+    public N getData() {
+      return data;
+    }
+  }
+
+  @Override
+  public OpenedLeaf cutLeaf() throws DependencyCycleException {
+    while(ready_size > 0) {
+      var leaf_ = pollReady();
+
+      /* -- skip stale records (already cut or with new dependencies) */
+      if(colors[leaf_] != WHITE || out_degrees[leaf_] != 0)
+        continue;
+
+      colors[leaf_] = GREY;
+      --white_count;
+      ++grey_count;
+      return new OpenedLeaf(leaf_, getData(leaf_));
+    }
+
+    if(white_count > 0 && grey_count == 0) {
+      /* -- There are no in-progress nodes but there is no leaf. A cycle
+       *    is detected. */
+      throw new DependencyCycleException(CycleFinder.findCycle(
+          graph, (id_) -> colors[getIndex(id_)] == WHITE));
+    }
+    return null;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return white_count == 0 && grey_count == 0;
+  }
+
+  @Override
+  public boolean containsNode(ID node_id_) {
+    return graph.containsNode(node_id_);
+  }
+
+  /**
+   * Append new node into the underlying graph
+   *
+   * The node is added into the graph the order works over. Orders which
+   * share one base graph must work over their own {@link GraphOverlay}
+   * each, then the addition stays private to this order and the base graph
+   * is not modified.
+   *
+   * @param node_id_ ID of the new node. It must be unique
+   * @param data_ Data associated with the node
+   */
+  @Override
+  public void addNode(ID node_id_, N data_) {
+    graph.addNode(node_id_, data_);
+    insertNewNode(node_id_, graph.getNode(node_id_));
+  }
+
+  /**
+   * Add new dependency into the graph
+   *
+   * The dependency is added into the graph the order works over. Orders
+   * which share one base graph must work over their own
+   * {@link GraphOverlay} each, then the addition stays private to this
+   * order and the base graph is not modified.
+   *
+   * @param from_ ID of the dependency source node. The node must be WHITE.
+   * @param to_ ID of the dependency target node
+   */
+  @Override
+  public boolean addDependency(ID from_, ID to_)
+      throws DependencyCycleException {
+    var from_index_ = getIndex(from_);
+    assert from_index_ >= 0 && colors[from_index_] == WHITE;
+    var to_index_ = getIndex(to_);
+    assert to_index_ >= 0;
+
+    if(AcyclicGraph.addDependencyChecked(graph, from_, to_)) {
+      /* -- The source node stays in the ready queue if it's there. It's
+       *    skipped when it's polled and returned back by closing
+       *    of the target. */
+      if(colors[to_index_] != BLACK)
+        ++out_degrees[from_index_];
+      return true;
+    }
+    else {
+      return false;
+    }
+  }
+
+  /**
+   * Add several dependencies of one node into the graph
+   *
+   * @param from_ ID of the dependency source node. The node must be WHITE.
+   * @param to_ IDs of the dependency target nodes
+   * @return Number of new dependencies
+   * @see #addDependency(ID, ID)
+   */
+  @Override
+  public int addDependencies(ID from_, Collection<ID> to_)
+      throws DependencyCycleException {
+    var from_index_ = getIndex(from_);
+    assert from_index_ >= 0 && colors[from_index_] == WHITE;
+
+    /* -- check the whole batch first, so the dependencies are added
+     *    all or none */
+    AcyclicGraph.checkDependencies(graph, from_, to_);
+
+    int count_ = 0;
+    for(var target_ : to_) {
+      var to_index_ = getIndex(target_);
+      assert to_index_ >= 0;
+      if(AcyclicGraph.addDependencyChecked(graph, from_, target_)) {
+        ++count_;
+        if(colors[to_index_] != BLACK)
+          ++out_degrees[from_index_];
+      }
+    }
+    return count_;
+  }
+}
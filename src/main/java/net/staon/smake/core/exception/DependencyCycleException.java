@@ -18,12 +18,43 @@
  */
 package net.staon.smake.core.exception;
 
+import net.staon.smake.core.dependencies.ID;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * This exception is thrown by the the topological order calculator
  * when a cycle is detected.
  */
 public class DependencyCycleException extends SMakeException {
+  private final List<ID> cycle;
+  
   public DependencyCycleException() {
     super("Detected cycle in dependencies");
+    cycle = List.of();
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param cycle_ The dependency cycle. The first node is dependent on
+   *     the second one, the second one on the third one etc. The last
+   *     node is the same as the first one.
+   */
+  public DependencyCycleException(List<ID> cycle_) {
+    super("Detected cycle in dependencies: " + cycle_.stream()
+        .map(ID::toString)
+        .collect(Collectors.joining(" -> ")));
+    cycle = List.copyOf(cycle_);
+  }
+  
+  /**
+   * Get the dependency cycle
+   *
+   * @return The cycle. The list is empty if the cycle is not known.
+   */
+  public List<ID> getCycle() {
+    return cycle;
   }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of SMake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OTest2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.exception;
+
+import net.staon.smake.core.dependencies.ID;
+
+import java.util.List;
+
+/**
+ * Unchecked wrapper of the {@link DependencyCycleException}
+ *
+ * Graphs rejecting dependency cycles throw it from the methods of
+ * the generic graph interface, which don't declare checked exceptions.
+ */
+public class UncheckedDependencyCycleException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+  
+  /**
+   * Ctor
+   *
+   * @param cause_ The wrapped exception
+   */
+  public UncheckedDependencyCycleException(DependencyCycleException cause_) {
+    super(cause_.getMessage(), cause_);
+  }
+  
+  @Override
+  public synchronized DependencyCycleException getCause() {
+    return (DependencyCycleException) super.getCause();
+  }
+  
+  /**
+   * Get the dependency cycle
+   *
+   * @see DependencyCycleException#getCycle()
+   */
+  public List<ID> getCycle() {
+    return getCause().getCycle();
+  }
+}
@@ -21,14 +21,17 @@ package net.staon.smake.core.execution;
 import net.staon.smake.core.dependencies.ID;
 import net.staon.smake.core.model.Path;
 
-import java.util.Objects;
-
 /**
  * Identifier of an smake resource
+ *
+ * Resource IDs can be interned in a {@link ResourceIDTable}. The interned
+ * ID keeps its graph ID, so the graph ID is not constructed repeatedly.
  */
 public final class ResourceID {
   private final String type;
   private final Path path;
+  private final int hash;
+  private ID graph_id;
   
   /**
    * Ctor
@@ -38,6 +41,21 @@ public final class ResourceID {
     
     type = type_;
     path = path_;
+    hash = 31 * type.hashCode() + path.hashCode();
+    graph_id = null;
+  }
+  
+  /**
+   * Ctor - interned resource ID
+   *
+   * @param id_ Value of the ID
+   * @param graph_id_ Canonical graph ID of the resource
+   */
+  ResourceID(ResourceID id_, ID graph_id_) {
+    type = id_.type;
+    path = id_.path;
+    hash = id_.hash;
+    graph_id = graph_id_;
   }
   
   /**
@@ -46,6 +64,8 @@ public final class ResourceID {
   public ResourceID(ResourceID id_) {
     type = id_.type;
     path = id_.path;
+    hash = id_.hash;
+    graph_id = id_.graph_id;
   }
   
   /**
@@ -66,7 +86,21 @@ public final class ResourceID {
    * Create graph ID from the resource ID
    */
   public ID asGraphID() {
-    return new ID(type + '@' + path.asString());
+    /* -- The ID is immutable, hence a concurrent construction doesn't
+     *    matter - the threads just create equal objects. */
+    var graph_id_ = graph_id;
+    if(graph_id_ == null) {
+      graph_id_ = new ID(formatGraphID());
+      graph_id = graph_id_;
+    }
+    return graph_id_;
+  }
+  
+  /**
+   * Get string value of the graph ID
+   */
+  String formatGraphID() {
+    return type + '@' + path.asString();
   }
   
   @Override
@@ -74,12 +108,12 @@ public final class ResourceID {
     if(this == o_) return true;
     if(o_ == null || getClass() != o_.getClass()) return false;
     ResourceID that = (ResourceID) o_;
-    return type.equals(that.type) && path.equals(that.path);
+    return hash == that.hash && type.equals(that.type) && path.equals(that.path);
   }
   
   @Override
   public int hashCode() {
-    return Objects.hash(type, path);
+    return hash;
   }
   
   @Override
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution;
+
+import net.staon.smake.core.dependencies.SymbolTable;
+import net.staon.smake.core.model.Path;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table of resource IDs
+ *
+ * The table maps each resource identity to one canonical resource ID. The
+ * canonical ID keeps its graph ID interned in the table's graph symbol
+ * table. The table is thread-safe.
+ */
+public final class ResourceIDTable {
+  private final SymbolTable graph_symbols;
+  private final ConcurrentHashMap<ResourceID, ResourceID> ids;
+
+  /**
+   * Ctor - empty table
+   */
+  public ResourceIDTable() {
+    graph_symbols = new SymbolTable();
+    ids = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get symbol table of graph IDs of the interned resources
+   */
+  public SymbolTable getGraphSymbols() {
+    return graph_symbols;
+  }
+
+  /**
+   * Get canonical object of a resource ID
+   *
+   * @param id_ The resource ID
+   * @return The canonical resource ID
+   */
+  public ResourceID intern(ResourceID id_) {
+    var interned_ = ids.get(id_);
+    if(interned_ != null)
+      return interned_;
+    return ids.computeIfAbsent(id_, (key_) -> new ResourceID(
+        key_, graph_symbols.intern(key_.formatGraphID())));
+  }
+
+  /**
+   * Get canonical resource ID
+   *
+   * @param type_ Resource type
+   * @param path_ Resource path
+   * @return The canonical resource ID
+   */
+  public ResourceID intern(String type_, Path path_) {
+    return intern(new ResourceID(type_, path_));
+  }
+
+  /**
+   * Get number of interned resource IDs
+   */
+  public int size() {
+    return ids.size();
+  }
+}
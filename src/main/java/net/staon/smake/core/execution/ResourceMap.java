@@ -18,25 +18,68 @@
  */
 package net.staon.smake.core.execution;
 
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.dependencies.GraphAcyclic;
 import net.staon.smake.core.dependencies.GraphFull;
+import net.staon.smake.core.dependencies.GraphOverlay;
+import net.staon.smake.core.dependencies.ID;
+import net.staon.smake.core.dependencies.Invalidation;
 import net.staon.smake.core.dependencies.TopologicalOrder;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
 
+import net.staon.smake.core.model.Path;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * An object keeping all project's resources and dependencies between them.
+ *
+ * The map rejects dependency cycles - a dependency closing a cycle is
+ * refused when it's being added.
  */
 public class ResourceMap implements ResourceMapManipulator {
+  private final ResourceIDTable symbols;
   private final Map<ResourceID, Resource> resources;
   private final GraphFull<Resource> resource_deps;
+  private final GraphAcyclic<Resource> resource_deps_acyclic;
   
   /**
    * Ctor
    */
   public ResourceMap() {
+    this(new ResourceIDTable());
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param symbols_ Symbol table of resource IDs. The table may be shared
+   *     by several resource maps.
+   */
+  public ResourceMap(ResourceIDTable symbols_) {
+    symbols = symbols_;
     resources = new HashMap<>();
-    resource_deps = new GraphFull<>();
+    resource_deps = new GraphFull<>(symbols.getGraphSymbols());
+    try {
+      resource_deps_acyclic = new GraphAcyclic<>(resource_deps);
+    }
+    catch(DependencyCycleException exc_) {
+      /* -- an empty graph cannot contain a cycle */
+      throw new AssertionError(exc_);
+    }
+  }
+  
+  @Override
+  public ResourceID createResourceID(String type_, Path path_) {
+    return symbols.intern(type_, path_);
   }
   
   @Override
@@ -46,20 +89,135 @@ public class ResourceMap implements ResourceMapManipulator {
   
   @Override
   public void addResource(Resource resource_) {
-    var id_ = resource_.getID();
+    var id_ = symbols.intern(resource_.getID());
     assert !resources.containsKey(id_);
     resources.put(id_, resource_);
+    resource_deps_acyclic.addNode(id_.asGraphID(), resource_);
   }
   
+  /**
+   * Add a dependency between two resources
+   *
+   * @exception UncheckedDependencyCycleException If the dependency would
+   *     close a cycle. The map is not modified in this case.
+   */
   @Override
-  public void addDependency(ResourceID from_, ResourceID to_) {
-    resource_deps.addDependency(from_.asGraphID(), to_.asGraphID());
+  public void addDependency(
+      ResourceID from_, ResourceID to_, DependencyType type_) {
+    resource_deps_acyclic.addDependency(
+        symbols.intern(from_).asGraphID(),
+        symbols.intern(to_).asGraphID(),
+        type_);
+  }
+  
+  /**
+   * Add a dependency without checking of dependency cycles
+   *
+   * This method is intended for bulk loads: the dependencies are checked
+   * at once by the {@link #finishBulk()} method, which must be called
+   * before the map is used.
+   */
+  void addDependencyBulk(
+      ResourceID from_, ResourceID to_, DependencyType type_) {
+    resource_deps_acyclic.addDependencyUnchecked(
+        symbols.intern(from_).asGraphID(),
+        symbols.intern(to_).asGraphID(),
+        type_);
+  }
+  
+  /**
+   * Check the dependencies added by {@link #addDependencyBulk}
+   *
+   * @exception DependencyCycleException If the dependencies contain
+   *     a cycle. The map must be dropped in this case.
+   */
+  void finishBulk() throws DependencyCycleException {
+    resource_deps_acyclic.validate();
+  }
+  
+  /**
+   * Get type of an existing dependency between two stored resources
+   */
+  public DependencyType getDependencyType(Resource from_, Resource to_) {
+    return resource_deps.getDependencyType(
+        symbols.intern(from_.getID()).asGraphID(),
+        symbols.intern(to_.getID()).asGraphID());
+  }
+  
+  /**
+   * Get number of stored resources
+   */
+  public int getResourceCount() {
+    return resources.size();
+  }
+  
+  /**
+   * Evaluate a function on every stored resource
+   */
+  public void forEachResource(Consumer<Resource> fn_) {
+    resource_deps.forEachNode((id_, node_) -> fn_.accept(node_.getData()));
+  }
+  
+  /**
+   * Evaluate a function on every dependency between stored resources
+   *
+   * @param fn_ The function. The first argument is the dependent resource,
+   *     the second one is its dependency.
+   */
+  public void forEachDependency(BiConsumer<Resource, Resource> fn_) {
+    resource_deps.forEachNode((id_, node_) -> {
+      resource_deps.forEachSuccessor(id_, (succ_id_, succ_) -> {
+        fn_.accept(node_.getData(), succ_.getData());
+      });
+    });
+  }
+  
+  /**
+   * Compute resources invalidated by changed resources
+   *
+   * The invalidation is propagated through the data dependencies only.
+   *
+   * @param changed_ The changed resources
+   * @return The invalidated resources including the changed ones
+   */
+  public Set<Resource> computeInvalidated(Collection<Resource> changed_) {
+    var changed_ids_ = new ArrayList<ID>(changed_.size());
+    for(var resource_ : changed_)
+      changed_ids_.add(symbols.intern(resource_.getID()).asGraphID());
+    
+    var invalidated_ = new HashSet<Resource>();
+    for(var id_ : Invalidation.computeInvalidated(resource_deps, changed_ids_))
+      invalidated_.add(resource_deps.getNode(id_).getData());
+    return invalidated_;
   }
   
   /**
    * Create calculator of the dependency topological order of stored resources
+   *
+   * The order works directly over the dependency graph of the map. Hence,
+   * the resources and dependencies added dynamically through the order
+   * are added into the map (and the dependency cycles are rejected).
+   * Just one such order may exist at once.
+   *
+   * @see #createPrivateTopologicalOrder()
    */
   public TopologicalOrder<Resource> createTopologicalOrder() {
-    return new TopologicalOrder<>(resource_deps);
+    return new TopologicalOrder<>(resource_deps_acyclic);
+  }
+  
+  /**
+   * Create calculator of the dependency topological order with private
+   * dynamic additions
+   *
+   * The order works over its own overlay of the dependency graph.
+   * The resources and dependencies added dynamically through the order
+   * stay private to the order, they never reach the map. Several such
+   * orders (e.g. for different target sets) may be processed at once,
+   * the map must not be modified meanwhile.
+   *
+   * @see #createTopologicalOrder()
+   */
+  public TopologicalOrder<Resource> createPrivateTopologicalOrder() {
+    return new TopologicalOrder<>(new GraphOverlay<>(resource_deps));
   }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution;
+
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+import net.staon.smake.core.model.Path;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe resource map manipulator
+ *
+ * This manipulator is intended for parallel resolution of a project.
+ * The resources are stored in a concurrent map, so the shared resources
+ * are got or inserted atomically and the unique ones are inserted or
+ * refused atomically. The dependencies are kept in concurrent maps owned
+ * by the dependent resources, so threads adding dependencies of different
+ * resources don't contend.
+ *
+ * A dependency may be added before its resources are. All resources must
+ * be added before the final resource map is created by
+ * {@link #createResourceMap()}. Dependency cycles are not checked while
+ * the dependencies are being added, they are rejected during creation
+ * of the final map.
+ */
+public class ResourceMapConcurrent implements ResourceMapManipulator {
+  private final ResourceIDTable symbols;
+  private final ConcurrentHashMap<ResourceID, Resource> resources;
+  private final ConcurrentHashMap<
+      ResourceID, Map<ResourceID, DependencyType>> dependencies;
+  
+  /**
+   * Ctor
+   */
+  public ResourceMapConcurrent() {
+    this(new ResourceIDTable());
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param symbols_ Symbol table of resource IDs. The table may be shared
+   *     by several resource maps.
+   */
+  public ResourceMapConcurrent(ResourceIDTable symbols_) {
+    symbols = symbols_;
+    resources = new ConcurrentHashMap<>();
+    dependencies = new ConcurrentHashMap<>();
+  }
+  
+  @Override
+  public ResourceID createResourceID(String type_, Path path_) {
+    return symbols.intern(type_, path_);
+  }
+  
+  @Override
+  public Resource getResource(ResourceID id_) {
+    return resources.get(id_);
+  }
+  
+  @Override
+  public void addResource(Resource resource_) {
+    var previous_ = resources.putIfAbsent(
+        symbols.intern(resource_.getID()), resource_);
+    assert previous_ == null;
+  }
+  
+  @Override
+  public Resource addSharedResource(Resource resource_) {
+    var previous_ = resources.putIfAbsent(
+        symbols.intern(resource_.getID()), resource_);
+    return previous_ != null ? previous_ : resource_;
+  }
+  
+  @Override
+  public boolean addUniqueResource(Resource resource_) {
+    return resources.putIfAbsent(
+        symbols.intern(resource_.getID()), resource_) == null;
+  }
+  
+  @Override
+  public void addDependency(
+      ResourceID from_, ResourceID to_, DependencyType type_) {
+    var from_id_ = symbols.intern(from_);
+    var to_id_ = symbols.intern(to_);
+    assert !from_id_.equals(to_id_);   /* -- loops are not allowed */
+    
+    /* -- the data type wins */
+    dependencies
+        .computeIfAbsent(from_id_, key_ -> new ConcurrentHashMap<>())
+        .merge(to_id_, type_, (old_, new_) ->
+            old_ == DependencyType.DATA || new_ == DependencyType.DATA
+                ? DependencyType.DATA
+                : DependencyType.ORDER_ONLY);
+  }
+  
+  /**
+   * Get number of stored resources
+   */
+  public int getResourceCount() {
+    return resources.size();
+  }
+  
+  /**
+   * Create the final resource map
+   *
+   * No other thread may modify this manipulator during the creation.
+   *
+   * @return The resource map sharing the symbol table with this manipulator
+   * @exception UncheckedDependencyCycleException If the dependencies
+   *     contain a cycle.
+   */
+  public ResourceMap createResourceMap() {
+    var resource_map_ = new ResourceMap(symbols);
+    resources.forEach((id_, resource_) -> resource_map_.addResource(resource_));
+    dependencies.forEach((from_, deps_) -> {
+      assert resources.containsKey(from_);
+      deps_.forEach((to_, type_) -> {
+        assert resources.containsKey(to_);
+        resource_map_.addDependencyBulk(from_, to_, type_);
+      });
+    });
+    
+    /* -- the dependencies are checked at once, not one by one */
+    try {
+      resource_map_.finishBulk();
+    }
+    catch(DependencyCycleException exc_) {
+      throw new UncheckedDependencyCycleException(exc_);
+    }
+    return resource_map_;
+  }
+}
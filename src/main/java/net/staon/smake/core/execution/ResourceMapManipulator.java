@@ -18,10 +18,28 @@
  */
 package net.staon.smake.core.execution;
 
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+import net.staon.smake.core.model.Path;
+
 /**
  * Interface manipulating a resource map
  */
 public interface ResourceMapManipulator {
+  /**
+   * Create ID of a resource
+   *
+   * Resource maps may return canonical (interned) IDs which are cheaper
+   * for hashing and comparison.
+   *
+   * @param type_ Type of the resource
+   * @param path_ Path of the resource
+   * @return The resource ID
+   */
+  default ResourceID createResourceID(String type_, Path path_) {
+    return new ResourceID(type_, path_);
+  }
+  
   /**
    * Get a resource
    *
@@ -53,14 +71,72 @@ public interface ResourceMapManipulator {
   void addResource(Resource resource_);
   
   /**
-   * Add a dependency between two resources
+   * Add a resource which may be shared or get the already stored one
+   *
+   * Thread-safe resource maps make the operation atomic.
+   *
+   * @param resource_ The resource
+   * @return The stored resource - the resource_ or the resource with
+   *     the same ID stored before.
    */
-  void addDependency(ResourceID from_, ResourceID to_);
+  default Resource addSharedResource(Resource resource_) {
+    var actual_ = getResource(resource_.getID());
+    if(actual_ == null) {
+      actual_ = resource_;
+      addResource(actual_);
+    }
+    return actual_;
+  }
+  
+  /**
+   * Add a resource which must be unique
+   *
+   * Thread-safe resource maps make the operation atomic.
+   *
+   * @param resource_ The resource
+   * @return False if a resource with the same ID is already stored.
+   *     The map is not changed then.
+   */
+  default boolean addUniqueResource(Resource resource_) {
+    if(containsResource(resource_))
+      return false;
+    addResource(resource_);
+    return true;
+  }
   
   /**
    * Add a dependency between two resources
+   *
+   * @param from_ The dependent resource
+   * @param to_ The resource which @a from_ depends on
+   * @param type_ Type of the dependency. An order-only dependency just
+   *     orders processing of the resources, a change of @a to_ doesn't
+   *     invalidate @a from_.
+   * @exception UncheckedDependencyCycleException If the manipulator
+   *     checks dependency cycles and the dependency would close one.
+   *     The map is not modified in this case.
+   */
+  void addDependency(ResourceID from_, ResourceID to_, DependencyType type_);
+  
+  /**
+   * Add a data dependency between two resources
+   */
+  default void addDependency(ResourceID from_, ResourceID to_) {
+    addDependency(from_, to_, DependencyType.DATA);
+  }
+  
+  /**
+   * Add a data dependency between two resources
    */
   default void addDependency(Resource from_, Resource to_) {
     addDependency(from_.getID(), to_.getID());
   }
+  
+  /**
+   * Add a dependency of a specified type between two resources
+   */
+  default void addDependency(
+      Resource from_, Resource to_, DependencyType type_) {
+    addDependency(from_.getID(), to_.getID(), type_);
+  }
 }
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution;
+
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.InvalidPathException;
+import net.staon.smake.core.model.Path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a resolved resource map
+ *
+ * The snapshot stores all resources and dependencies of a resource map
+ * in a compact binary file. The file is read by a memory-mapped buffer,
+ * so loading of the snapshot is much faster than parsing and resolving
+ * of the project.
+ *
+ * The snapshot is tagged by a fingerprint of its inputs (content
+ * of SMakefiles and configuration of toolchains). The snapshot is
+ * accepted only if the fingerprint matches. Otherwise, the project must
+ * be assembled from scratch.
+ *
+ * File format (big endian):
+ * <pre>
+ *   int     magic number
+ *   int     format version
+ *   int     fingerprint length, bytes of the fingerprint
+ *   int     number of strings, for each string: int length, UTF-8 bytes
+ *   int     number of resources, for each resource: int type,
+ *           int path, int content type (indices into the string table)
+ *   int     number of dependencies, for each dependency: int source,
+ *           int target (indices into the resource table), int type
+ *           (ordinal of the DependencyType)
+ * </pre>
+ *
+ * Just the file resources ({@link ResourceFile}) can be stored. They are
+ * always loaded as {@link ResourcePhysical} objects, so a custom
+ * implementation of the file resource loses its class (but neither its ID
+ * nor the content type). Any other resource makes the writing fail.
+ *
+ * A snapshot which is not consistent (indices out of range, dependency
+ * loops or cycles) is considered corrupted and it's not loaded.
+ */
+public final class ResourceMapSnapshot {
+  private static final int MAGIC = 0x534d4b53;  /* -- "SMKS" */
+  private static final int VERSION = 2;
+
+  private ResourceMapSnapshot() {
+
+  }
+
+  /**
+   * Compute fingerprint of snapshot inputs
+   *
+   * @param inputs_ The inputs - content of SMakefiles, configuration
+   *     of toolchains etc. The order matters.
+   * @return The fingerprint (SHA-256 digest)
+   */
+  public static byte[] computeFingerprint(String... inputs_) {
+    try {
+      var digest_ = MessageDigest.getInstance("SHA-256");
+      var length_ = ByteBuffer.allocate(Integer.BYTES);
+      for(var input_ : inputs_) {
+        /* -- the length separates the inputs, so ("ab", "c") and
+         *    ("a", "bc") have different fingerprints */
+        var bytes_ = input_.getBytes(StandardCharsets.UTF_8);
+        length_.clear();
+        length_.putInt(bytes_.length);
+        digest_.update(length_.array());
+        digest_.update(bytes_);
+      }
+      return digest_.digest();
+    }
+    catch(NoSuchAlgorithmException ex_) {
+      /* -- SHA-256 is required to be present in every Java platform */
+      throw new IllegalStateException(ex_);
+    }
+  }
+
+  /**
+   * Store a resource map into a snapshot file
+   *
+   * The file is written into a temporary file which is moved to its place
+   * then. Hence, a concurrently running reader never sees a partial file.
+   *
+   * @param resource_map_ The resource map
+   * @param fingerprint_ Fingerprint of the inputs
+   * @param file_ Path of the snapshot file
+   * @exception IOException If the file cannot be written or if the resource
+   *     map contains a resource which cannot be stored (a resource which
+   *     is not a file).
+   */
+  public static void write(
+      ResourceMap resource_map_, byte[] fingerprint_, java.nio.file.Path file_)
+      throws IOException {
+    /* -- collect the string table and the resource table */
+    var strings_ = new HashMap<String, Integer>();
+    var string_list_ = new ArrayList<String>();
+    var resource_indices_ = new HashMap<ResourceID, Integer>();
+    var resource_records_ = new ArrayList<int[]>();
+    var unsupported_ = new ArrayList<Resource>();
+    resource_map_.forEachResource((stored_) -> {
+      stored_.apply(new ResourceVisitor() {
+        @Override
+        public void visit(Resource resource_) {
+          unsupported_.add(resource_);
+        }
+
+        @Override
+        public void visit(ResourceFile resource_) {
+          var id_ = resource_.getID();
+          resource_indices_.put(id_, resource_records_.size());
+          resource_records_.add(new int[] {
+              internString(strings_, string_list_, id_.getType()),
+              internString(strings_, string_list_, id_.getPath().asString()),
+              internString(strings_, string_list_, resource_.getContentType())
+          });
+        }
+      });
+    });
+    if(!unsupported_.isEmpty())
+      throw new IOException(
+          "the resource " + unsupported_.get(0).getID() + " cannot be stored");
+
+    var output_ = new ByteArrayOutputStream();
+    var data_ = new DataOutputStream(output_);
+    data_.writeInt(MAGIC);
+    data_.writeInt(VERSION);
+    data_.writeInt(fingerprint_.length);
+    data_.write(fingerprint_);
+
+    data_.writeInt(string_list_.size());
+    for(var string_ : string_list_) {
+      var bytes_ = string_.getBytes(StandardCharsets.UTF_8);
+      data_.writeInt(bytes_.length);
+      data_.write(bytes_);
+    }
+
+    data_.writeInt(resource_records_.size());
+    for(var record_ : resource_records_) {
+      for(var value_ : record_)
+        data_.writeInt(value_);
+    }
+
+    var edges_ = new ArrayList<int[]>();
+    resource_map_.forEachDependency((from_, to_) -> {
+      edges_.add(new int[] {
+          resource_indices_.get(from_.getID()),
+          resource_indices_.get(to_.getID()),
+          resource_map_.getDependencyType(from_, to_).ordinal()
+      });
+    });
+    data_.writeInt(edges_.size());
+    for(var edge_ : edges_) {
+      data_.writeInt(edge_[0]);
+      data_.writeInt(edge_[1]);
+      data_.writeInt(edge_[2]);
+    }
+    data_.flush();
+
+    var temp_ = file_.resolveSibling(file_.getFileName() + ".tmp");
+    Files.write(temp_, output_.toByteArray());
+    try {
+      Files.move(
+          temp_, file_,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException ex_) {
+      Files.move(temp_, file_, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static int internString(
+      Map<String, Integer> strings_, ArrayList<String> list_, String string_) {
+    if(string_ == null)
+      return -1;
+    return strings_.computeIfAbsent(string_, (s_) -> {
+      list_.add(s_);
+      return list_.size() - 1;
+    });
+  }
+
+  /**
+   * Load a resource map from a snapshot file
+   *
+   * @param file_ Path of the snapshot file
+   * @param fingerprint_ Expected fingerprint of the inputs
+   * @param symbols_ Symbol table which the loaded resource IDs are interned in
+   * @return The loaded resource map or null if the file doesn't exist,
+   *     if the fingerprint doesn't match or if the file is corrupted.
+   *     The resources are loaded as {@link ResourcePhysical} objects.
+   * @exception IOException If the existing file cannot be read
+   */
+  public static ResourceMap read(
+      java.nio.file.Path file_, byte[] fingerprint_, ResourceIDTable symbols_)
+      throws IOException {
+    if(!Files.isRegularFile(file_))
+      return null;
+
+    try(var channel_ = FileChannel.open(file_, StandardOpenOption.READ)) {
+      var buffer_ = channel_.map(FileChannel.MapMode.READ_ONLY, 0, channel_.size());
+      return parse(buffer_, fingerprint_, symbols_);
+    }
+    catch(BufferUnderflowException | IndexOutOfBoundsException
+          | IllegalArgumentException | InvalidPathException ex_) {
+      /* -- corrupted file, it's just a cache, the project will be
+       *    assembled again */
+      return null;
+    }
+  }
+
+  private static ResourceMap parse(
+      ByteBuffer buffer_, byte[] fingerprint_, ResourceIDTable symbols_)
+      throws InvalidPathException {
+    if(buffer_.getInt() != MAGIC || buffer_.getInt() != VERSION)
+      return null;
+    var stored_fingerprint_ = new byte[checkCount(buffer_, buffer_.getInt())];
+    buffer_.get(stored_fingerprint_);
+    if(!Arrays.equals(stored_fingerprint_, fingerprint_))
+      return null;
+
+    var strings_ = new String[checkCount(buffer_, buffer_.getInt())];
+    for(int i_ = 0; i_ < strings_.length; ++i_) {
+      var bytes_ = new byte[checkCount(buffer_, buffer_.getInt())];
+      buffer_.get(bytes_);
+      strings_[i_] = new String(bytes_, StandardCharsets.UTF_8);
+    }
+
+    /* -- paths are mostly shared by several resources (source, target,
+     *    exported etc.), parse every path string once */
+    var paths_ = new Path[strings_.length];
+    var resource_map_ = new ResourceMap(symbols_);
+    var resources_ = new Resource[checkCount(buffer_, buffer_.getInt())];
+    for(int i_ = 0; i_ < resources_.length; ++i_) {
+      var type_ = strings_[checkIndex(buffer_.getInt(), strings_.length)];
+      var path_index_ = checkIndex(buffer_.getInt(), strings_.length);
+      if(paths_[path_index_] == null)
+        paths_[path_index_] = new Path(strings_[path_index_]);
+      var content_index_ = buffer_.getInt();
+      var content_ = content_index_ != -1
+          ? strings_[checkIndex(content_index_, strings_.length)]
+          : null;
+
+      var resource_ = new ResourcePhysical(
+          resource_map_.createResourceID(type_, paths_[path_index_]), content_);
+      if(resource_map_.containsResource(resource_))
+        return null;
+      resource_map_.addResource(resource_);
+      resources_[i_] = resource_;
+    }
+
+    var types_ = DependencyType.values();
+    var edge_count_ = buffer_.getInt();
+    for(int i_ = 0; i_ < edge_count_; ++i_) {
+      var from_index_ = checkIndex(buffer_.getInt(), resources_.length);
+      var to_index_ = checkIndex(buffer_.getInt(), resources_.length);
+      var type_ = checkIndex(buffer_.getInt(), types_.length);
+      if(from_index_ == to_index_)
+        return null;
+      var from_ = resources_[from_index_];
+      var to_ = resources_[to_index_];
+      resource_map_.addDependencyBulk(from_.getID(), to_.getID(), types_[type_]);
+    }
+
+    /* -- the stored map has been acyclic, check the edges at once. A cycle
+     *    means a corrupted file. */
+    try {
+      resource_map_.finishBulk();
+    }
+    catch(DependencyCycleException ex_) {
+      return null;
+    }
+    return resource_map_;
+  }
+
+  private static int checkIndex(int index_, int size_) {
+    if(index_ < 0 || index_ >= size_)
+      throw new IllegalArgumentException("invalid index in the snapshot");
+    return index_;
+  }
+
+  private static int checkCount(ByteBuffer buffer_, int count_) {
+    /* -- protection against huge allocations in corrupted files */
+    if(count_ < 0 || count_ > buffer_.remaining())
+      throw new IllegalArgumentException("invalid count in the snapshot");
+    return count_;
+  }
+}
@@ -24,8 +24,7 @@ import net.staon.smake.core.model.Path;
  * Implementation of a file resource
  */
 public class ResourcePhysical implements ResourceFile {
-  private final String resource_type;
-  private final Path resource_path;
+  private final ResourceID resource_id;
   private final String content_type;
   
   /**
@@ -36,14 +35,24 @@ public class ResourcePhysical implements ResourceFile {
    * @param content_ Content type of the resource (e.g. smake::c++)
    */
   public ResourcePhysical(String type_, Path path_, String content_) {
-    resource_type = type_;
-    resource_path = path_;
+    this(new ResourceID(type_, path_), content_);
+  }
+  
+  /**
+   * Ctor
+   *
+   * @param id_ ID of the resource (type and path)
+   * @param content_ Content type of the resource (e.g. smake::c++)
+   */
+  public ResourcePhysical(ResourceID id_, String content_) {
+    assert id_ != null;
+    resource_id = id_;
     content_type = content_;
   }
   
   @Override
   public final ResourceID getID() {
-    return new ResourceID(resource_type, resource_path);
+    return resource_id;
   }
   
   @Override
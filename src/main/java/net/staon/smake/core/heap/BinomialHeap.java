@@ -18,6 +18,8 @@
  */
 package net.staon.smake.core.heap;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
 
@@ -49,6 +51,80 @@ public class BinomialHeap<T> implements Heap<T> {
     handles.put(item_, node_);
   }
   
+  /**
+   * Insert several items at once
+   *
+   * The items are linked into binomial trees in the same way as a binary
+   * counter is incremented, which takes amortized constant time per item.
+   * The built trees are merged with the heap at the end. Hence, the whole
+   * operation is linear in the number of the inserted items.
+   *
+   * @param items_ The inserted items
+   */
+  public void insertAll(Collection<? extends T> items_) {
+    /* -- pending trees, the tree at index k has order k */
+    var trees_ = new ArrayList<Node>();
+    for(T item_ : items_) {
+      assert handles.get(item_) == null;
+      
+      var carry_ = new Node(item_);
+      handles.put(item_, carry_);
+      int order_ = 0;
+      while(order_ < trees_.size() && trees_.get(order_) != null) {
+        carry_ = trees_.get(order_).merge(comparator, carry_);
+        trees_.set(order_, null);
+        ++order_;
+      }
+      if(order_ < trees_.size())
+        trees_.set(order_, carry_);
+      else
+        trees_.add(carry_);
+    }
+    
+    /* -- chain the trees sorted by their orders and merge them
+     *    with the heap */
+    Node chain_ = null;
+    Node tail_ = null;
+    for(var tree_ : trees_) {
+      if(tree_ == null)
+        continue;
+      if(tail_ == null)
+        chain_ = tree_;
+      else
+        tail_.insertAfter(tree_);
+      tail_ = tree_;
+    }
+    heap = mergeHeaps(heap, chain_);
+  }
+  
+  /**
+   * Move all items of another heap into this heap
+   *
+   * If the other heap is a binomial heap too, the root lists are merged
+   * in logarithmic time. Just the handles of the smaller heap are moved
+   * into the handles of the bigger one.
+   *
+   * @param other_ The other heap. It's empty after the operation.
+   */
+  public void meld(Heap<T> other_) {
+    if(!(other_ instanceof BinomialHeap<T> binomial_)) {
+      Heap.super.meld(other_);
+      return;
+    }
+    assert binomial_ != this;
+    
+    heap = mergeHeaps(heap, binomial_.heap);
+    if(binomial_.handles.size() > handles.size()) {
+      binomial_.handles.putAll(handles);
+      handles = binomial_.handles;
+    }
+    else {
+      handles.putAll(binomial_.handles);
+    }
+    binomial_.heap = null;
+    binomial_.handles = new IdentityHashMap<>();
+  }
+  
   public void update(T item_) {
     Node node_ = handles.get(item_);
     assert node_ != null;
@@ -71,6 +147,24 @@ public class BinomialHeap<T> implements Heap<T> {
     heap = mergeHeaps(heap, node_);
   }
   
+  public void remove(T item_) {
+    Node node_ = handles.remove(item_);
+    assert node_ != null;
+    
+    /* -- move the node into the root of its tree (see update()) */
+    while(node_.parent != null) {
+      node_.data = node_.parent.data;
+      handles.replace(node_.data, node_);
+      node_ = node_.parent;
+    }
+    
+    /* -- remove the root and merge its children back into the heap */
+    Node following_ = node_.remove();
+    if(node_ == heap)
+      heap = following_;
+    heap = mergeHeaps(heap, node_.cutRoot());
+  }
+  
   private Node findMinTree() {
     assert heap != null;
   
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of SMake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OTest2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap;
+
+import java.util.function.Consumer;
+
+/**
+ * Generic interface of a heap shared by several threads
+ *
+ * Unlike the {@link Heap} there is no separate access to the minimum
+ * as it could be changed by another thread before it's removed. The heap
+ * may be relaxed - the removed item doesn't have to be the global minimum,
+ * just one of the smallest items.
+ *
+ * Content of a stored item which the ordering depends on may be changed
+ * just by the {@link #update(Object, Consumer)} method.
+ *
+ * @param <T> Type of data stored in the heap
+ */
+public interface ConcurrentHeap<T> {
+  /**
+   * Insert new item into the heap
+   *
+   * @param item_ The inserted item. Never insert exactly same object twice!
+   */
+  void insert(T item_);
+  
+  /**
+   * Update existing item
+   *
+   * @param item_ The item
+   * @param change_ A function changing the content of the item. It's
+   *     invoked while the part of the heap owning the item is locked.
+   */
+  void update(T item_, Consumer<? super T> change_);
+  
+  /**
+   * Remove and return one of the minimal items
+   *
+   * @return The item or null if the heap is empty
+   */
+  T tryPollMin();
+  
+  /**
+   * Check if the heap is empty
+   */
+  boolean isEmpty();
+}
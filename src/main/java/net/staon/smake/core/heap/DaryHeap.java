@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Array-backed d-ary heap with intrusive handles
+ *
+ * The heap keeps its items in one array. Position of each item is stored
+ * in the item itself through a {@link HeapIndexer}, so an updated item
+ * is found without any map lookup. The heap doesn't allocate anything
+ * except growing of the array.
+ *
+ * The update operation moves the item up or down according to its new
+ * content, both decrease-key and increase-key are supported.
+ *
+ * @param <T> Type of data associated with heap items
+ */
+public class DaryHeap<T> implements Heap<T> {
+  /**
+   * Default arity of the heap
+   *
+   * Four children fit one cache line with the compressed references
+   * and the heap is half as high as a binary one.
+   */
+  public static final int DEFAULT_ARITY = 4;
+
+  private final int arity;
+  private final Comparator<T> comparator;
+  private final HeapIndexer<T> indexer;
+  private Object[] items;
+  private int size;
+
+  /**
+   * Ctor
+   *
+   * @param comparator_ A comparator used for ordering of stored items
+   * @param indexer_ Access to heap positions stored in the items
+   */
+  public DaryHeap(Comparator<T> comparator_, HeapIndexer<T> indexer_) {
+    this(DEFAULT_ARITY, comparator_, indexer_);
+  }
+
+  /**
+   * Ctor
+   *
+   * @param arity_ Number of children of each heap node (at least 2)
+   * @param comparator_ A comparator used for ordering of stored items
+   * @param indexer_ Access to heap positions stored in the items
+   */
+  public DaryHeap(int arity_, Comparator<T> comparator_, HeapIndexer<T> indexer_) {
+    assert arity_ >= 2;
+
+    arity = arity_;
+    comparator = comparator_;
+    indexer = indexer_;
+    items = new Object[16];
+    size = 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T itemAt(int index_) {
+    return (T) items[index_];
+  }
+
+  private void place(T item_, int index_) {
+    items[index_] = item_;
+    indexer.setHeapIndex(item_, index_);
+  }
+
+  @Override
+  public void insert(T item_) {
+    assert indexer.getHeapIndex(item_) == HeapIndexer.NOT_IN_HEAP;
+
+    if(size == items.length)
+      items = Arrays.copyOf(items, size * 2);
+    siftUp(item_, size++);
+  }
+
+  /**
+   * Insert several items at once
+   *
+   * The items are appended at the end of the array and the heap property
+   * is restored bottom-up (Floyd's heapify) which is linear in the size
+   * of the heap. If just a few items are inserted into a big heap,
+   * they are inserted one by one.
+   *
+   * @param items_ The inserted items
+   */
+  @Override
+  public void insertAll(Collection<? extends T> items_) {
+    if(items_.isEmpty())
+      return;
+    if(items_.size() * 4 < size) {
+      Heap.super.insertAll(items_);
+      return;
+    }
+
+    if(size + items_.size() > items.length)
+      items = Arrays.copyOf(items, Math.max(items.length * 2, size + items_.size()));
+    for(T item_ : items_) {
+      assert indexer.getHeapIndex(item_) == HeapIndexer.NOT_IN_HEAP;
+      place(item_, size++);
+    }
+    for(int i_ = (size - 2) / arity; i_ >= 0; --i_)
+      siftDown(itemAt(i_), i_);
+  }
+
+  @Override
+  public void update(T item_) {
+    var index_ = indexer.getHeapIndex(item_);
+    assert index_ >= 0 && index_ < size && items[index_] == item_;
+
+    if(index_ > 0
+        && comparator.compare(item_, itemAt((index_ - 1) / arity)) < 0) {
+      siftUp(item_, index_);
+    }
+    else {
+      siftDown(item_, index_);
+    }
+  }
+
+  @Override
+  public void remove(T item_) {
+    var index_ = indexer.getHeapIndex(item_);
+    assert index_ >= 0 && index_ < size && items[index_] == item_;
+
+    /* -- the last item fills the gap and it's moved to its place */
+    indexer.setHeapIndex(item_, HeapIndexer.NOT_IN_HEAP);
+    --size;
+    var last_ = itemAt(size);
+    items[size] = null;
+    if(index_ < size) {
+      place(last_, index_);
+      update(last_);
+    }
+  }
+
+  @Override
+  public T getMin() {
+    assert size > 0;
+    return itemAt(0);
+  }
+
+  @Override
+  public T pollMin() {
+    assert size > 0;
+
+    var min_ = itemAt(0);
+    indexer.setHeapIndex(min_, HeapIndexer.NOT_IN_HEAP);
+    --size;
+    if(size > 0) {
+      var last_ = itemAt(size);
+      items[size] = null;
+      siftDown(last_, 0);
+    }
+    else {
+      items[0] = null;
+    }
+    return min_;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Get number of stored items
+   */
+  public int size() {
+    return size;
+  }
+
+  private void siftUp(T item_, int index_) {
+    while(index_ > 0) {
+      var parent_index_ = (index_ - 1) / arity;
+      var parent_ = itemAt(parent_index_);
+      if(comparator.compare(item_, parent_) >= 0)
+        break;
+      place(parent_, index_);
+      index_ = parent_index_;
+    }
+    place(item_, index_);
+  }
+
+  private void siftDown(T item_, int index_) {
+    while(true) {
+      /* -- find the minimal child */
+      var first_child_ = index_ * arity + 1;
+      if(first_child_ >= size)
+        break;
+      var last_child_ = Math.min(first_child_ + arity, size);
+      var min_index_ = first_child_;
+      var min_child_ = itemAt(first_child_);
+      for(int i_ = first_child_ + 1; i_ < last_child_; ++i_) {
+        var child_ = itemAt(i_);
+        if(comparator.compare(child_, min_child_) < 0) {
+          min_index_ = i_;
+          min_child_ = child_;
+        }
+      }
+
+      if(comparator.compare(min_child_, item_) >= 0)
+        break;
+      place(min_child_, index_);
+      index_ = min_index_;
+    }
+    place(item_, index_);
+  }
+}
@@ -18,6 +18,9 @@
  */
 package net.staon.smake.core.heap;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
 /**
  * Generic interface of a heap structure
  *
@@ -36,6 +39,38 @@ public interface Heap<T> {
    */
   void insert(T item_);
   
+  /**
+   * Insert several items at once
+   *
+   * The default implementation inserts the items one by one. Heaps
+   * which are able to build their structure in linear time override it.
+   *
+   * @param items_ The inserted items. Same rules as for the
+   *     {@link #insert(Object)} apply.
+   */
+  default void insertAll(Collection<? extends T> items_) {
+    for(var item_ : items_)
+      insert(item_);
+  }
+  
+  /**
+   * Move all items of another heap into this heap
+   *
+   * The @a other_ heap is empty after the operation. Both heaps must
+   * order their items by the same comparator. The default implementation
+   * polls the items from the other heap and inserts them into this one.
+   *
+   * @param other_ The other heap
+   */
+  default void meld(Heap<T> other_) {
+    assert other_ != this;
+    
+    var items_ = new ArrayList<T>();
+    while(!other_.isEmpty())
+      items_.add(other_.pollMin());
+    insertAll(items_);
+  }
+  
   /**
    * Update existing item
    *
@@ -45,6 +80,13 @@ public interface Heap<T> {
    */
   void update(T item_);
   
+  /**
+   * Remove an item from the heap
+   *
+   * @param item_ The removed item. It must be stored in the heap.
+   */
+  void remove(T item_);
+  
   /**
    * Get minimal value in the heap. The heap must not be empty!
    */
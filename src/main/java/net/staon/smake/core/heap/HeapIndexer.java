@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap;
+
+/**
+ * Access to a heap position stored inside of a heap item
+ *
+ * Array-backed heaps keep position of each item inside the item itself
+ * (an intrusive handle). Hence, the item can be found in the heap without
+ * any lookup. The item must reserve an integer field for the heap. One item
+ * can be stored in one such heap at once only.
+ *
+ * @param <T> Type of heap items
+ */
+public interface HeapIndexer<T> {
+  /**
+   * Position value of an item which is not stored in the heap
+   */
+  int NOT_IN_HEAP = -1;
+
+  /**
+   * Get stored position of an item
+   */
+  int getHeapIndex(T item_);
+
+  /**
+   * Store position of an item
+   *
+   * @param item_ The item
+   * @param index_ The position or {@link #NOT_IN_HEAP}
+   */
+  void setHeapIndex(T item_, int index_);
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent heap with relaxed ordering (MultiQueue)
+ *
+ * The heap is split into several sub-heaps, each of them guarded by its
+ * own lock. An item is inserted into a randomly chosen sub-heap.
+ * The {@link #tryPollMin()} operation looks at the minimums of two randomly
+ * chosen sub-heaps and takes the smaller one. Hence, many threads can
+ * work with the heap at once with a low contention. On the other hand,
+ * the returned item is not the global minimum, it's just one of the
+ * smallest items. This is good enough for scheduling of ready tasks.
+ *
+ * The heap needs to know which sub-heap an item is stored in. The number
+ * of the sub-heap is stored in the item through a {@link HeapIndexer}.
+ *
+ * The ordering content of stored items may be changed only by the change
+ * function of {@link #update(Object, Consumer)}, which runs under the lock
+ * of the owning sub-heap. The minimums of the sub-heaps are compared
+ * without locks, but only to choose a sub-heap - a stale value may just
+ * cause a worse choice, the removal itself is done under the lock.
+ *
+ * @param <T> Type of data associated with heap items
+ */
+public class MultiQueueHeap<T> implements ConcurrentHeap<T> {
+  private static final class SubHeap<T> {
+    public final ReentrantLock lock;
+    public final Heap<T> heap;
+    public volatile T top;   /* -- cached minimum, null if empty */
+
+    public SubHeap(Comparator<T> comparator_) {
+      lock = new ReentrantLock();
+      heap = new BinomialHeap<>(comparator_);
+      top = null;
+    }
+
+    public void refreshTop() {
+      top = heap.isEmpty() ? null : heap.getMin();
+    }
+  }
+
+  private final Comparator<T> comparator;
+  private final HeapIndexer<T> indexer;
+  private final SubHeap<T>[] sub_heaps;
+  private final AtomicInteger size;
+
+  /**
+   * Ctor
+   *
+   * @param comparator_ A comparator used for ordering of stored items
+   * @param indexer_ Access to a field of the items where the number
+   *     of the sub-heap is stored
+   * @param threads_ Expected number of threads using the heap
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public MultiQueueHeap(
+      Comparator<T> comparator_, HeapIndexer<T> indexer_, int threads_) {
+    assert threads_ > 0;
+
+    comparator = comparator_;
+    indexer = indexer_;
+    /* -- two sub-heaps per thread keep the probability of a collision low */
+    sub_heaps = (SubHeap<T>[]) new SubHeap[Math.max(2, 2 * threads_)];
+    for(int i_ = 0; i_ < sub_heaps.length; ++i_)
+      sub_heaps[i_] = new SubHeap<>(comparator);
+    size = new AtomicInteger(0);
+  }
+
+  @Override
+  public void insert(T item_) {
+    assert indexer.getHeapIndex(item_) == HeapIndexer.NOT_IN_HEAP;
+
+    var random_ = ThreadLocalRandom.current();
+    while(true) {
+      var index_ = random_.nextInt(sub_heaps.length);
+      var sub_heap_ = sub_heaps[index_];
+      if(sub_heap_.lock.tryLock()) {
+        try {
+          sub_heap_.heap.insert(item_);
+          indexer.setHeapIndex(item_, index_);
+          sub_heap_.refreshTop();
+          size.incrementAndGet();
+          return;
+        }
+        finally {
+          sub_heap_.lock.unlock();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void update(T item_, Consumer<? super T> change_) {
+    while(true) {
+      var index_ = indexer.getHeapIndex(item_);
+      assert index_ != HeapIndexer.NOT_IN_HEAP;
+      var sub_heap_ = sub_heaps[index_];
+      sub_heap_.lock.lock();
+      try {
+        /* -- the index has been read without the lock, check it */
+        if(indexer.getHeapIndex(item_) == index_) {
+          change_.accept(item_);
+          sub_heap_.heap.update(item_);
+          sub_heap_.refreshTop();
+          return;
+        }
+      }
+      finally {
+        sub_heap_.lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public T tryPollMin() {
+    var random_ = ThreadLocalRandom.current();
+    while(size.get() > 0) {
+      /* -- choose the better one of two random sub-heaps */
+      var first_ = sub_heaps[random_.nextInt(sub_heaps.length)];
+      var second_ = sub_heaps[random_.nextInt(sub_heaps.length)];
+      var first_top_ = first_.top;
+      var second_top_ = second_.top;
+      SubHeap<T> chosen_;
+      if(first_top_ == null)
+        chosen_ = second_;
+      else if(second_top_ == null)
+        chosen_ = first_;
+      else
+        chosen_ = comparator.compare(first_top_, second_top_) <= 0 ? first_ : second_;
+      if(chosen_.top == null) {
+        /* -- both are empty, the remaining items must be somewhere else */
+        var polled_ = pollAnyMin();
+        if(polled_ != null)
+          return polled_;
+        continue;
+      }
+
+      if(chosen_.lock.tryLock()) {
+        try {
+          if(!chosen_.heap.isEmpty())
+            return pollLocked(chosen_);
+        }
+        finally {
+          chosen_.lock.unlock();
+        }
+      }
+    }
+    return null;
+  }
+
+  private T pollAnyMin() {
+    /* -- a slow path used if the heap is almost empty */
+    for(var sub_heap_ : sub_heaps) {
+      if(sub_heap_.top == null)
+        continue;
+      sub_heap_.lock.lock();
+      try {
+        if(!sub_heap_.heap.isEmpty())
+          return pollLocked(sub_heap_);
+      }
+      finally {
+        sub_heap_.lock.unlock();
+      }
+    }
+    return null;
+  }
+
+  private T pollLocked(SubHeap<T> sub_heap_) {
+    var item_ = sub_heap_.heap.pollMin();
+    indexer.setHeapIndex(item_, HeapIndexer.NOT_IN_HEAP);
+    sub_heap_.refreshTop();
+    size.decrementAndGet();
+    return item_;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size.get() == 0;
+  }
+
+  /**
+   * Get number of stored items
+   */
+  public int size() {
+    return size.get();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe wrapper of a heap
+ *
+ * All operations are serialized by one monitor. It's the simplest way
+ * how to share a heap among threads, but the monitor becomes a contention
+ * point if many threads use the heap. See {@link MultiQueueHeap} for
+ * a scalable alternative.
+ *
+ * @param <T> Type of data associated with heap items
+ */
+public class SynchronizedHeap<T> implements Heap<T>, ConcurrentHeap<T> {
+  private final Heap<T> heap;
+
+  /**
+   * Ctor
+   *
+   * @param heap_ The wrapped heap. It must not be used directly since
+   *     this moment.
+   */
+  public SynchronizedHeap(Heap<T> heap_) {
+    heap = heap_;
+  }
+
+  @Override
+  public synchronized void insert(T item_) {
+    heap.insert(item_);
+  }
+
+  @Override
+  public synchronized void insertAll(Collection<? extends T> items_) {
+    heap.insertAll(items_);
+  }
+
+  @Override
+  public synchronized void meld(Heap<T> other_) {
+    heap.meld(other_);
+  }
+
+  @Override
+  public synchronized void update(T item_) {
+    heap.update(item_);
+  }
+
+  @Override
+  public synchronized void update(T item_, Consumer<? super T> change_) {
+    change_.accept(item_);
+    heap.update(item_);
+  }
+
+  @Override
+  public synchronized void remove(T item_) {
+    heap.remove(item_);
+  }
+
+  @Override
+  public synchronized T getMin() {
+    return heap.getMin();
+  }
+
+  @Override
+  public synchronized T pollMin() {
+    return heap.pollMin();
+  }
+
+  @Override
+  public synchronized T tryPollMin() {
+    return heap.isEmpty() ? null : heap.pollMin();
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return heap.isEmpty();
+  }
+}
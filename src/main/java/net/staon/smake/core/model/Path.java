@@ -20,9 +20,9 @@ package net.staon.smake.core.model;
 
 import net.staon.smake.core.exception.InvalidPathException;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Generic path of a resource
@@ -33,25 +33,153 @@ import java.util.Objects;
  * Smake paths are relative to the project, they are unique inside a project,
  * and they are case-sensitive. Generally, they don't represent filesystem
  * paths, but mostly they can be simply mapped to.
+ *
+ * The paths are interned in a global trie of path segments. A path is just
+ * a reference to a trie node, so paths with a common prefix share it,
+ * equal paths are represented by the same node, and the comparison,
+ * the hash code and the base directory are constant-time operations.
+ *
+ * A trie node references its parent strongly, but its children weakly.
+ * Hence, a living path keeps its prefixes, and the nodes of paths which
+ * are not used any more are collected by the garbage collector. The maps
+ * of children are created lazily, so the leaves (most of the nodes) don't
+ * allocate any.
  */
 public final class Path {
-  private final List<String> path;
+  /**
+   * Weak reference of a child node
+   *
+   * The reference remembers its place in the trie, so it can be removed
+   * from the parent when the child is collected.
+   */
+  private static final class ChildReference extends WeakReference<PathNode> {
+    private final PathNode parent;
+    private final String segment;
+    
+    public ChildReference(PathNode child_) {
+      super(child_, COLLECTED);
+      parent = child_.parent;
+      segment = child_.segment;
+    }
+    
+    public void unlink() {
+      parent.children.remove(segment, this);
+    }
+  }
+  
+  /**
+   * Node of the trie of interned paths
+   */
+  private static final class PathNode {
+    private final PathNode parent;
+    private final String segment;
+    private final int depth;
+    private final int hash;
+    private volatile ConcurrentHashMap<String, ChildReference> children;
+    private String string;   /* -- lazily created string representation */
+    
+    public PathNode(PathNode parent_, String segment_) {
+      parent = parent_;
+      segment = segment_;
+      if(parent_ != null) {
+        depth = parent_.depth + 1;
+        hash = 31 * parent_.hash + segment_.hashCode();
+      }
+      else {
+        depth = 0;
+        hash = 1;
+      }
+      children = null;
+      string = parent_ == null ? "" : null;
+    }
+    
+    public PathNode getChild(String segment_) {
+      var children_ = getChildren();
+      var reference_ = children_.get(segment_);
+      var child_ = reference_ != null ? reference_.get() : null;
+      if(child_ != null)
+        return child_;
+      
+      /* -- create the child or replace the collected one */
+      expungeCollected();
+      var created_ = new PathNode[1];
+      children_.compute(segment_, (key_, current_) -> {
+        var node_ = current_ != null ? current_.get() : null;
+        if(node_ != null) {
+          created_[0] = node_;
+          return current_;
+        }
+        created_[0] = new PathNode(this, key_);
+        return new ChildReference(created_[0]);
+      });
+      return created_[0];
+    }
+    
+    private ConcurrentHashMap<String, ChildReference> getChildren() {
+      var children_ = children;
+      if(children_ == null) {
+        synchronized(this) {
+          children_ = children;
+          if(children_ == null) {
+            children_ = new ConcurrentHashMap<>(4);
+            children = children_;
+          }
+        }
+      }
+      return children_;
+    }
+    
+    public String asString() {
+      var string_ = string;
+      if(string_ == null) {
+        var builder_ = new StringBuilder();
+        appendTo(builder_);
+        string_ = builder_.toString();
+        string = string_;   /* -- benign race, strings are immutable */
+      }
+      return string_;
+    }
+    
+    private void appendTo(StringBuilder builder_) {
+      if(parent.parent != null) {
+        if(parent.string != null)
+          builder_.append(parent.string);
+        else
+          parent.appendTo(builder_);
+        builder_.append('/');
+      }
+      builder_.append(segment);
+    }
+  }
+  
+  private static final ReferenceQueue<PathNode> COLLECTED = new ReferenceQueue<>();
+  private static final PathNode ROOT = new PathNode(null, null);
+  
+  private static void expungeCollected() {
+    /* -- remove the references of collected nodes from their parents */
+    var reference_ = COLLECTED.poll();
+    while(reference_ != null) {
+      ((ChildReference) reference_).unlink();
+      reference_ = COLLECTED.poll();
+    }
+  }
+  
+  private final PathNode node;
   
   /**
    * Ctor - empty path
    */
   public Path() {
-    path = null;
+    node = ROOT;
   }
   
   /**
    * Ctor
    *
-   * @param path_ Initial path value
+   * @param node_ Node of the interned path
    */
-  private Path(List<String> path_) {
-    assert !path_.isEmpty();
-    path = path_;
+  private Path(PathNode node_) {
+    node = node_;
   }
   
   /**
@@ -60,7 +188,7 @@ public final class Path {
    * @param path_ Initial path value
    */
   public Path(Path path_) {
-    path = path_.path;
+    node = path_.node;
   }
   
   /**
@@ -73,34 +201,37 @@ public final class Path {
    * @param path_ Initial path value represented as a string.
    */
   public Path(String path_) throws InvalidPathException {
+    var node_ = ROOT;
     if(!path_.isEmpty()) {
-      var list = path_.split(
-        "/", -1 /* -- don't ignore trailing empty strings */);
-      path = new ArrayList<>();
-      for(var segment : list) {
-        if(segment.isEmpty())
+      int begin_ = 0;
+      while(true) {
+        var end_ = path_.indexOf('/', begin_);
+        if(end_ < 0)
+          end_ = path_.length();
+        if(end_ == begin_)
           throw new InvalidPathException(path_);
-        path.add(segment);
+        node_ = node_.getChild(path_.substring(begin_, end_));
+        if(end_ == path_.length())
+          break;
+        begin_ = end_ + 1;
       }
     }
-    else {
-      path = null;
-    }
+    node = node_;
   }
   
   /**
    * Check whether the path is empty
    */
   public boolean isEmpty() {
-    return path == null;
+    return node == ROOT;
   }
   
   /**
    * Get path basename (last item in the path)
    */
   public String getBasename() {
-    assert path != null && !path.isEmpty();
-    return path.get(path.size() - 1);
+    assert node != ROOT;
+    return node.segment;
   }
   
   /**
@@ -124,23 +255,15 @@ public final class Path {
    * Get path base directory (path without last segment)
    */
   public Path getBasedir() {
-    assert path != null && !path.isEmpty();
-    var basedir_ = path.subList(0, path.size() - 1);
-    if(!basedir_.isEmpty()) {
-      return new Path(basedir_);
-    }
-    else {
-      return new Path();
-    }
+    assert node != ROOT;
+    return new Path(node.parent);
   }
   
   /**
    * Convert path to its string representation parsable by the constructor
    */
   public String asString() {
-    if(path == null)
-      return "";
-    return String.join("/", path);
+    return node.asString();
   }
   
   /**
@@ -151,16 +274,19 @@ public final class Path {
    * relatively based on this path.
    */
   public Path join(Path path_) {
-    if(path == null && path_.path == null)
-      return new Path();
-
-    var list = new ArrayList<String>();
-    if(path != null)
-      list.addAll(path);
-    if(path_.path != null)
-      list.addAll(path_.path);
+    if(path_.node == ROOT)
+      return node == ROOT ? new Path() : this;
+    if(node == ROOT)
+      return path_;
     
-    return new Path(list);
+    /* -- walk the appended path from its beginning */
+    var segments_ = new String[path_.node.depth];
+    for(var n_ = path_.node; n_ != ROOT; n_ = n_.parent)
+      segments_[n_.depth - 1] = n_.segment;
+    var node_ = node;
+    for(var segment_ : segments_)
+      node_ = node_.getChild(segment_);
+    return new Path(node_);
   }
   
   /**
@@ -175,12 +301,12 @@ public final class Path {
     if(this == o_) return true;
     if(o_ == null || getClass() != o_.getClass()) return false;
     Path path_ = (Path) o_;
-    return Objects.equals(path, path_.path);
+    return node == path_.node;   /* -- the paths are interned */
   }
   
   @Override
   public int hashCode() {
-    return Objects.hash(path);
+    return node.hash;
   }
   
   @Override
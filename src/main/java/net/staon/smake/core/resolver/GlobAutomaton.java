@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Nondeterministic automaton of a set of glob patterns
+ *
+ * Each glob is compiled into a sequence of tokens. A state of the automaton
+ * is a position in the sequence. The tokens of all globs are stored in one
+ * array, each glob is terminated by an accepting token carrying index
+ * of the glob. So one set of states represents a simultaneous run of all
+ * the globs.
+ *
+ * Supported syntax:
+ *   - <code>?</code> any character except the slash,
+ *   - <code>*</code> any sequence of characters except the slash,
+ *   - <code>**</code> any sequence of characters,
+ *   - <code>**&#47;</code> any sequence of complete directories (even none),
+ *   - <code>[abc]</code>, <code>[a-z]</code>, <code>[!a-z]</code> character
+ *     classes (they never match the slash),
+ *   - <code>\</code> escapes the next character.
+ */
+final class GlobAutomaton {
+  private static final int LITERAL = 0;
+  private static final int ANY = 1;
+  private static final int CLASS = 2;
+  private static final int STAR = 3;
+  private static final int DOUBLESTAR = 4;
+  private static final int SKIP = 5;      /* -- optional part of the glob */
+  private static final int ACCEPT = 6;
+  
+  private static final class Token {
+    final int kind;
+    final char literal;
+    final String ranges;    /* -- pairs of range bounds of a class */
+    final boolean negated;
+    final int argument;     /* -- skip length or the glob index */
+    
+    public Token(
+        int kind_, char literal_, String ranges_, boolean negated_,
+        int argument_) {
+      kind = kind_;
+      literal = literal_;
+      ranges = ranges_;
+      negated = negated_;
+      argument = argument_;
+    }
+    
+    public Token(int kind_) {
+      this(kind_, '\0', null, false, 0);
+    }
+    
+    public boolean acceptsChar(char c_) {
+      return switch(kind) {
+        case LITERAL -> c_ == literal;
+        case ANY, STAR -> c_ != '/';
+        case DOUBLESTAR -> true;
+        case CLASS -> c_ != '/' && inRanges(c_) != negated;
+        default -> false;
+      };
+    }
+    
+    private boolean inRanges(char c_) {
+      for(int i_ = 0; i_ < ranges.length(); i_ += 2) {
+        if(c_ >= ranges.charAt(i_) && c_ <= ranges.charAt(i_ + 1))
+          return true;
+      }
+      return false;
+    }
+  }
+  
+  private final List<Token> tokens;
+  private final List<Integer> starts;
+  
+  /**
+   * Ctor - empty automaton
+   */
+  public GlobAutomaton() {
+    tokens = new ArrayList<>();
+    starts = new ArrayList<>();
+  }
+  
+  /**
+   * Get number of compiled globs
+   */
+  public int getGlobCount() {
+    return starts.size();
+  }
+  
+  /**
+   * Get number of states
+   */
+  public int getStateCount() {
+    return tokens.size();
+  }
+  
+  /**
+   * Add a glob
+   *
+   * @param glob_ The glob
+   * @return Index of the glob
+   */
+  public int addGlob(String glob_) {
+    var start_ = beginGlob();
+    int i_ = 0;
+    while(i_ < glob_.length()) {
+      var c_ = glob_.charAt(i_);
+      if(c_ == '\\' && i_ + 1 < glob_.length()) {
+        tokens.add(literal(glob_.charAt(i_ + 1)));
+        i_ += 2;
+      }
+      else if(c_ == '?') {
+        tokens.add(new Token(ANY));
+        ++i_;
+      }
+      else if(c_ == '*') {
+        if(glob_.startsWith("**/", i_)) {
+          /* -- optional sequence of directories */
+          tokens.add(new Token(SKIP, '\0', null, false, 3));
+          tokens.add(new Token(DOUBLESTAR));
+          tokens.add(literal('/'));
+          i_ += 3;
+        }
+        else if(glob_.startsWith("**", i_)) {
+          tokens.add(new Token(DOUBLESTAR));
+          i_ += 2;
+        }
+        else {
+          tokens.add(new Token(STAR));
+          ++i_;
+        }
+      }
+      else if(c_ == '[') {
+        i_ = parseClass(glob_, i_);
+      }
+      else {
+        tokens.add(literal(c_));
+        ++i_;
+      }
+    }
+    return endGlob(start_);
+  }
+  
+  /**
+   * Add a glob matching exactly one text
+   *
+   * @param text_ The text
+   * @return Index of the glob
+   */
+  public int addLiteral(String text_) {
+    var start_ = beginGlob();
+    for(int i_ = 0; i_ < text_.length(); ++i_)
+      tokens.add(literal(text_.charAt(i_)));
+    return endGlob(start_);
+  }
+  
+  /**
+   * Add a glob matching any text with a suffix
+   *
+   * @param suffix_ The suffix
+   * @return Index of the glob
+   */
+  public int addSuffix(String suffix_) {
+    var start_ = beginGlob();
+    tokens.add(new Token(DOUBLESTAR));
+    for(int i_ = 0; i_ < suffix_.length(); ++i_)
+      tokens.add(literal(suffix_.charAt(i_)));
+    return endGlob(start_);
+  }
+  
+  private static Token literal(char c_) {
+    return new Token(LITERAL, c_, null, false, 0);
+  }
+  
+  private int beginGlob() {
+    return tokens.size();
+  }
+  
+  private int endGlob(int start_) {
+    var index_ = starts.size();
+    tokens.add(new Token(ACCEPT, '\0', null, false, index_));
+    starts.add(start_);
+    return index_;
+  }
+  
+  private int parseClass(String glob_, int begin_) {
+    int i_ = begin_ + 1;
+    var negated_ = false;
+    if(i_ < glob_.length() && glob_.charAt(i_) == '!') {
+      negated_ = true;
+      ++i_;
+    }
+    var ranges_ = new StringBuilder();
+    var first_ = true;
+    while(i_ < glob_.length() && (first_ || glob_.charAt(i_) != ']')) {
+      var low_ = glob_.charAt(i_);
+      var high_ = low_;
+      if(i_ + 2 < glob_.length()
+          && glob_.charAt(i_ + 1) == '-'
+          && glob_.charAt(i_ + 2) != ']') {
+        high_ = glob_.charAt(i_ + 2);
+        i_ += 2;
+      }
+      ranges_.append(low_).append(high_);
+      ++i_;
+      first_ = false;
+    }
+    if(i_ >= glob_.length()) {
+      /* -- unterminated class, the bracket is a literal */
+      tokens.add(literal('['));
+      return begin_ + 1;
+    }
+    tokens.add(new Token(CLASS, '\0', ranges_.toString(), negated_, 0));
+    return i_ + 1;
+  }
+  
+  private void addClosure(BitSet states_, int state_) {
+    while(!states_.get(state_)) {
+      states_.set(state_);
+      var token_ = tokens.get(state_);
+      switch(token_.kind) {
+        case STAR:
+        case DOUBLESTAR:
+          state_ = state_ + 1;
+          break;
+        case SKIP:
+          addClosure(states_, state_ + token_.argument);
+          state_ = state_ + 1;
+          break;
+        default:
+          return;
+      }
+    }
+  }
+  
+  /**
+   * Fill the initial states
+   *
+   * @param states_ The set of states
+   */
+  public void start(BitSet states_) {
+    for(var start_ : starts)
+      addClosure(states_, start_);
+  }
+  
+  /**
+   * Move the automaton over one character
+   *
+   * @param from_ Current states
+   * @param c_ The character
+   * @param to_ Next states
+   */
+  public void step(BitSet from_, char c_, BitSet to_) {
+    for(int state_ = from_.nextSetBit(0);
+        state_ >= 0;
+        state_ = from_.nextSetBit(state_ + 1)) {
+      var token_ = tokens.get(state_);
+      if(!token_.acceptsChar(c_))
+        continue;
+      if(token_.kind == STAR || token_.kind == DOUBLESTAR)
+        addClosure(to_, state_);
+      else
+        addClosure(to_, state_ + 1);
+    }
+  }
+  
+  /**
+   * Report the globs accepted in a set of states
+   *
+   * @param states_ The states
+   * @param fn_ The function is invoked with index of each accepted glob
+   */
+  public void forEachAccepted(BitSet states_, IntConsumer fn_) {
+    for(int state_ = states_.nextSetBit(0);
+        state_ >= 0;
+        state_ = states_.nextSetBit(state_ + 1)) {
+      var token_ = tokens.get(state_);
+      if(token_.kind == ACCEPT)
+        fn_.accept(token_.argument);
+    }
+  }
+}
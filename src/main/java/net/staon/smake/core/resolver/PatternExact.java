@@ -33,6 +33,13 @@ public class PatternExact implements Pattern {
     key = key_;
   }
   
+  /**
+   * Get the matching key
+   */
+  String getKey() {
+    return key;
+  }
+  
   @Override
   public boolean matches(String text_) {
     return text_.equals(key);
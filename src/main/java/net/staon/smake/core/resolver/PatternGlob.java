@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver;
+
+import java.util.BitSet;
+
+/**
+ * Glob matcher
+ *
+ * The glob is matched against the whole text. The asterisk matches any
+ * sequence of characters except the slash, the double asterisk matches
+ * any sequence including slashes. See {@link GlobAutomaton} for complete
+ * syntax.
+ */
+public class PatternGlob implements Pattern {
+  private final String glob;
+  private final GlobAutomaton automaton;
+  
+  /**
+   * Ctor
+   *
+   * @param glob_ The glob
+   */
+  public PatternGlob(String glob_) {
+    glob = glob_;
+    automaton = new GlobAutomaton();
+    automaton.addGlob(glob_);
+  }
+  
+  /**
+   * Get the glob
+   */
+  String getGlob() {
+    return glob;
+  }
+  
+  @Override
+  public boolean matches(String text_) {
+    if(text_ == null)
+      return false;
+    
+    var states_ = new BitSet(automaton.getStateCount());
+    automaton.start(states_);
+    var next_ = new BitSet(automaton.getStateCount());
+    for(int i_ = 0; i_ < text_.length() && !states_.isEmpty(); ++i_) {
+      next_.clear();
+      automaton.step(states_, text_.charAt(i_), next_);
+      var tmp_ = states_;
+      states_ = next_;
+      next_ = tmp_;
+    }
+    var matches_ = new boolean[] {false};
+    automaton.forEachAccepted(states_, index_ -> matches_[0] = true);
+    return matches_[0];
+  }
+}
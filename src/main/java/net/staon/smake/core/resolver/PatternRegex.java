@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver;
+
+/**
+ * Regular expression matcher
+ *
+ * The expression must match the whole text.
+ */
+public class PatternRegex implements Pattern {
+  private final java.util.regex.Pattern regex;
+  
+  /**
+   * Ctor
+   *
+   * @param regex_ The regular expression (syntax of java.util.regex)
+   */
+  public PatternRegex(String regex_) {
+    regex = java.util.regex.Pattern.compile(regex_);
+  }
+  
+  @Override
+  public boolean matches(String text_) {
+    return text_ != null && regex.matcher(text_).matches();
+  }
+}
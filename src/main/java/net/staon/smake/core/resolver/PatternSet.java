@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Compiled set of patterns
+ *
+ * The set merges globs, exact and suffix patterns into one automaton.
+ * One pass over a text reports all matching patterns, so the cost
+ * of the matching doesn't grow linearly with number of the patterns.
+ * The automaton is determinized lazily - the states of the deterministic
+ * automaton are created when a text reaches them for the first time.
+ *
+ * Other patterns (e.g. the regular expressions) cannot be merged. They are
+ * kept in a list and they are matched one by one.
+ *
+ * Patterns must not be added while the set is used for matching. Matching
+ * may be invoked by several threads at once.
+ */
+public class PatternSet {
+  private static final int MAX_DFA_STATES = 4096;
+  
+  private static final class DfaState {
+    final BitSet states;
+    final int[] accepted;
+    final Map<Character, DfaState> next;
+    
+    public DfaState(BitSet states_, int[] accepted_) {
+      states = states_;
+      accepted = accepted_;
+      next = new ConcurrentHashMap<>();
+    }
+  }
+  
+  private final GlobAutomaton automaton;
+  private final List<Integer> glob_indices;   /* -- glob -> pattern index */
+  private final List<Pattern> others;
+  private final List<Integer> other_indices;
+  private int pattern_count;
+  private final Map<BitSet, DfaState> dfa_states;
+  private volatile DfaState dfa_start;
+  
+  /**
+   * Ctor - empty set
+   */
+  public PatternSet() {
+    automaton = new GlobAutomaton();
+    glob_indices = new ArrayList<>();
+    others = new ArrayList<>();
+    other_indices = new ArrayList<>();
+    pattern_count = 0;
+    dfa_states = new ConcurrentHashMap<>();
+    dfa_start = null;
+  }
+  
+  /**
+   * Check whether a pattern can be merged into the automaton
+   */
+  public static boolean canMerge(Pattern pattern_) {
+    return pattern_ instanceof PatternGlob
+        || pattern_ instanceof PatternExact
+        || pattern_ instanceof PatternSuffix;
+  }
+  
+  /**
+   * Add new pattern
+   *
+   * @param pattern_ The pattern
+   * @return Index of the pattern in the set
+   */
+  public int addPattern(Pattern pattern_) {
+    var index_ = pattern_count++;
+    if(pattern_ instanceof PatternGlob glob_) {
+      automaton.addGlob(glob_.getGlob());
+      glob_indices.add(index_);
+    }
+    else if(pattern_ instanceof PatternExact exact_) {
+      automaton.addLiteral(exact_.getKey());
+      glob_indices.add(index_);
+    }
+    else if(pattern_ instanceof PatternSuffix suffix_) {
+      automaton.addSuffix(suffix_.getSuffix());
+      glob_indices.add(index_);
+    }
+    else {
+      others.add(pattern_);
+      other_indices.add(index_);
+    }
+    
+    /* -- the automaton has changed */
+    dfa_states.clear();
+    dfa_start = null;
+    return index_;
+  }
+  
+  /**
+   * Get number of patterns in the set
+   */
+  public int size() {
+    return pattern_count;
+  }
+  
+  private DfaState makeState(BitSet states_) {
+    var state_ = dfa_states.get(states_);
+    if(state_ != null)
+      return state_;
+    
+    var accepted_ = new ArrayList<Integer>();
+    automaton.forEachAccepted(
+        states_, index_ -> accepted_.add(glob_indices.get(index_)));
+    state_ = new DfaState(
+        states_, accepted_.stream().mapToInt(Integer::intValue).toArray());
+    if(dfa_states.size() < MAX_DFA_STATES) {
+      var previous_ = dfa_states.putIfAbsent(states_, state_);
+      if(previous_ != null)
+        state_ = previous_;
+    }
+    return state_;
+  }
+  
+  private DfaState getStart() {
+    var start_ = dfa_start;
+    if(start_ == null) {
+      var states_ = new BitSet(automaton.getStateCount());
+      automaton.start(states_);
+      start_ = makeState(states_);
+      dfa_start = start_;
+    }
+    return start_;
+  }
+  
+  /**
+   * Match a text against all patterns
+   *
+   * @param text_ The text. Null matches just the patterns which accept
+   *     the null value.
+   * @param fn_ The function is invoked with index of each matching pattern.
+   *     The merged patterns are reported first, the other ones follow.
+   */
+  public void forEachMatch(String text_, IntConsumer fn_) {
+    if(text_ != null && !glob_indices.isEmpty()) {
+      var state_ = getStart();
+      for(int i_ = 0; i_ < text_.length() && !state_.states.isEmpty(); ++i_) {
+        var c_ = text_.charAt(i_);
+        var next_ = state_.next.get(c_);
+        if(next_ == null) {
+          var states_ = new BitSet(automaton.getStateCount());
+          automaton.step(state_.states, c_, states_);
+          next_ = makeState(states_);
+          if(dfa_states.size() < MAX_DFA_STATES)
+            state_.next.putIfAbsent(c_, next_);
+        }
+        state_ = next_;
+      }
+      for(var index_ : state_.accepted)
+        fn_.accept(index_);
+    }
+    
+    for(int i_ = 0; i_ < others.size(); ++i_) {
+      if(others.get(i_).matches(text_))
+        fn_.accept(other_indices.get(i_));
+    }
+  }
+}
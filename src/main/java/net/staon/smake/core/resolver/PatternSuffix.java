@@ -33,6 +33,13 @@ public class PatternSuffix implements Pattern {
     suffix = suffix_;
   }
   
+  /**
+   * Get the matching suffix
+   */
+  String getSuffix() {
+    return suffix;
+  }
+  
   @Override
   public boolean matches(String text_) {
     return text_.endsWith(suffix);
@@ -23,8 +23,25 @@ import net.staon.smake.core.exception.SMakeException;
 import net.staon.smake.core.execution.*;
 import net.staon.smake.core.model.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Context of the resolving process
+ *
+ * The context may resolve the artefacts in parallel. Each artefact is
+ * resolved by its own worker context on a fork-join pool. The worker gets
+ * a snapshot of the resolution state (the resolver stack and the project)
+ * and its own queue of resources. The resource map is shared by all
+ * workers, so it must be thread-safe in the parallel mode.
+ *
+ * The workers share the resolver layers of their parent context (they
+ * push their own layers on top of them). The shared layers are read
+ * concurrently without any locking, hence, no resolver may be added into
+ * them while the workers run. All resolvers must be registered before
+ * the project is resolved.
  */
 public class ResolverContext {
   public static final String SOURCE_TYPE = "smake::source";
@@ -47,6 +64,14 @@ public class ResolverContext {
       resource_queue = null;
     }
     
+    public ResolutionState(ResolutionState state_) {
+      resolver_stack = state_.resolver_stack;
+      project = state_.project;
+      artefact = null;
+      product = null;
+      resource_queue = new ResourceQueue();
+    }
+    
     public void openProject(Project project_) {
       assert project == null && artefact == null && product == null;
       assert project_ != null;
@@ -105,6 +130,10 @@ public class ResolverContext {
   /* -- constructed resource map */
   private final ResourceMapManipulator resource_map;
   
+  /* -- pool of the parallel resolution, null for the sequential one */
+  private final ForkJoinPool pool;
+  private final List<ArtefactTask> artefact_tasks;
+  
   private static class StateGuard implements AutoCloseable {
     private final Runnable clean_up;
     
@@ -118,6 +147,31 @@ public class ResolverContext {
     }
   }
   
+  /* -- resolution of one artefact in the parallel mode */
+  private static class ArtefactTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    
+    private final ResolverContext worker;
+    private final Artefact artefact;
+    private Throwable failure;
+    
+    public ArtefactTask(ResolverContext worker_, Artefact artefact_) {
+      worker = worker_;
+      artefact = artefact_;
+      failure = null;
+    }
+    
+    @Override
+    protected void compute() {
+      try {
+        worker.resolveArtefactAlone(artefact);
+      }
+      catch(Throwable exc_) {
+        failure = exc_;
+      }
+    }
+  }
+  
   private class ResolverVisitor implements Visitor {
     @Override
     public void visitProject(Project project_) throws SMakeException {
@@ -125,12 +179,13 @@ public class ResolverContext {
       try(var ignored = new StateGuard(state::closeProject)) {
         /* -- visit project children (mainly artefacts) */
         project_.applyChildren(this);
+        
+        /* -- wait for artefacts resolved in parallel */
+        if(pool != null)
+          joinArtefactTasks();
   
         /* -- resolve all resources */
-        while(!state.resource_queue.isEmpty()) {
-          var resource_ = state.resource_queue.popResource();
-          Resolver.resolveResource(ResolverContext.this, resource_);
-        }
+        resolveQueuedResources();
       }
     }
   
@@ -144,6 +199,15 @@ public class ResolverContext {
   
     @Override
     public void visitArtefact(Artefact artefact_) throws SMakeException {
+      if(pool != null) {
+        /* -- the artefact is resolved by a worker with its own state */
+        var task_ = new ArtefactTask(
+            new ResolverContext(ResolverContext.this), artefact_);
+        artefact_tasks.add(task_);
+        pool.execute(task_);
+        return;
+      }
+      
       state.openArtefact(artefact_);
       try(var ignored = new StateGuard(state::closeArtefact)) {
         /* -- resolve the artefact - children of the artefact are
@@ -174,11 +238,82 @@ public class ResolverContext {
 
     state = new ResolutionState(resolver_stack_);
     resource_map = resource_map_;
+    pool = null;
+    artefact_tasks = null;
+    visitor = new ResolverVisitor();
+  }
+  
+  /**
+   * Ctor - parallel resolution
+   *
+   * @param resolver_stack_ Initial stack of resolvers (new layers
+   *     will be pushed for projects, blocks and artefacts)
+   * @param resource_map_ Resource map of the project. The map must be
+   *     thread-safe (e.g. {@link ResourceMapConcurrent}).
+   * @param pool_ Pool resolving the artefacts
+   */
+  public ResolverContext(
+      ResolverLayer resolver_stack_,
+      ResourceMapManipulator resource_map_,
+      ForkJoinPool pool_) {
+    assert resource_map_ != null;
+    assert pool_ != null;
+    
+    state = new ResolutionState(resolver_stack_);
+    resource_map = resource_map_;
+    pool = pool_;
+    artefact_tasks = new ArrayList<>();
+    visitor = new ResolverVisitor();
+  }
+  
+  /**
+   * Ctor - worker of the parallel resolution
+   *
+   * @param parent_ The context which has started the worker
+   */
+  private ResolverContext(ResolverContext parent_) {
+    state = new ResolutionState(parent_.state);
+    resource_map = parent_.resource_map;
+    pool = null;
+    artefact_tasks = null;
     visitor = new ResolverVisitor();
   }
   
+  private void resolveQueuedResources() throws SMakeException {
+    while(!state.resource_queue.isEmpty()) {
+      var resource_ = state.resource_queue.popResource();
+      Resolver.resolveResource(this, resource_);
+    }
+  }
+  
+  private void resolveArtefactAlone(Artefact artefact_) throws SMakeException {
+    visitor.visitArtefact(artefact_);
+    resolveQueuedResources();
+  }
+  
+  private void joinArtefactTasks() throws SMakeException {
+    /* -- all tasks must be finished before a failure is reported */
+    Throwable failure_ = null;
+    for(var task_ : artefact_tasks) {
+      task_.quietlyJoin();
+      if(failure_ == null)
+        failure_ = task_.failure;
+    }
+    artefact_tasks.clear();
+    
+    if(failure_ instanceof SMakeException smake_exc_)
+      throw smake_exc_;
+    if(failure_ instanceof RuntimeException runtime_exc_)
+      throw runtime_exc_;
+    if(failure_ instanceof Error error_)
+      throw error_;
+    if(failure_ != null)
+      throw new RuntimeException(failure_);
+  }
+  
   private Resource createSourceResource(Path path_) {
-    return new ResourcePhysical(SOURCE_TYPE, path_, UNKNOWN_CONTENT);
+    return new ResourcePhysical(
+        resource_map.createResourceID(SOURCE_TYPE, path_), UNKNOWN_CONTENT);
   }
   
   /**
@@ -189,7 +324,8 @@ public class ResolverContext {
    * @return The resource
    */
   public Resource createTargetResource(Path path_, String content_type_) {
-    return new ResourcePhysical(TARGET_TYPE, path_, content_type_);
+    return new ResourcePhysical(
+        resource_map.createResourceID(TARGET_TYPE, path_), content_type_);
   }
   
   private void queueResource(Resource resource_) {
@@ -197,20 +333,14 @@ public class ResolverContext {
         new ResolverResource(resource_, state.resolver_stack, state.product));
   }
   private void insertSharedResource(Resource resource_) {
-    var actual_ = resource_map.getResource(resource_.getID());
-    if(actual_ == null) {
-      actual_ = resource_;
-      resource_map.addResource(actual_);
-    }
-    queueResource(actual_);
+    queueResource(resource_map.addSharedResource(resource_));
   }
   
   private void insertUniqueResource(Resource resource_)
       throws DuplicatedResourceException {
-    if(resource_map.containsResource(resource_)) {
+    if(!resource_map.addUniqueResource(resource_)) {
       throw new DuplicatedResourceException(state.project, resource_);
     }
-    resource_map.addResource(resource_);
     queueResource(resource_);
   }
   
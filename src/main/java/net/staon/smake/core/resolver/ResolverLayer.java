@@ -20,11 +20,13 @@ package net.staon.smake.core.resolver;
 
 import net.staon.smake.core.execution.Resource;
 import net.staon.smake.core.execution.ResourceFile;
-import net.staon.smake.core.execution.ResourceVisitor;
+import net.staon.smake.core.execution.ResourceID;
 import net.staon.smake.core.model.Artefact;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Resolver layer
@@ -34,12 +36,78 @@ import java.util.Map;
  *
  * The resolving system is responsible for transformation of a project
  * description to resource map containing resources and task builders.
+ *
+ * Results of the searches are cached in the layer, flattened over the whole
+ * chain of parent layers. The resource resolvers are looked up by the
+ * resource type, the content type and the part of the path which can be
+ * matched by the registered path patterns (e.g. the suffix). Hence, all
+ * sources with the same suffix share one lookup. The cache is dropped
+ * when a resolver is added into the layer or into any of its parents.
+ *
+ * The searches may run concurrently (e.g. by the workers of the parallel
+ * resolution), but the additions are not synchronized with them - neither
+ * the registered resolvers nor the version of the layer are guarded.
+ * Hence, a layer must not be modified while it or any of its nested layers
+ * is being searched by other threads.
  */
 public class ResolverLayer {
+  /**
+   * Key of the cached resource lookup
+   */
+  private static final class LookupKey {
+    private final String type;
+    private final String path_key;
+    private final String content_type;
+    
+    public LookupKey(String type_, String path_key_, String content_type_) {
+      type = type_;
+      path_key = path_key_;
+      content_type = content_type_;
+    }
+    
+    @Override
+    public boolean equals(Object o_) {
+      if(this == o_) return true;
+      if(o_ == null || getClass() != o_.getClass()) return false;
+      LookupKey key_ = (LookupKey) o_;
+      return type.equals(key_.type)
+          && path_key.equals(key_.path_key)
+          && Objects.equals(content_type, key_.content_type);
+    }
+    
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, path_key, content_type);
+    }
+  }
+  
+  /**
+   * Cached lookups valid for one version of the chain of layers
+   */
+  private static final class LookupCache {
+    private final int chain_version;
+    private final int path_key_length;   /* -- negative means whole path */
+    private final Map<String, ArtefactResolver> artefact_resolvers;
+    private final Map<LookupKey, ResourceResolverGroups> resource_resolvers;
+    
+    public LookupCache(
+        int chain_version_,
+        int path_key_length_,
+        Map<String, ArtefactResolver> artefact_resolvers_) {
+      chain_version = chain_version_;
+      path_key_length = path_key_length_;
+      artefact_resolvers = artefact_resolvers_;
+      resource_resolvers = new ConcurrentHashMap<>();
+    }
+  }
+  
   private final ResolverLayer parent;
   
   private final Map<String, ArtefactResolver> artefact_resolvers;
   private final ResourceResolverLayer resource_resolvers;
+  private volatile int version;           /* -- changed by every addition */
+  private int path_key_length;            /* -- negative means whole path */
+  private volatile LookupCache cache;
   
   /**
    * Ctor
@@ -52,6 +120,9 @@ public class ResolverLayer {
     parent = parent_;
     artefact_resolvers = new HashMap<>();
     resource_resolvers = resource_resolvers_;
+    version = 0;
+    path_key_length = 0;
+    cache = null;
   }
   
   /**
@@ -62,7 +133,7 @@ public class ResolverLayer {
    */
   public static ResolverLayer createConfigLayer(
       ResolverLayer parent_) {
-    return new ResolverLayer(parent_, new ResourceResolverLayerSimple());
+    return new ResolverLayer(parent_, new ResourceResolverLayerIndexed());
   }
   
   /**
@@ -86,6 +157,9 @@ public class ResolverLayer {
   /**
    * Register an artefact resolver
    *
+   * The method must not be called while other threads search the layer
+   * or its nested layers.
+   *
    * @param artefact_type_ Type of the artefact
    * @param resolver_ The resolver
    */
@@ -94,6 +168,7 @@ public class ResolverLayer {
       ArtefactResolver resolver_) {
     assert !artefact_resolvers.containsKey(artefact_type_);
     artefact_resolvers.put(artefact_type_, resolver_);
+    ++version;
   }
   
   /**
@@ -104,24 +179,65 @@ public class ResolverLayer {
    */
   public ArtefactResolver searchArtefactResolvers(
       Artefact artefact_) {
-    /* -- my layer can resolve the artefact */
-    var resolver_ = artefact_resolvers.get(artefact_.getType());
-    if(resolver_ != null) {
-      return resolver_;
+    /* -- the cache contains resolvers of all parents overridden by
+     *    the resolvers of nested layers */
+    return getCache().artefact_resolvers.get(artefact_.getType());
+  }
+  
+  private int getChainVersion() {
+    var version_ = 0;
+    for(var layer_ = this; layer_ != null; layer_ = layer_.parent)
+      version_ += layer_.version;
+    return version_;
+  }
+  
+  private LookupCache getCache() {
+    /* -- Note: the versions only grow, so their sum changes with any
+     *    addition into the chain. */
+    var chain_version_ = getChainVersion();
+    var cache_ = cache;
+    if(cache_ == null || cache_.chain_version != chain_version_) {
+      Map<String, ArtefactResolver> artefact_resolvers_;
+      int path_key_length_;
+      if(parent != null) {
+        var parent_cache_ = parent.getCache();
+        artefact_resolvers_ = new HashMap<>(parent_cache_.artefact_resolvers);
+        path_key_length_ = parent_cache_.path_key_length < 0
+            || path_key_length < 0
+            ? -1
+            : Math.max(parent_cache_.path_key_length, path_key_length);
+      }
+      else {
+        artefact_resolvers_ = new HashMap<>();
+        path_key_length_ = path_key_length;
+      }
+      artefact_resolvers_.putAll(artefact_resolvers);
+      cache_ = new LookupCache(
+          chain_version_, path_key_length_, artefact_resolvers_);
+      cache = cache_;
     }
-
-    /* -- give a chance to the parent layer */
-    if(parent != null) {
-      return parent.searchArtefactResolvers(artefact_);
+    return cache_;
+  }
+  
+  private void updatePathKeyLength(ResourceMask mask_) {
+    var pattern_ = mask_.getPathPattern();
+    if(pattern_ instanceof PatternSuffix suffix_) {
+      if(path_key_length >= 0)
+        path_key_length = Math.max(
+            path_key_length, suffix_.getSuffix().length());
+    }
+    else if(!(pattern_ instanceof PatternNull)) {
+      /* -- other patterns may depend on the whole path */
+      path_key_length = -1;
     }
-
-    /* -- there is no resolver for this artefact */
-    return null;
   }
   
   /**
    * Add new resolver into current resource resolver layer
    *
+   * The method must not be called while other threads search the layer
+   * or its nested layers.
+   *
    * @param mask_ Resource mask of the resolver
    * @param resolver_ The resolver
    */
@@ -130,11 +246,16 @@ public class ResolverLayer {
       ResourceResolver resolver_) {
     assert resolver_ != null;
     resource_resolvers.addResourceResolver(mask_, resolver_);
+    updatePathKeyLength(mask_);
+    ++version;
   }
   
   /**
    * Add new resolver into current resource resolver layer
    *
+   * The method must not be called while other threads search the layer
+   * or its nested layers.
+   *
    * @param mask_ Resource mask of the resolver
    * @param group_ A group the resolver belongs to
    * @param resolver_ The resolver
@@ -145,6 +266,22 @@ public class ResolverLayer {
       ResourceResolver resolver_) {
     assert resolver_ != null;
     resource_resolvers.addResourceResolver(mask_, group_, resolver_);
+    updatePathKeyLength(mask_);
+    ++version;
+  }
+  
+  private void doSearchResourceResolvers(
+      ResourceResolverGroups applicable_resolvers_,
+      ResourceID resource_,
+      String content_type_) {
+    for(var layer_ = this; layer_ != null; layer_ = layer_.parent) {
+      if(content_type_ != null)
+        layer_.resource_resolvers.searchResolvers(
+            applicable_resolvers_, resource_, content_type_);
+      else
+        layer_.resource_resolvers.searchResolvers(
+            applicable_resolvers_, resource_);
+    }
   }
   
   /**
@@ -156,25 +293,34 @@ public class ResolverLayer {
   public void searchResourceResolvers(
       ResourceResolverGroups applicable_resolvers_,
       Resource resource_) {
-    /* -- search for applicable resolvers in my layer */
-    resource_.apply(new ResourceVisitor() {
-      @Override
-      public void visit(Resource resource_) {
-        resource_resolvers.searchResolvers(
-            applicable_resolvers_, resource_.getID());
-      }
-  
-      @Override
-      public void visit(ResourceFile resource_) {
-        resource_resolvers.searchResolvers(
-            applicable_resolvers_,
-            resource_.getID(),
-            resource_.getContentType());
-      }
-    });
+    var id_ = resource_.getID();
+    String content_type_ = null;
+    if(resource_ instanceof ResourceFile file_)
+      content_type_ = file_.getContentType();
     
-    /* -- give a chance to parents */
-    if(parent != null)
-      parent.searchResourceResolvers(applicable_resolvers_, resource_);
+    /* -- some registered path pattern needs the whole path, the lookups
+     *    cannot be shared */
+    var cache_ = getCache();
+    if(cache_.path_key_length < 0) {
+      doSearchResourceResolvers(applicable_resolvers_, id_, content_type_);
+      return;
+    }
+    
+    var path_ = id_.getPath().asString();
+    var key_ = new LookupKey(
+        id_.getType(),
+        path_.length() > cache_.path_key_length
+            ? path_.substring(path_.length() - cache_.path_key_length)
+            : path_,
+        content_type_);
+    var found_ = cache_.resource_resolvers.get(key_);
+    if(found_ == null) {
+      found_ = new ResourceResolverGroups();
+      doSearchResourceResolvers(found_, id_, content_type_);
+      var previous_ = cache_.resource_resolvers.putIfAbsent(key_, found_);
+      if(previous_ != null)
+        found_ = previous_;
+    }
+    applicable_resolvers_.appendResolvers(found_);
   }
 }
@@ -48,6 +48,27 @@ public class ResourceMask {
     this(type_, path_, new PatternNull());
   }
   
+  /**
+   * Get pattern of the resource type
+   */
+  Pattern getTypePattern() {
+    return type;
+  }
+  
+  /**
+   * Get pattern of the resource path
+   */
+  Pattern getPathPattern() {
+    return path;
+  }
+  
+  /**
+   * Get pattern of the content type
+   */
+  Pattern getContentPattern() {
+    return content;
+  }
+  
   /**
    * Match a resource with the mask
    *
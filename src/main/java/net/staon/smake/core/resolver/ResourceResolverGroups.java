@@ -52,6 +52,20 @@ public class ResourceResolverGroups implements Iterable<ResourceResolver> {
     }
   }
   
+  /**
+   * Append all resolvers of another list
+   *
+   * The result is the same as if the resolvers of the other list were
+   * appended one by one in the order they were appended into the other list.
+   *
+   * @param other_ The other list. It's not modified.
+   */
+  void appendResolvers(ResourceResolverGroups other_) {
+    for(var group_ : other_.groups.entrySet())
+      groups.putIfAbsent(group_.getKey(), group_.getValue());
+    singles.addAll(other_.singles);
+  }
+  
   /**
    * Check whether the list of resolvers is empty
    */
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver;
+
+import net.staon.smake.core.execution.ResourceID;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexed implementation of the resource resolver layer
+ *
+ * This implementation is intended for layers with a lot of resolvers
+ * (the global configuration). The resolvers are indexed by the exact
+ * resource type, then by the path suffix, by other path patterns which
+ * can be compiled into one automaton (globs and exact paths), and by
+ * the exact content type. Hence, a search touches just the candidate
+ * resolvers instead of all registered ones. Resolvers with masks which
+ * cannot be indexed are kept in a list and they are checked for every
+ * resource.
+ *
+ * Matching resolvers are reported in the order of their registration,
+ * so the result is the same as the result of the simple layer.
+ */
+public class ResourceResolverLayerIndexed implements ResourceResolverLayer {
+  private static class Record {
+    final int order;
+    final ResourceMask mask;
+    final String group;
+    final ResourceResolver resolver;
+    
+    public Record(
+        int order_,
+        ResourceMask mask_,
+        String group_,
+        ResourceResolver resolver_) {
+      order = order_;
+      mask = mask_;
+      group = group_;
+      resolver = resolver_;
+    }
+  }
+  
+  /**
+   * Node of the trie of reversed path suffixes
+   */
+  private static class SuffixNode {
+    Map<Character, SuffixNode> children;
+    List<Record> records;
+  }
+  
+  /**
+   * Index of resolvers sharing one resource type
+   */
+  private static class TypeIndex {
+    final SuffixNode suffixes = new SuffixNode();
+    final PatternSet paths = new PatternSet();
+    final List<Record> path_records = new ArrayList<>();
+    final Map<String, List<Record>> contents = new HashMap<>();
+    final List<Record> others = new ArrayList<>();
+    
+    public void addRecord(Record record_) {
+      var path_ = record_.mask.getPathPattern();
+      var content_ = record_.mask.getContentPattern();
+      if(path_ instanceof PatternSuffix suffix_) {
+        /* -- the suffix is stored reversed */
+        var node_ = suffixes;
+        var key_ = suffix_.getSuffix();
+        for(int i_ = key_.length() - 1; i_ >= 0; --i_) {
+          if(node_.children == null)
+            node_.children = new HashMap<>();
+          node_ = node_.children.computeIfAbsent(
+              key_.charAt(i_), c_ -> new SuffixNode());
+        }
+        if(node_.records == null)
+          node_.records = new ArrayList<>();
+        node_.records.add(record_);
+      }
+      else if(PatternSet.canMerge(path_)) {
+        paths.addPattern(path_);
+        path_records.add(record_);
+      }
+      else if(content_ instanceof PatternExact exact_) {
+        contents.computeIfAbsent(exact_.getKey(), k_ -> new ArrayList<>())
+            .add(record_);
+      }
+      else {
+        others.add(record_);
+      }
+    }
+    
+    public void collectCandidates(
+        List<Record> candidates_,
+        String path_,
+        String content_type_) {
+      /* -- walk the path from its end */
+      var node_ = suffixes;
+      int i_ = path_.length();
+      while(node_ != null) {
+        if(node_.records != null)
+          candidates_.addAll(node_.records);
+        if(node_.children == null || i_ == 0)
+          break;
+        node_ = node_.children.get(path_.charAt(--i_));
+      }
+      
+      if(paths.size() > 0)
+        paths.forEachMatch(
+            path_, index_ -> candidates_.add(path_records.get(index_)));
+      
+      if(content_type_ != null) {
+        var records_ = contents.get(content_type_);
+        if(records_ != null)
+          candidates_.addAll(records_);
+      }
+      
+      candidates_.addAll(others);
+    }
+  }
+  
+  private final Map<String, TypeIndex> types = new HashMap<>();
+  private final TypeIndex any_type = new TypeIndex();
+  private int records_count = 0;
+  
+  private void doAddResourceResolver(
+      ResourceMask mask_,
+      String group_,
+      ResourceResolver resolver_) {
+    var record_ = new Record(records_count++, mask_, group_, resolver_);
+    if(mask_.getTypePattern() instanceof PatternExact exact_) {
+      types.computeIfAbsent(exact_.getKey(), k_ -> new TypeIndex())
+          .addRecord(record_);
+    }
+    else {
+      any_type.addRecord(record_);
+    }
+  }
+  
+  @Override
+  public void addResourceResolver(
+      ResourceMask mask_,
+      ResourceResolver resolver_) {
+    doAddResourceResolver(mask_, null, resolver_);
+  }
+  
+  @Override
+  public void addResourceResolver(
+      ResourceMask mask_,
+      String group_,
+      ResourceResolver resolver_) {
+    doAddResourceResolver(mask_, group_, resolver_);
+  }
+  
+  private void doSearchResolvers(
+      ResourceResolverGroups resolvers_,
+      ResourceID resource_,
+      String content_type_) {
+    /* -- collect the candidates */
+    var path_ = resource_.getPath().asString();
+    var candidates_ = new ArrayList<Record>();
+    var type_index_ = types.get(resource_.getType());
+    if(type_index_ != null)
+      type_index_.collectCandidates(candidates_, path_, content_type_);
+    any_type.collectCandidates(candidates_, path_, content_type_);
+    if(candidates_.isEmpty())
+      return;
+    
+    /* -- keep the order of registration as the groups depend on it */
+    candidates_.sort(Comparator.comparingInt(record_ -> record_.order));
+    for(var record_ : candidates_) {
+      if(record_.mask.matchResource(resource_, content_type_))
+        resolvers_.appendResolver(record_.group, record_.resolver);
+    }
+  }
+  
+  @Override
+  public void searchResolvers(
+      ResourceResolverGroups resolvers_,
+      ResourceID resource_) {
+    doSearchResolvers(resolvers_, resource_, null);
+  }
+  
+  @Override
+  public void searchResolvers(
+      ResourceResolverGroups resolvers_,
+      ResourceID resource_,
+      String content_type_) {
+    doSearchResolvers(resolvers_, resource_, content_type_);
+  }
+}
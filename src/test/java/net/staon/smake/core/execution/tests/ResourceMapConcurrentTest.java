@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution.tests;
+
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.exception.SMakeException;
+import net.staon.smake.core.execution.*;
+import net.staon.smake.core.model.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceMapConcurrentTest {
+  @Test
+  public void atomicInsertions() throws SMakeException {
+    var map_ = new ResourceMapConcurrent();
+    var first_ = new ResourcePhysical("smake::source", new Path("main.cpp"), "smake::c++");
+    var second_ = new ResourcePhysical("smake::source", new Path("main.cpp"), "smake::c++");
+    assertSame(first_, map_.addSharedResource(first_));
+    assertSame(first_, map_.addSharedResource(second_));
+    assertFalse(map_.addUniqueResource(second_));
+    assertTrue(map_.containsResource(second_));
+    assertSame(first_, map_.getResource(second_.getID()));
+    assertEquals(1, map_.getResourceCount());
+  }
+
+  @Test
+  public void parallelInsertions() throws Exception {
+    final int THREADS = 4;
+    final int TEST_SIZE = 1000;
+
+    var map_ = new ResourceMapConcurrent();
+    var shared_ = new ResourcePhysical("smake::source", new Path("common.h"), "smake::c++");
+    var unique_wins_ = new AtomicInteger(0);
+    var shared_results_ = new ArrayList<AtomicReference<Resource>>();
+    var failure_ = new AtomicReference<Throwable>();
+    var threads_ = new ArrayList<Thread>();
+    for(int t_ = 0; t_ < THREADS; ++t_) {
+      final int seed_ = t_;
+      var shared_result_ = new AtomicReference<Resource>();
+      shared_results_.add(shared_result_);
+      var thread_ = new Thread(() -> {
+        try {
+          var my_shared_ = new ResourcePhysical(
+              map_.createResourceID("smake::source", new Path("common.h")),
+              "smake::c++");
+          shared_result_.set(
+              map_.addSharedResource(seed_ == 0 ? shared_ : my_shared_));
+          for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+            /* -- the targets are registered by all threads, just one wins */
+            var target_ = new ResourcePhysical(
+                map_.createResourceID("smake::target", new Path("obj" + i_ + ".o")),
+                "smake::object");
+            if(map_.addUniqueResource(target_))
+              unique_wins_.incrementAndGet();
+            var source_ = new ResourcePhysical(
+                map_.createResourceID("smake::source", new Path("src" + i_ + ".cpp")),
+                "smake::c++");
+            map_.addSharedResource(source_);
+            map_.addDependency(
+                target_.getID(),
+                source_.getID(),
+                seed_ == 0 ? DependencyType.DATA : DependencyType.ORDER_ONLY);
+            map_.addDependency(
+                target_.getID(), shared_.getID(), DependencyType.ORDER_ONLY);
+          }
+        }
+        catch(Throwable exc_) {
+          failure_.compareAndSet(null, exc_);
+        }
+      });
+      threads_.add(thread_);
+      thread_.start();
+    }
+    for(var thread_ : threads_)
+      thread_.join();
+    assertNull(failure_.get());
+
+    /* -- all threads see the same shared resource */
+    var stored_shared_ = map_.getResource(shared_.getID());
+    for(var result_ : shared_results_)
+      assertSame(stored_shared_, result_.get());
+    assertEquals(TEST_SIZE, unique_wins_.get());
+    assertEquals(2 * TEST_SIZE + 1, map_.getResourceCount());
+
+    var resource_map_ = map_.createResourceMap();
+    assertEquals(2 * TEST_SIZE + 1, resource_map_.getResourceCount());
+    var dependencies_ = new AtomicInteger(0);
+    resource_map_.forEachDependency((from_, to_) -> {
+      dependencies_.incrementAndGet();
+      var expected_ = to_ == stored_shared_
+          ? DependencyType.ORDER_ONLY
+          : DependencyType.DATA;   /* -- the data type wins */
+      assertEquals(expected_, resource_map_.getDependencyType(from_, to_));
+    });
+    assertEquals(2 * TEST_SIZE, dependencies_.get());
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution.tests;
+
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.exception.SMakeException;
+import net.staon.smake.core.execution.*;
+import net.staon.smake.core.model.Path;
+import net.staon.smake.core.testutils.TestRuntime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceMapSnapshotTest {
+  @TempDir
+  java.nio.file.Path temp_dir;
+
+  private static ResourceMap createMap() throws SMakeException {
+    var map_ = new ResourceMap();
+    var source_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("src/main.cpp")),
+        "smake::c++");
+    var header_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("src/main.h")),
+        "smake::c++-header");
+    var object_ = new ResourcePhysical(
+        map_.createResourceID("smake::target", new Path("src/main.cpp")),
+        "smake::object");
+    var exported_ = new ResourcePhysical(
+        map_.createResourceID("smake::exported", new Path("include/main.h")),
+        null);
+    map_.addResource(source_);
+    map_.addResource(header_);
+    map_.addResource(object_);
+    map_.addResource(exported_);
+    map_.addDependency(object_, source_);
+    map_.addDependency(object_, header_);
+    map_.addDependency(exported_, header_);
+    /* -- exported headers must exist before the compilation */
+    map_.addDependency(object_, exported_, DependencyType.ORDER_ONLY);
+    return map_;
+  }
+
+  private static HashSet<List<String>> collectDependencies(ResourceMap map_) {
+    var result_ = new HashSet<List<String>>();
+    map_.forEachDependency((from_, to_) -> {
+      result_.add(List.of(
+          from_.getID().toString(),
+          to_.getID().toString(),
+          map_.getDependencyType(from_, to_).toString()));
+    });
+    return result_;
+  }
+
+  @Test
+  public void writeAndRead() throws SMakeException, IOException {
+    var map_ = createMap();
+    var file_ = temp_dir.resolve("snapshot.bin");
+    var fingerprint_ = ResourceMapSnapshot.computeFingerprint("SMakefile", "config");
+    ResourceMapSnapshot.write(map_, fingerprint_, file_);
+
+    var loaded_ = ResourceMapSnapshot.read(file_, fingerprint_, new ResourceIDTable());
+    assertNotNull(loaded_);
+    assertEquals(map_.getResourceCount(), loaded_.getResourceCount());
+    map_.forEachResource((resource_) -> {
+      var other_ = loaded_.getResource(resource_.getID());
+      assertNotNull(other_);
+      assertEquals(
+          ((ResourceFile) resource_).getContentType(),
+          ((ResourceFile) other_).getContentType());
+    });
+    assertEquals(collectDependencies(map_), collectDependencies(loaded_));
+
+    /* -- the loaded map is usable */
+    var order_ = loaded_.createTopologicalOrder();
+    int count_ = 0;
+    while(!order_.isEmpty()) {
+      var leaf_ = order_.cutLeaf();
+      assertNotNull(leaf_);
+      leaf_.closeLeaf();
+      ++count_;
+    }
+    assertEquals(4, count_);
+  }
+
+  @Test
+  public void invalidSnapshots() throws SMakeException, IOException {
+    var file_ = temp_dir.resolve("snapshot.bin");
+    var fingerprint_ = ResourceMapSnapshot.computeFingerprint("SMakefile", "config");
+    assertNull(ResourceMapSnapshot.read(file_, fingerprint_, new ResourceIDTable()));
+
+    /* -- changed inputs */
+    ResourceMapSnapshot.write(createMap(), fingerprint_, file_);
+    assertNull(ResourceMapSnapshot.read(
+        file_,
+        ResourceMapSnapshot.computeFingerprint("SMakefil", "econfig"),
+        new ResourceIDTable()));
+
+    /* -- truncated file */
+    var content_ = Files.readAllBytes(file_);
+    Files.write(file_, Arrays.copyOf(content_, content_.length - 3));
+    assertNull(ResourceMapSnapshot.read(file_, fingerprint_, new ResourceIDTable()));
+
+    /* -- garbage */
+    Files.write(file_, new byte[] {1, 2, 3});
+    assertNull(ResourceMapSnapshot.read(file_, fingerprint_, new ResourceIDTable()));
+  }
+
+  @Test
+  public void corruptedEdges() throws SMakeException, IOException {
+    var file_ = temp_dir.resolve("snapshot.bin");
+    var fingerprint_ = ResourceMapSnapshot.computeFingerprint("SMakefile", "config");
+    ResourceMapSnapshot.write(createMap(), fingerprint_, file_);
+    var content_ = Files.readAllBytes(file_);
+
+    /* -- the edge records are at the end of the file, the last one is
+     *    rewritten by the edge preceding it */
+    var last_ = content_.length - 12;
+    var previous_ = ByteBuffer.wrap(content_, last_ - 12, 12);
+    int from_ = previous_.getInt();
+    int to_ = previous_.getInt();
+    List<int[]> corrupted_ = List.of(
+        new int[] {to_, from_, 0},     /* -- a cycle */
+        new int[] {from_, from_, 0},   /* -- a loop */
+        new int[] {from_, 100, 0},     /* -- out of range */
+        new int[] {from_, to_, 100});  /* -- unknown dependency type */
+    for(var edge_ : corrupted_) {
+      var buffer_ = ByteBuffer.wrap(content_, last_, 12);
+      buffer_.putInt(edge_[0]).putInt(edge_[1]).putInt(edge_[2]);
+      Files.write(file_, content_);
+      assertNull(ResourceMapSnapshot.read(file_, fingerprint_, new ResourceIDTable()));
+    }
+  }
+
+  @Test
+  public void assemblerSnapshot() throws Exception {
+    var smakefile_ = """
+        project("Snapshot") {
+        }
+        """;
+    var file_ = temp_dir.resolve("project.snapshot");
+    try(var runtime_ = new TestRuntime()) {
+      var project_ = runtime_.project_assembler.assemblyProject(
+          smakefile_, "SMakefile", "test-config", file_);
+      assertNotNull(project_.getResourceMap());
+      assertTrue(Files.isRegularFile(file_));
+      var modified_ = Files.getLastModifiedTime(file_);
+
+      /* -- the second run loads the snapshot and doesn't rewrite it */
+      project_ = runtime_.project_assembler.assemblyProject(
+          smakefile_, "SMakefile", "test-config", file_);
+      assertNotNull(project_.getResourceMap());
+      assertEquals(modified_, Files.getLastModifiedTime(file_));
+    }
+  }
+
+  @Test
+  public void assemblerSnapshotErrors() throws Exception {
+    var smakefile_ = """
+        project("Snapshot") {
+        }
+        """;
+    /* -- the snapshot cannot replace a non-empty directory */
+    var file_ = temp_dir.resolve("project.snapshot");
+    Files.createDirectory(file_);
+    Files.write(file_.resolve("content"), new byte[] {1});
+    try(var runtime_ = new TestRuntime()) {
+      var errors_ = new ArrayList<IOException>();
+      var project_ = runtime_.project_assembler.assemblyProject(
+          smakefile_, "SMakefile", "test-config", file_, errors_::add);
+      assertNotNull(project_.getResourceMap());
+      assertEquals(1, errors_.size());
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.execution.tests;
+
+import net.staon.smake.core.dependencies.DependencyType;
+import net.staon.smake.core.dependencies.ID;
+import net.staon.smake.core.dependencies.SymbolTable;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.SMakeException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+import net.staon.smake.core.execution.*;
+import net.staon.smake.core.model.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceMapTest {
+  @Test
+  public void symbolTable() {
+    var table_ = new SymbolTable();
+    var id1_ = table_.intern("first");
+    var id2_ = table_.intern("second");
+    assertSame(id1_, table_.intern("first"));
+    assertSame(id1_, table_.intern(new ID("first")));
+    assertSame(id2_, table_.intern(id2_));
+    assertTrue(id1_.isInterned());
+    assertNotEquals(id1_.getHandle(), id2_.getHandle());
+    assertEquals(2, table_.size());
+
+    /* -- interned and non-interned IDs are still equal */
+    assertEquals(new ID("first"), id1_);
+    assertEquals(new ID("first").hashCode(), id1_.hashCode());
+    assertFalse(new ID("first").isInterned());
+  }
+
+  @Test
+  public void resourceIDTable() throws SMakeException {
+    var table_ = new ResourceIDTable();
+    var path_ = new Path("src/main.cpp");
+    var id1_ = table_.intern("smake::source", path_);
+    var id2_ = table_.intern(new ResourceID("smake::source", new Path("src/main.cpp")));
+    assertSame(id1_, id2_);
+    assertSame(id1_.asGraphID(), id2_.asGraphID());
+    assertTrue(id1_.asGraphID().isInterned());
+    assertEquals(new ResourceID("smake::source", path_).asGraphID(), id1_.asGraphID());
+    assertNotSame(id1_, table_.intern("smake::target", path_));
+  }
+
+  @Test
+  public void resourceDependencies() throws SMakeException {
+    var map_ = new ResourceMap();
+    var source_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("main.cpp")),
+        "smake::c++");
+    var target_ = new ResourcePhysical(
+        map_.createResourceID("smake::target", new Path("main.o")),
+        "smake::object");
+    map_.addResource(source_);
+    map_.addResource(target_);
+    map_.addDependency(target_, source_);
+
+    assertSame(source_, map_.getResource(
+        new ResourceID("smake::source", new Path("main.cpp"))));
+    assertTrue(map_.containsResource(target_));
+
+    var order_ = map_.createTopologicalOrder();
+    var leaf_ = order_.cutLeaf();
+    assertSame(source_, leaf_.getData());
+    assertNull(order_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = order_.cutLeaf();
+    assertSame(target_, leaf_.getData());
+    leaf_.closeLeaf();
+    assertTrue(order_.isEmpty());
+  }
+
+  @Test
+  public void orderOnlyDependencies() throws SMakeException {
+    var map_ = new ResourceMap();
+    var directory_ = new ResourcePhysical(
+        map_.createResourceID("smake::directory", new Path("gen")), null);
+    var source_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("gen/parser.cpp")),
+        "smake::c++");
+    var target_ = new ResourcePhysical(
+        map_.createResourceID("smake::target", new Path("gen/parser.o")),
+        "smake::object");
+    map_.addResource(directory_);
+    map_.addResource(source_);
+    map_.addResource(target_);
+    map_.addDependency(source_, directory_, DependencyType.ORDER_ONLY);
+    map_.addDependency(target_, source_);
+    assertEquals(DependencyType.ORDER_ONLY, map_.getDependencyType(source_, directory_));
+    assertEquals(DependencyType.DATA, map_.getDependencyType(target_, source_));
+
+    /* -- touching of the directory doesn't invalidate anything */
+    assertEquals(Set.of(directory_), map_.computeInvalidated(List.of(directory_)));
+    assertEquals(Set.of(source_, target_), map_.computeInvalidated(List.of(source_)));
+
+    /* -- but the directory is still created first */
+    var order_ = map_.createTopologicalOrder();
+    var leaf_ = order_.cutLeaf();
+    assertSame(directory_, leaf_.getData());
+    assertNull(order_.cutLeaf());
+  }
+
+  @Test
+  public void rejectCycle() throws SMakeException {
+    var map_ = new ResourceMap();
+    var source_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("main.cpp")),
+        "smake::c++");
+    var target_ = new ResourcePhysical(
+        map_.createResourceID("smake::target", new Path("main.o")),
+        "smake::object");
+    map_.addResource(source_);
+    map_.addResource(target_);
+    map_.addDependency(target_, source_);
+
+    var ex_ = assertThrowsExactly(
+        UncheckedDependencyCycleException.class,
+        () -> map_.addDependency(source_, target_));
+    assertEquals(3, ex_.getCycle().size());
+    map_.forEachDependency((from_, to_) -> {
+      assertSame(target_, from_);
+      assertSame(source_, to_);
+    });
+  }
+
+  @Test
+  public void dynamicDependencies() throws SMakeException {
+    var map_ = new ResourceMap();
+    var header_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("main.h")),
+        "smake::c++");
+    var source_ = new ResourcePhysical(
+        map_.createResourceID("smake::source", new Path("main.cpp")),
+        "smake::c++");
+    var target_ = new ResourcePhysical(
+        map_.createResourceID("smake::target", new Path("main.o")),
+        "smake::object");
+    map_.addResource(header_);
+    map_.addResource(source_);
+    map_.addResource(target_);
+    map_.addDependency(target_, source_);
+    var header_id_ = map_.createResourceID("smake::source", new Path("main.h"));
+    var target_id_ = map_.createResourceID("smake::target", new Path("main.o"));
+
+    /* -- the private order keeps its dynamic dependencies */
+    var private_ = map_.createPrivateTopologicalOrder();
+    assertTrue(private_.addDependency(target_id_.asGraphID(), header_id_.asGraphID()));
+    assertEquals(Set.of(header_), map_.computeInvalidated(List.of(header_)));
+
+    /* -- the shared order adds them into the map. The private order
+     *    is finished, so the map may be modified. */
+    var shared_ = map_.createTopologicalOrder();
+    assertTrue(shared_.addDependency(target_id_.asGraphID(), header_id_.asGraphID()));
+    assertEquals(Set.of(header_, target_), map_.computeInvalidated(List.of(header_)));
+    assertThrowsExactly(
+        DependencyCycleException.class,
+        () -> shared_.addDependency(header_id_.asGraphID(), target_id_.asGraphID()));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DependencyTypeTest {
+  private final ID dir_ = new ID("dir");
+  private final ID source_ = new ID("source");
+  private final ID object_ = new ID("object");
+  private final ID library_ = new ID("library");
+
+  /* -- library -> object -> source -> dir (order-only),
+   *    object -> dir (order-only) */
+  private Graph<String> createGraph() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    graph_.addNode(dir_, "dir");
+    graph_.addNode(source_, "source");
+    graph_.addNode(object_, "object");
+    graph_.addNode(library_, "library");
+    assertTrue(graph_.addDependency(source_, dir_, DependencyType.ORDER_ONLY));
+    assertTrue(graph_.addDependency(object_, source_));
+    assertTrue(graph_.addDependency(object_, dir_, DependencyType.ORDER_ONLY));
+    assertTrue(graph_.addDependency(library_, object_, DependencyType.DATA));
+    return graph_;
+  }
+
+  @Test
+  public void typesAndUpgrade() throws DependencyCycleException {
+    var graph_ = createGraph();
+    assertEquals(DependencyType.ORDER_ONLY, graph_.getDependencyType(source_, dir_));
+    assertEquals(DependencyType.DATA, graph_.getDependencyType(object_, source_));
+
+    /* -- a data dependency is never downgraded, an order-only one
+     *    is upgraded */
+    assertFalse(graph_.addDependency(object_, source_, DependencyType.ORDER_ONLY));
+    assertEquals(DependencyType.DATA, graph_.getDependencyType(object_, source_));
+    assertFalse(graph_.addDependency(object_, dir_));
+    assertEquals(DependencyType.DATA, graph_.getDependencyType(object_, dir_));
+    assertEquals(2, graph_.getNode(object_).getOutDegree());
+
+    /* -- the types survive freezing */
+    var compact_ = GraphCompact.freeze(graph_);
+    assertEquals(DependencyType.ORDER_ONLY, compact_.getDependencyType(source_, dir_));
+    assertEquals(DependencyType.DATA, compact_.getDependencyType(object_, dir_));
+    assertEquals(DependencyType.DATA, compact_.getDependencyType(library_, object_));
+  }
+
+  @Test
+  public void overlayTypes() throws DependencyCycleException {
+    var graph_ = createGraph();
+    var overlay_ = new GraphOverlay<>(graph_);
+    assertFalse(overlay_.addDependency(source_, dir_));
+    assertEquals(DependencyType.DATA, overlay_.getDependencyType(source_, dir_));
+    assertEquals(DependencyType.ORDER_ONLY, graph_.getDependencyType(source_, dir_));
+    assertTrue(overlay_.addDependency(library_, dir_, DependencyType.ORDER_ONLY));
+    assertEquals(DependencyType.ORDER_ONLY, overlay_.getDependencyType(library_, dir_));
+  }
+
+  @Test
+  public void invalidation() throws DependencyCycleException {
+    var graph_ = createGraph();
+
+    /* -- touching of the directory invalidates nothing else */
+    assertEquals(Set.of(dir_), Invalidation.computeInvalidated(graph_, List.of(dir_)));
+    assertEquals(
+        Set.of(source_, object_, library_),
+        Invalidation.computeInvalidated(graph_, List.of(source_)));
+
+    /* -- the order-only dependencies still order the nodes */
+    var order_ = new TopologicalOrder<>(graph_);
+    var leaf_ = order_.cutLeaf();
+    assertEquals("dir", leaf_.getData());
+    assertNull(order_.cutLeaf());
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphAcyclicTest {
+  private static ID id(int i_) {
+    return new ID(Integer.toString(i_));
+  }
+
+  private static void checkPath(Graph<?> graph_, List<ID> path_) {
+    for(int i_ = 0; i_ < path_.size() - 1; ++i_) {
+      var to_ = path_.get(i_ + 1);
+      var found_ = new boolean[] {false};
+      graph_.forEachSuccessor(path_.get(i_), (id_, node_) -> {
+        if(id_.equals(to_))
+          found_[0] = true;
+      });
+      assertTrue(found_[0]);
+    }
+  }
+
+  private static void checkCycle(Graph<?> graph_, List<ID> cycle_) {
+    assertTrue(cycle_.size() >= 3);
+    assertEquals(cycle_.get(0), cycle_.get(cycle_.size() - 1));
+    checkPath(graph_, cycle_);
+  }
+
+  @Test
+  public void rejectCycle() throws DependencyCycleException {
+    var graph_ = new GraphAcyclic<>(new GraphFull<String>());
+    for(int i_ = 1; i_ <= 4; ++i_)
+      graph_.addNode(id(i_), "Node " + i_);
+    assertTrue(graph_.addDependency(id(1), id(2)));
+    assertTrue(graph_.addDependency(id(2), id(3)));
+    assertTrue(graph_.addDependency(id(3), id(4)));
+    assertFalse(graph_.addDependency(id(1), id(2)));
+
+    var ex_ = assertThrowsExactly(
+        UncheckedDependencyCycleException.class,
+        () -> graph_.addDependency(id(4), id(1)));
+    assertEquals(
+        List.of(id(4), id(1), id(2), id(3), id(4)), ex_.getCycle());
+    assertEquals(ex_.getCycle(), ex_.getCause().getCycle());
+
+    /* -- the graph has not been modified */
+    graph_.forEachSuccessor(id(4), (id_, node_) -> fail());
+    assertTrue(graph_.addDependency(id(1), id(4)));
+  }
+
+  @Test
+  public void checkDependency() throws DependencyCycleException {
+    var graph_ = new GraphAcyclic<>(new GraphFull<String>());
+    for(int i_ = 1; i_ <= 3; ++i_)
+      graph_.addNode(id(i_), "Node " + i_);
+    graph_.addDependency(id(1), id(2));
+    graph_.addDependency(id(2), id(3));
+
+    graph_.checkDependency(id(1), id(3));
+    var ex_ = assertThrowsExactly(
+        DependencyCycleException.class,
+        () -> graph_.checkDependency(id(3), id(1)));
+    assertEquals(List.of(id(3), id(1), id(2), id(3)), ex_.getCycle());
+    graph_.forEachSuccessor(id(3), (id_, node_) -> fail());
+
+    /* -- the order reports the rejected dependency by the checked
+     *    exception */
+    var to_ = new TopologicalOrder<>(graph_);
+    assertThrowsExactly(
+        DependencyCycleException.class,
+        () -> to_.addDependency(id(3), id(1)));
+    assertTrue(to_.addDependency(id(1), id(3)));
+  }
+
+  @Test
+  public void atomicBatch() throws DependencyCycleException {
+    List<Function<Graph<String>, LeafOrder<String>>> engines_ =
+        List.of(TopologicalOrder::new, TopologicalOrderKahn::new);
+    for(var engine_ : engines_) {
+      var graph_ = new GraphAcyclic<>(new GraphFull<String>());
+      for(int i_ = 1; i_ <= 4; ++i_)
+        graph_.addNode(id(i_), "Node " + i_);
+      graph_.addDependency(id(2), id(1));
+
+      /* -- the second dependency closes a cycle, the first one must not
+       *    be added either */
+      var order_ = engine_.apply(graph_);
+      assertThrowsExactly(
+          DependencyCycleException.class,
+          () -> order_.addDependencies(id(1), List.of(id(3), id(2))));
+      graph_.forEachSuccessor(id(1), (id_, node_) -> fail());
+
+      assertEquals(2, order_.addDependencies(id(4), List.of(id(3), id(2))));
+      var leaves_ = new ArrayList<String>();
+      while(!order_.isEmpty()) {
+        var leaf_ = order_.cutLeaf();
+        assertNotNull(leaf_);
+        leaves_.add(leaf_.getData());
+        leaf_.closeLeaf();
+      }
+      assertEquals("Node 4", leaves_.get(3));
+    }
+  }
+
+  @Test
+  public void cyclicBase() {
+    var base_ = new GraphFull<String>();
+    for(int i_ = 1; i_ <= 3; ++i_)
+      base_.addNode(id(i_), "Node " + i_);
+    base_.addDependency(id(1), id(2));
+    base_.addDependency(id(2), id(3));
+    base_.addDependency(id(3), id(2));
+
+    var ex_ = assertThrowsExactly(
+        DependencyCycleException.class, () -> new GraphAcyclic<>(base_));
+    checkCycle(base_, ex_.getCycle());
+    assertFalse(ex_.getCycle().contains(id(1)));
+  }
+
+  @Test
+  public void uncheckedBulk() throws DependencyCycleException {
+    var graph_ = new GraphAcyclic<>(new GraphFull<String>());
+    for(int i_ = 1; i_ <= 4; ++i_)
+      graph_.addNode(id(i_), "Node " + i_);
+    assertTrue(graph_.addDependencyUnchecked(id(1), id(2), DependencyType.DATA));
+    assertTrue(graph_.addDependencyUnchecked(id(2), id(3), DependencyType.DATA));
+    graph_.validate();
+
+    /* -- the order has been recomputed, the incremental checks work again */
+    assertThrowsExactly(
+        UncheckedDependencyCycleException.class,
+        () -> graph_.addDependency(id(3), id(1)));
+    assertTrue(graph_.addDependency(id(1), id(4)));
+
+    graph_.addDependencyUnchecked(id(3), id(1), DependencyType.DATA);
+    var ex_ = assertThrowsExactly(
+        DependencyCycleException.class, graph_::validate);
+    checkCycle(graph_, ex_.getCycle());
+  }
+
+  @Test
+  public void topologicalOrderCycle() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    for(int i_ = 1; i_ <= 4; ++i_)
+      graph_.addNode(id(i_), "Node " + i_);
+    graph_.addDependency(id(2), id(1));
+    graph_.addDependency(id(3), id(2));
+    graph_.addDependency(id(4), id(3));
+    graph_.addDependency(id(2), id(4));
+
+    var to_ = new TopologicalOrder<>(graph_);
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    leaf_.closeLeaf();
+    var ex_ = assertThrowsExactly(DependencyCycleException.class, to_::cutLeaf);
+    checkCycle(graph_, ex_.getCycle());
+    assertEquals(4, ex_.getCycle().size());
+    assertTrue(ex_.getMessage().contains(" -> "));
+  }
+
+  @Test
+  public void randomEdges() throws DependencyCycleException {
+    final int TEST_SIZE = 300;
+
+    var graph_ = new GraphAcyclic<>(new GraphFull<Integer>());
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_)
+      graph_.addNode(id(i_), i_);
+
+    /* -- every accepted dependency is checked by the topological order,
+     *    every rejected dependency must close a real cycle */
+    var rnd_ = new Random(4321);
+    int rejected_ = 0;
+    for(int i_ = 0; i_ < TEST_SIZE * 5; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ == i2_)
+        continue;
+      try {
+        graph_.addDependency(id(i1_), id(i2_));
+      }
+      catch(UncheckedDependencyCycleException ex_) {
+        var cycle_ = ex_.getCycle();
+        assertEquals(id(i1_), cycle_.get(0));
+        assertEquals(id(i2_), cycle_.get(1));
+        assertEquals(id(i1_), cycle_.get(cycle_.size() - 1));
+        checkPath(graph_, cycle_.subList(1, cycle_.size()));
+        ++rejected_;
+      }
+    }
+    assertTrue(rejected_ > 0);
+
+    var to_ = new TopologicalOrder<>(graph_);
+    var finished_ = new HashSet<Integer>();
+    while(!to_.isEmpty()) {
+      var leaf_ = to_.cutLeaf();
+      assertNotNull(leaf_);
+      graph_.forEachSuccessor(id(leaf_.getData()), (id_, node_) -> {
+        assertTrue(finished_.contains(node_.getData()));
+      });
+      finished_.add(leaf_.getData());
+      leaf_.closeLeaf();
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphCompactBuilderTest {
+  private static Set<ID> successors(Graph<?> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachSuccessor(id_, (succ_, node_) -> result_.add(succ_));
+    return result_;
+  }
+
+  private static Set<ID> predecessors(Graph<?> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachPredecessor(id_, (pred_, node_) -> result_.add(pred_));
+    return result_;
+  }
+
+  @Test
+  public void parallelLoad() throws InterruptedException {
+    final int TEST_SIZE = 2000;
+    final int THREADS = 4;
+
+    var builder_ = new GraphCompactBuilder<Integer>();
+    var reference_ = new GraphFull<Integer>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      assertEquals(i_, builder_.addNode(id_, i_));
+      reference_.addNode(id_, i_);
+    }
+
+    /* -- generate the edges, every edge is added twice by different
+     *    threads, sometimes with different types */
+    var edges_ = new ArrayList<long[]>();
+    var rnd_ = new Random(19);
+    for(int i_ = 0; i_ < TEST_SIZE * 20; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ != i2_) {
+        var type_ = rnd_.nextInt(4) == 0 ? 1 : 0;
+        edges_.add(new long[] {i1_, i2_, type_});
+        reference_.addDependency(ids_.get(i1_), ids_.get(i2_),
+            type_ == 1 ? DependencyType.ORDER_ONLY : DependencyType.DATA);
+      }
+    }
+
+    var threads_ = new ArrayList<Thread>();
+    for(int t_ = 0; t_ < THREADS; ++t_) {
+      final int thread_index_ = t_;
+      var thread_ = new Thread(() -> {
+        var batch_ = builder_.createBatch();
+        for(int i_ = 0; i_ < edges_.size(); ++i_) {
+          if(i_ % THREADS != thread_index_ && (i_ + 1) % THREADS != thread_index_)
+            continue;
+          var edge_ = edges_.get(i_);
+          batch_.addDependency(
+              ids_.get((int) edge_[0]), ids_.get((int) edge_[1]),
+              edge_[2] == 1 ? DependencyType.ORDER_ONLY : DependencyType.DATA);
+          if(i_ % 1000 == 0)
+            batch_.commit();
+        }
+        batch_.commit();
+      });
+      threads_.add(thread_);
+      thread_.start();
+    }
+    for(var thread_ : threads_)
+      thread_.join();
+
+    var graph_ = builder_.build();
+    for(var id_ : ids_) {
+      assertEquals(
+          reference_.getNode(id_).getOutDegree(),
+          graph_.getNode(id_).getOutDegree());
+      assertEquals(successors(reference_, id_), successors(graph_, id_));
+      assertEquals(predecessors(reference_, id_), predecessors(graph_, id_));
+      for(var succ_ : successors(reference_, id_)) {
+        assertEquals(
+            reference_.getDependencyType(id_, succ_),
+            graph_.getDependencyType(id_, succ_));
+      }
+    }
+  }
+
+  @Test
+  public void concurrentNodes() throws InterruptedException {
+    final int TEST_SIZE = 4000;
+    final int THREADS = 4;
+
+    var builder_ = new GraphCompactBuilder<Integer>();
+    var indices_ = new int[TEST_SIZE];
+    var threads_ = new ArrayList<Thread>();
+    for(int t_ = 0; t_ < THREADS; ++t_) {
+      final int thread_index_ = t_;
+      var thread_ = new Thread(() -> {
+        for(int i_ = thread_index_; i_ < TEST_SIZE; i_ += THREADS)
+          indices_[i_] = builder_.addNode(new ID(Integer.toString(i_)), i_);
+      });
+      threads_.add(thread_);
+      thread_.start();
+    }
+    for(var thread_ : threads_)
+      thread_.join();
+
+    /* -- a duplicated node is rejected and it doesn't take an index */
+    assertThrowsExactly(
+        IllegalArgumentException.class,
+        () -> builder_.addNode(new ID("0"), 0));
+
+    var graph_ = builder_.build();
+    assertEquals(TEST_SIZE, graph_.getIndexLimit());
+    var used_ = new BitSet();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      assertFalse(used_.get(indices_[i_]));
+      used_.set(indices_[i_]);
+      var id_ = new ID(Integer.toString(i_));
+      assertEquals(indices_[i_], graph_.getIndex(id_));
+      assertEquals(i_, graph_.getNode(id_).getData());
+    }
+  }
+
+  @Test
+  public void emptyGraph() {
+    var builder_ = new GraphCompactBuilder<String>();
+    var id_ = new ID("alone");
+    builder_.addNode(id_, "Alone");
+    assertTrue(builder_.containsNode(id_));
+    builder_.createBatch().commit();
+
+    var graph_ = builder_.build();
+    assertEquals(1, graph_.getIndexLimit());
+    assertEquals("Alone", graph_.getNode(id_).getData());
+    assertEquals(0, graph_.getNode(id_).getOutDegree());
+  }
+}
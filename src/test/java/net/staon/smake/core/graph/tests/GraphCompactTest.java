@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static com.google.common.truth.Truth.assertThat;
+
+public class GraphCompactTest {
+  private static Set<ID> collectSuccessors(Graph<String> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachSuccessor(id_, (succ_, node_) -> result_.add(succ_));
+    return result_;
+  }
+
+  private static Set<ID> collectPredecessors(Graph<String> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachPredecessor(id_, (pred_, node_) -> result_.add(pred_));
+    return result_;
+  }
+
+  @Test
+  public void freezeFullGraph() throws DependencyCycleException {
+    final int TEST_SIZE = 300;
+
+    var full_ = new GraphFull<String>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      full_.addNode(id_, "Node " + i_);
+    }
+    var rnd_ = new Random(42);
+    for(int i_ = 0; i_ < TEST_SIZE * 10; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        full_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+
+    var compact_ = full_.freeze();
+    assertEquals(TEST_SIZE, compact_.getIndexLimit());
+    for(var id_ : ids_) {
+      assertTrue(compact_.containsNode(id_));
+      var index_ = compact_.getIndex(id_);
+      assertTrue(compact_.containsIndex(index_));
+      assertEquals(id_, compact_.getID(index_));
+      assertEquals(full_.getNode(id_).getData(), compact_.getNode(id_).getData());
+      assertEquals(
+          full_.getNode(id_).getOutDegree(),
+          compact_.getNode(index_).getOutDegree());
+      assertEquals(collectSuccessors(full_, id_), collectSuccessors(compact_, id_));
+      assertEquals(
+          collectPredecessors(full_, id_), collectPredecessors(compact_, id_));
+
+      var succs_ = new HashSet<ID>();
+      compact_.forEachSuccessorIndex(index_, (s_) -> succs_.add(compact_.getID(s_)));
+      assertEquals(collectSuccessors(full_, id_), succs_);
+      var preds_ = new HashSet<ID>();
+      compact_.forEachPredecessorIndex(index_, (p_) -> preds_.add(compact_.getID(p_)));
+      assertEquals(collectPredecessors(full_, id_), preds_);
+    }
+    assertFalse(compact_.containsNode(new ID("missing")));
+    assertEquals(-1, compact_.getIndex(new ID("missing")));
+
+    /* -- the topological order works on the compact graph too */
+    var to_ = new TopologicalOrder<>(compact_);
+    var finished_ = new HashSet<String>();
+    while(!to_.isEmpty()) {
+      var leaf_ = to_.cutLeaf();
+      assertNotNull(leaf_);
+      finished_.add(leaf_.getData());
+      leaf_.closeLeaf();
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+
+  @Test
+  public void readOnly() {
+    var full_ = new GraphFull<String>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    full_.addNode(id1_, "Node 1");
+    full_.addNode(id2_, "Node 2");
+    full_.addDependency(id2_, id1_);
+
+    var compact_ = full_.freeze();
+    assertThat(collectSuccessors(compact_, id2_)).containsExactly(id1_);
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> compact_.addNode(new ID("3"), "Node 3"));
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> compact_.addDependency(id1_, id2_));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphFilteredBitsetTest {
+  private static Set<ID> collectNodes(Graph<Integer> graph_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachNode((id_, node_) -> result_.add(id_));
+    return result_;
+  }
+
+  private static Set<ID> collectPredecessors(Graph<Integer> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachPredecessor(id_, (pred_, node_) -> result_.add(pred_));
+    return result_;
+  }
+
+  @Test
+  public void compareWithFiltered() {
+    final int TEST_SIZE = 2000;
+    final int ROOT_SETS = 100;
+
+    var full_ = new GraphFull<Integer>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      full_.addNode(id_, i_);
+    }
+    var rnd_ = new Random(7);
+    for(int i_ = 0; i_ < TEST_SIZE * 2; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        full_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+    var compact_ = full_.freeze();
+
+    var root_sets_ = new ArrayList<List<ID>>();
+    for(int i_ = 0; i_ < ROOT_SETS; ++i_) {
+      var roots_ = new ArrayList<ID>();
+      var count_ = 1 + rnd_.nextInt(3);
+      for(int j_ = 0; j_ < count_; ++j_)
+        roots_.add(ids_.get(rnd_.nextInt(TEST_SIZE)));
+      root_sets_.add(roots_);
+    }
+
+    var many_ = GraphFilteredBitset.filterMany(compact_, root_sets_);
+    assertEquals(ROOT_SETS, many_.size());
+    for(int i_ = 0; i_ < ROOT_SETS; ++i_) {
+      var expected_ = new GraphFiltered<>(full_, root_sets_.get(i_));
+      var single_ = new GraphFilteredBitset<>(compact_, root_sets_.get(i_));
+      var shared_ = many_.get(i_);
+
+      var nodes_ = collectNodes(expected_);
+      assertEquals(nodes_, collectNodes(single_));
+      assertEquals(nodes_, collectNodes(shared_));
+      assertEquals(nodes_.size(), shared_.getNodeCount());
+      for(var id_ : ids_) {
+        var contained_ = nodes_.contains(id_);
+        assertEquals(contained_, single_.containsNode(id_));
+        assertEquals(contained_, shared_.containsNode(id_));
+        assertEquals(contained_, shared_.getIndex(id_) >= 0);
+        if(contained_) {
+          assertEquals(
+              collectPredecessors(expected_, id_),
+              collectPredecessors(shared_, id_));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void emptyRootSets() {
+    var full_ = new GraphFull<Integer>();
+    full_.addNode(new ID("1"), 1);
+    var compact_ = full_.freeze();
+
+    assertTrue(GraphFilteredBitset.filterMany(compact_, List.of()).isEmpty());
+    var graph_ = new GraphFilteredBitset<>(compact_, List.of());
+    assertEquals(0, graph_.getNodeCount());
+    assertFalse(graph_.containsNode(new ID("1")));
+    assertFalse(graph_.containsIndex(0));
+  }
+}
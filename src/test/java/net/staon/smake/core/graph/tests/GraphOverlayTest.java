@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphOverlayTest {
+  private static Set<ID> successors(Graph<?> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachSuccessor(id_, (succ_, node_) -> result_.add(succ_));
+    return result_;
+  }
+
+  private static Set<ID> predecessors(Graph<?> graph_, ID id_) {
+    var result_ = new HashSet<ID>();
+    graph_.forEachPredecessor(id_, (pred_, node_) -> result_.add(pred_));
+    return result_;
+  }
+
+  @Test
+  public void privateAdditions() throws DependencyCycleException {
+    Graph<String> base_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    var id3_ = new ID("3");
+    var id4_ = new ID("4");
+    base_.addNode(id1_, "Node 1");
+    base_.addNode(id2_, "Node 2");
+    base_.addNode(id3_, "Node 3");
+    base_.addDependency(id2_, id1_);
+    base_.addDependency(id3_, id2_);
+
+    var overlay1_ = new GraphOverlay<>(base_);
+    var overlay2_ = new GraphOverlay<>(base_);
+
+    /* -- existing dependency is not doubled */
+    assertFalse(overlay1_.addDependency(id2_, id1_));
+    assertTrue(overlay1_.addDependency(id3_, id1_));
+    assertFalse(overlay1_.addDependency(id3_, id1_));
+    overlay2_.addNode(id4_, "Node 4");
+    assertTrue(overlay2_.addDependency(id4_, id3_));
+    assertTrue(overlay2_.addDependency(id1_, id4_));
+
+    /* -- the base graph is not touched */
+    assertFalse(base_.containsNode(id4_));
+    assertEquals(Set.of(id2_), successors(base_, id3_));
+    assertEquals(1, base_.getNode(id3_).getOutDegree());
+    assertEquals(0, base_.getNode(id1_).getOutDegree());
+
+    /* -- each overlay sees just its own additions */
+    assertEquals(Set.of(id1_, id2_), successors(overlay1_, id3_));
+    assertEquals(2, overlay1_.getNode(id3_).getOutDegree());
+    assertEquals(Set.of(id2_, id3_), predecessors(overlay1_, id1_));
+    assertFalse(overlay1_.containsNode(id4_));
+
+    assertTrue(overlay2_.containsNode(id4_));
+    assertEquals(Set.of(id4_), successors(overlay2_, id1_));
+    assertEquals(1, overlay2_.getNode(id1_).getOutDegree());
+    assertEquals(Set.of(id4_), predecessors(overlay2_, id3_));
+    assertEquals(Set.of(id1_), predecessors(overlay2_, id4_));
+    var count_ = new int[] {0};
+    overlay2_.forEachNode((id_, node_) -> {
+      ++count_[0];
+      if(id_.equals(id1_))
+        assertEquals(1, node_.getOutDegree());
+    });
+    assertEquals(4, count_[0]);
+  }
+
+  @Test
+  public void containsDependency() {
+    var base_ = new GraphFull<String>();
+    for(int i_ = 0; i_ < 4; ++i_)
+      base_.addNode(new ID(Integer.toString(i_)), "Node " + i_);
+    base_.addDependency(new ID("1"), new ID("0"));
+    base_.addDependency(new ID("2"), new ID("1"), DependencyType.ORDER_ONLY);
+
+    var compact_ = GraphCompact.freeze(base_);
+    var overlay_ = new GraphOverlay<>(base_);
+    overlay_.addNode(new ID("4"), "Node 4");
+    assertTrue(overlay_.addDependency(new ID("4"), new ID("2")));
+    assertTrue(overlay_.addDependency(new ID("3"), new ID("4")));
+    assertFalse(overlay_.addDependency(new ID("1"), new ID("0")));
+    assertFalse(overlay_.addDependency(new ID("2"), new ID("1")));
+    assertEquals(
+        DependencyType.DATA,
+        overlay_.getDependencyType(new ID("2"), new ID("1")));
+
+    for(Graph<String> graph_ : List.of(base_, compact_, overlay_)) {
+      for(int i_ = 0; i_ < 4; ++i_) {
+        var from_ = new ID(Integer.toString(i_));
+        for(int j_ = 0; j_ < 4; ++j_) {
+          var to_ = new ID(Integer.toString(j_));
+          assertEquals(
+              successors(graph_, from_).contains(to_),
+              graph_.containsDependency(from_, to_));
+        }
+      }
+    }
+    assertTrue(overlay_.containsDependency(new ID("4"), new ID("2")));
+    assertTrue(overlay_.containsDependency(new ID("3"), new ID("4")));
+    assertFalse(base_.containsDependency(new ID("3"), new ID("4")));
+    assertEquals(
+        DependencyType.ORDER_ONLY,
+        base_.getDependencyType(new ID("2"), new ID("1")));
+  }
+
+  @Test
+  public void concurrentOrders()
+      throws InterruptedException, DependencyCycleException {
+    final int TEST_SIZE = 1000;
+    final int THREADS = 4;
+
+    Graph<Integer> base_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      base_.addNode(id_, i_);
+    }
+    var rnd_ = new Random(17);
+    for(int i_ = 0; i_ < TEST_SIZE * 5; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        base_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+
+    var base_edges_ = countEdges(base_);
+
+    /* -- each thread processes its own order and adds its own
+     *    dependencies and nodes */
+    var failure_ = new AtomicReference<Throwable>();
+    var threads_ = new ArrayList<Thread>();
+    for(int t_ = 0; t_ < THREADS; ++t_) {
+      final int seed_ = t_;
+      var thread_ = new Thread(() -> {
+        try {
+          var overlay_ = new GraphOverlay<>(base_);
+          var order_ = new TopologicalOrder<>(overlay_);
+          var local_rnd_ = new Random(seed_);
+          var local_ids_ = new ArrayList<>(ids_);
+          var cut_ = new HashSet<Integer>();
+          var finished_ = new HashSet<Integer>();
+          int extra_ = 0;
+          while(!order_.isEmpty()) {
+            var leaf_ = order_.cutLeaf();
+            var data_ = leaf_.getData();
+            cut_.add(data_);
+            overlay_.forEachSuccessor(local_ids_.get(data_), (id_, node_) -> {
+              if(!finished_.contains(node_.getData()))
+                throw new AssertionError("unfinished dependency");
+            });
+
+            var i1_ = local_rnd_.nextInt(TEST_SIZE);
+            var i2_ = local_rnd_.nextInt(TEST_SIZE);
+            if(i1_ < i2_ && !cut_.contains(i2_)) {
+              order_.addDependency(ids_.get(i2_), ids_.get(i1_));
+              if(extra_ < 10) {
+                var id_ = new ID("extra" + seed_ + "_" + extra_);
+                order_.addNode(id_, local_ids_.size());
+                local_ids_.add(id_);
+                order_.addDependency(ids_.get(i2_), id_);
+                ++extra_;
+              }
+            }
+
+            leaf_.closeLeaf();
+            finished_.add(data_);
+          }
+          if(finished_.size() != TEST_SIZE + extra_)
+            throw new AssertionError("missing nodes");
+        }
+        catch(Throwable exc_) {
+          failure_.compareAndSet(null, exc_);
+        }
+      });
+      threads_.add(thread_);
+      thread_.start();
+    }
+    for(var thread_ : threads_)
+      thread_.join();
+
+    assertNull(failure_.get());
+    assertEquals(base_edges_, countEdges(base_));
+  }
+
+  private static int countEdges(Graph<?> graph_) {
+    var count_ = new int[] {0};
+    graph_.forEachNode((id_, node_) -> count_[0] += node_.getOutDegree());
+    return count_[0];
+  }
+}
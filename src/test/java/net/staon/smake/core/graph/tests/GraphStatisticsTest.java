@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphStatisticsTest {
+  private static ID id(String name_) {
+    return new ID(name_);
+  }
+
+  /**
+   * A header generated by a tool, four objects compiled from sources
+   * including the header, a library and a binary. One unrelated tool
+   * is built besides.
+   */
+  private static GraphFull<String> createGraph() {
+    var graph_ = new GraphFull<String>();
+    for(var name_ : List.of("gen", "header", "o1", "o2", "o3", "o4", "lib", "bin", "tool"))
+      graph_.addNode(id(name_), name_);
+    graph_.addDependency(id("header"), id("gen"));
+    for(var name_ : List.of("o1", "o2", "o3", "o4")) {
+      graph_.addDependency(id(name_), id("header"));
+      graph_.addDependency(id("lib"), id(name_));
+    }
+    graph_.addDependency(id("bin"), id("lib"));
+    return graph_;
+  }
+
+  @Test
+  public void uniformWeights() {
+    var stats_ = GraphStatistics.compute(createGraph());
+    assertEquals(9, stats_.getNodeCount());
+    assertEquals(10, stats_.getEdgeCount());
+    assertEquals(9, stats_.getTotalWork());
+    assertEquals(5, stats_.getCriticalPathLength());
+    var path_ = stats_.getCriticalPath();
+    assertEquals(5, path_.size());
+    assertEquals(id("gen"), path_.get(0));
+    assertEquals(id("header"), path_.get(1));
+    assertEquals(id("lib"), path_.get(3));
+    assertEquals(id("bin"), path_.get(4));
+
+    assertEquals(List.of(2, 1, 4, 1, 1), stats_.getLevelWidths());
+    assertEquals(4, stats_.getMaxLevelWidth());
+    assertEquals(Map.of(0, 2, 1, 6, 4, 1), stats_.getFanInHistogram());
+    assertEquals(Map.of(0, 2, 1, 6, 4, 1), stats_.getFanOutHistogram());
+    assertEquals(List.of(id("header")), stats_.getHighestFanIn(1));
+
+    assertEquals(9.0 / 5.0, stats_.getAverageParallelism(), 1e-9);
+    assertEquals(1.0, stats_.getSpeedupBound(1), 1e-9);
+    assertEquals(9.0 / 5.0, stats_.getSpeedupBound(4), 1e-9);
+    assertEquals(9, stats_.simulateMakespan(1));
+    assertEquals(5, stats_.simulateMakespan(4));
+    assertEquals(6, stats_.simulateMakespan(2));
+  }
+
+  @Test
+  public void weightedFilteredView() {
+    var graph_ = createGraph();
+    var filtered_ = new GraphFiltered<>(graph_, List.of(id("lib")));
+    var weights_ = NodeWeight.<String>fromMap(Map.of(id("gen"), 10L, id("o3"), 20L), 1L);
+    var stats_ = GraphStatistics.compute(filtered_, weights_);
+
+    assertEquals(7, stats_.getNodeCount());
+    assertEquals(9, stats_.getEdgeCount());
+    assertEquals(35, stats_.getTotalWork());
+    assertEquals(32, stats_.getCriticalPathLength());
+    assertEquals(
+        List.of(id("gen"), id("header"), id("o3"), id("lib")),
+        stats_.getCriticalPath());
+    assertEquals(32, stats_.simulateMakespan(4));
+    assertEquals(35.0 / 32.0, stats_.simulateSpeedup(4), 1e-9);
+  }
+}
@@ -768,4 +768,161 @@ public class GraphTest {
     assertNull(empty_result_);
     assertTrue(to_.isEmpty());
   }
+  
+  @Test
+  public void topologicalOrderCriticalPath() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    
+    /* -- the root depends on a chain of three nodes and on several
+     *    independent leaves */
+    var root_ = new ID("root");
+    graph_.addNode(root_, "Root");
+    for(int i_ = 0; i_ < 5; ++i_) {
+      var id_ = new ID("leaf" + i_);
+      graph_.addNode(id_, "Leaf " + i_);
+      graph_.addDependency(root_, id_);
+    }
+    var chain1_ = new ID("chain1");
+    var chain2_ = new ID("chain2");
+    var chain3_ = new ID("chain3");
+    graph_.addNode(chain1_, "Chain 1");
+    graph_.addNode(chain2_, "Chain 2");
+    graph_.addNode(chain3_, "Chain 3");
+    graph_.addDependency(root_, chain3_);
+    graph_.addDependency(chain3_, chain2_);
+    graph_.addDependency(chain2_, chain1_);
+    
+    var paths_ = CriticalPath.computeRemainingPaths(
+        graph_, NodeWeight.uniform());
+    assertEquals(1, paths_.get(root_));
+    assertEquals(2, paths_.get(new ID("leaf3")));
+    assertEquals(4, paths_.get(chain1_));
+    
+    /* -- the beginning of the chain must be returned first */
+    var to_ = new TopologicalOrder<>(graph_, NodeWeight.uniform());
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Chain 1", leaf_.getData());
+    
+    /* -- a heavy leaf has priority over the chain */
+    var weights_ = new HashMap<ID, Long>();
+    weights_.put(new ID("leaf2"), 10L);
+    to_ = new TopologicalOrder<>(graph_, NodeWeight.fromMap(weights_, 1));
+    leaf_ = to_.cutLeaf();
+    assertEquals("Leaf 2", leaf_.getData());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Chain 1", leaf_.getData());
+  }
+  
+  @Test
+  public void topologicalOrderDaryHeap() throws DependencyCycleException {
+    final int TEST_SIZE = 1000;
+    
+    Graph<Integer> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, i_);
+    }
+    var rnd_ = new Random();
+    for(int i_ = 0; i_ < TEST_SIZE * 10; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        graph_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+    
+    /* -- cut the graph, add new dependencies between white nodes */
+    var to_ = new TopologicalOrder<>(
+        graph_, NodeWeight.uniform(), TopologicalOrder.HeapType.DARY);
+    var finished_ = new HashSet<Integer>();
+    var cut_ = new HashSet<Integer>();
+    while(!to_.isEmpty()) {
+      var leaf_ = to_.cutLeaf();
+      assertNotNull(leaf_);
+      var data_ = leaf_.getData();
+      cut_.add(data_);
+      graph_.forEachSuccessor(ids_.get(data_), (id_, node_) -> {
+        assertTrue(finished_.contains(node_.getData()));
+      });
+      
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_ && !cut_.contains(i2_))
+        to_.addDependency(ids_.get(i2_), ids_.get(i1_));
+      
+      leaf_.closeLeaf();
+      finished_.add(data_);
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+  
+  private static void checkRetiredOrder(
+      LeafOrder<Integer> to_, Graph<Integer> graph_, List<ID> ids_,
+      int test_size_, int clean_size_) throws DependencyCycleException {
+    var finished_ = new HashSet<Integer>();
+    while(!to_.isEmpty()) {
+      var leaf_ = to_.cutLeaf();
+      assertNotNull(leaf_);
+      var data_ = leaf_.getData();
+      assertTrue(data_ >= clean_size_);
+      graph_.forEachSuccessor(ids_.get(data_), (id_, node_) -> {
+        assertTrue(node_.getData() < clean_size_
+            || finished_.contains(node_.getData()));
+      });
+      leaf_.closeLeaf();
+      finished_.add(data_);
+    }
+    assertEquals(test_size_ - clean_size_, finished_.size());
+  }
+  
+  @Test
+  public void topologicalOrderRetireNodes() throws DependencyCycleException {
+    final int TEST_SIZE = 1000;
+    
+    Graph<Integer> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, i_);
+    }
+    var rnd_ = new Random(16);
+    for(int i_ = 0; i_ < TEST_SIZE * 10; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        graph_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+    var compact_ = GraphCompact.freeze(graph_);
+    
+    /* -- the dependencies lead to lower numbers, so the lowest nodes
+     *    form a closed clean subgraph and the highest ones a closed dirty
+     *    subgraph. Both ways of retirement are checked. */
+    for(var clean_size_ : List.of(20, 950)) {
+      var clean_ = new HashSet<>(ids_.subList(0, clean_size_));
+      var dirty_ = ids_.subList(clean_size_, TEST_SIZE);
+      for(var heap_type_ : TopologicalOrder.HeapType.values()) {
+        var to_ = new TopologicalOrder<>(graph_, NodeWeight.uniform(), heap_type_);
+        to_.retireNodes(clean_);
+        checkRetiredOrder(to_, graph_, ids_, TEST_SIZE, clean_size_);
+        
+        /* -- a new dependency on a dropped node doesn't block the source */
+        var overlay_ = new GraphOverlay<>(graph_);
+        to_ = new TopologicalOrder<>(overlay_, NodeWeight.uniform(), heap_type_);
+        to_.retireAllExcept(dirty_);
+        to_.addDependency(ids_.get(TEST_SIZE - 1), ids_.get(0));
+        checkRetiredOrder(to_, graph_, ids_, TEST_SIZE, clean_size_);
+      }
+      
+      var indexed_ = new TopologicalOrderIndexed<>(compact_, NodeWeight.uniform());
+      indexed_.retireNodes(clean_);
+      checkRetiredOrder(indexed_, graph_, ids_, TEST_SIZE, clean_size_);
+      
+      indexed_ = new TopologicalOrderIndexed<>(compact_, NodeWeight.uniform());
+      indexed_.retireAllExcept(dirty_);
+      checkRetiredOrder(indexed_, graph_, ids_, TEST_SIZE, clean_size_);
+    }
+  }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.UncheckedDependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReachabilityIndexTest {
+  /* -- graph counting traversal calls */
+  private static class CountingGraph extends GraphFull<Integer> {
+    public int traversals = 0;
+
+    @Override
+    public void forEachPredecessor(
+        ID node_id_, BiConsumer<ID, Node<Integer>> fn_) {
+      ++traversals;
+      super.forEachPredecessor(node_id_, fn_);
+    }
+
+    @Override
+    public void forEachSuccessor(
+        ID node_id_, BiConsumer<ID, Node<Integer>> fn_) {
+      ++traversals;
+      super.forEachSuccessor(node_id_, fn_);
+    }
+  }
+
+  private static ID id(int i_) {
+    return new ID(Integer.toString(i_));
+  }
+
+  private static Set<ID> reachable(Graph<Integer> graph_, ID from_, boolean succs_) {
+    var result_ = new HashSet<ID>();
+    var stack_ = new ArrayDeque<ID>();
+    stack_.push(from_);
+    while(!stack_.isEmpty()) {
+      var top_ = stack_.pop();
+      BiConsumer<ID, Graph.Node<Integer>> fn_ = (id_, node_) -> {
+        if(result_.add(id_))
+          stack_.push(id_);
+      };
+      if(succs_)
+        graph_.forEachSuccessor(top_, fn_);
+      else
+        graph_.forEachPredecessor(top_, fn_);
+    }
+    return result_;
+  }
+
+  private static void checkIndex(
+      ReachabilityIndex<Integer> index_, GraphFull<Integer> plain_, int size_) {
+    for(int i_ = 0; i_ < size_; ++i_) {
+      var deps_ = reachable(plain_, id(i_), true);
+      for(int j_ = 0; j_ < size_; ++j_)
+        assertEquals(deps_.contains(id(j_)), index_.dependsOn(id(i_), id(j_)));
+
+      var visited_ = new HashSet<ID>();
+      index_.forEachDependency(id(i_), (id_, node_) -> assertTrue(visited_.add(id_)));
+      assertEquals(deps_, visited_);
+
+      var dependents_ = new HashSet<ID>();
+      index_.forEachDependent(id(i_), (id_, node_) -> assertTrue(dependents_.add(id_)));
+      assertEquals(reachable(plain_, id(i_), false), dependents_);
+    }
+  }
+
+  @Test
+  public void randomGraph() throws DependencyCycleException {
+    final int TEST_SIZE = 200;
+
+    /* -- two copies of the same graph, the plain one is used to compute
+     *    expected answers */
+    var plain_ = new GraphFull<Integer>();
+    var indexed_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      plain_.addNode(id(i_), i_);
+      indexed_.addNode(id(i_), i_);
+    }
+    var rnd_ = new Random(99);
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_) {
+        plain_.addDependency(id(i2_), id(i1_));
+        indexed_.addDependency(id(i2_), id(i1_));
+      }
+    }
+
+    var index_ = new ReachabilityIndex<>(indexed_);
+    checkIndex(index_, plain_, TEST_SIZE);
+
+    /* -- incremental updates */
+    for(int i_ = TEST_SIZE; i_ < TEST_SIZE + 20; ++i_) {
+      plain_.addNode(id(i_), i_);
+      index_.addNode(id(i_), i_);
+    }
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE + 20);
+      var i2_ = rnd_.nextInt(TEST_SIZE + 20);
+      if(i1_ < i2_) {
+        assertEquals(
+            plain_.addDependency(id(i2_), id(i1_)),
+            index_.addDependency(id(i2_), id(i1_)));
+      }
+    }
+    checkIndex(index_, plain_, TEST_SIZE + 20);
+  }
+
+  @Test
+  public void queriesFromIndex() throws DependencyCycleException {
+    final int TEST_SIZE = 300;
+
+    var plain_ = new GraphFull<Integer>();
+    var counting_ = new CountingGraph();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      plain_.addNode(id(i_), i_);
+      counting_.addNode(id(i_), i_);
+    }
+    var rnd_ = new Random(7);
+    for(int i_ = 0; i_ < TEST_SIZE * 2; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_) {
+        plain_.addDependency(id(i2_), id(i1_));
+        counting_.addDependency(id(i2_), id(i1_));
+      }
+    }
+    var index_ = new ReachabilityIndex<>(counting_);
+    assertTrue(index_.getIntervalCount() >= 2L * TEST_SIZE);
+
+    /* -- neither the impact query nor the dependency query traverses
+     *    the base graph */
+    counting_.traversals = 0;
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var dependents_ = new HashSet<ID>();
+      index_.forEachDependent(id(i_), (id_, node_) -> dependents_.add(id_));
+      assertEquals(reachable(plain_, id(i_), false), dependents_);
+
+      var dependencies_ = new HashSet<ID>();
+      index_.forEachDependency(id(i_), (id_, node_) -> dependencies_.add(id_));
+      assertEquals(reachable(plain_, id(i_), true), dependencies_);
+    }
+    assertEquals(0, counting_.traversals);
+  }
+
+  @Test
+  public void chain() throws DependencyCycleException {
+    var graph_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < 4; ++i_)
+      graph_.addNode(id(i_), i_);
+    graph_.addDependency(id(1), id(0));
+    graph_.addDependency(id(2), id(1));
+
+    var index_ = new ReachabilityIndex<>(graph_);
+    assertTrue(index_.dependsOn(id(2), id(0)));
+    assertFalse(index_.dependsOn(id(0), id(2)));
+    assertFalse(index_.dependsOn(id(3), id(0)));
+    assertFalse(index_.dependsOn(id(2), id(2)));
+
+    index_.addDependency(id(0), id(3));
+    assertTrue(index_.dependsOn(id(2), id(3)));
+  }
+
+  @Test
+  public void rejectCycles() throws DependencyCycleException {
+    final int TEST_SIZE = 100;
+
+    var plain_ = new GraphFull<Integer>();
+    var index_ = new ReachabilityIndex<>(new GraphFull<Integer>());
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      plain_.addNode(id(i_), i_);
+      index_.addNode(id(i_), i_);
+    }
+
+    /* -- a dependency is rejected exactly if its target depends on
+     *    its source */
+    var rnd_ = new Random(1234);
+    int rejected_ = 0;
+    for(int i_ = 0; i_ < TEST_SIZE * 3; ++i_) {
+      var from_ = id(rnd_.nextInt(TEST_SIZE));
+      var to_ = id(rnd_.nextInt(TEST_SIZE));
+      if(from_.equals(to_))
+        continue;
+      if(reachable(plain_, to_, true).contains(from_)) {
+        var ex_ = assertThrowsExactly(
+            UncheckedDependencyCycleException.class,
+            () -> index_.addDependency(from_, to_));
+        var cycle_ = ex_.getCycle();
+        assertEquals(from_, cycle_.get(0));
+        assertEquals(to_, cycle_.get(1));
+        assertEquals(from_, cycle_.get(cycle_.size() - 1));
+        for(int j_ = 1; j_ < cycle_.size() - 1; ++j_) {
+          var next_ = cycle_.get(j_ + 1);
+          var found_ = new boolean[] {false};
+          plain_.forEachSuccessor(
+              cycle_.get(j_), (id_, node_) -> found_[0] |= id_.equals(next_));
+          assertTrue(found_[0]);
+        }
+        ++rejected_;
+      }
+      else {
+        index_.checkDependency(from_, to_);
+        assertEquals(
+            plain_.addDependency(from_, to_),
+            index_.addDependency(from_, to_));
+      }
+    }
+    assertTrue(rejected_ > 0);
+    checkIndex(index_, plain_, TEST_SIZE);
+  }
+
+  @Test
+  public void cyclicBase() {
+    var graph_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < 4; ++i_)
+      graph_.addNode(id(i_), i_);
+    graph_.addDependency(id(0), id(1));
+    graph_.addDependency(id(1), id(2));
+    graph_.addDependency(id(2), id(3));
+    graph_.addDependency(id(3), id(1));
+
+    var ex_ = assertThrowsExactly(
+        DependencyCycleException.class,
+        () -> new ReachabilityIndex<>(graph_));
+    var cycle_ = ex_.getCycle();
+    assertEquals(4, cycle_.size());
+    assertEquals(cycle_.get(0), cycle_.get(3));
+    assertFalse(cycle_.contains(id(0)));
+  }
+}
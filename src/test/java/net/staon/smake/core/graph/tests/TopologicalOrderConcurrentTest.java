@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import net.staon.smake.core.exception.SMakeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopologicalOrderConcurrentTest {
+  private static Graph<Integer> createRandomGraph(int size_, int edges_) {
+    var graph_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < size_; ++i_) {
+      graph_.addNode(new ID(Integer.toString(i_)), i_);
+    }
+
+    var rnd_ = new Random(1234);
+    for(int i_ = 0; i_ < edges_; ++i_) {
+      var i1_ = rnd_.nextInt(size_);
+      var i2_ = rnd_.nextInt(size_);
+      if(i1_ == i2_)
+        continue;
+      graph_.addDependency(
+          new ID(Integer.toString(Math.max(i1_, i2_))),
+          new ID(Integer.toString(Math.min(i1_, i2_))));
+    }
+    return graph_;
+  }
+
+  @Test
+  public void parallelProcessing() throws SMakeException, InterruptedException {
+    final int TEST_SIZE = 2000;
+    var graph_ = createRandomGraph(TEST_SIZE, TEST_SIZE * 5);
+
+    var finished_ = ConcurrentHashMap.<Integer>newKeySet();
+    var violations_ = new AtomicInteger(0);
+    var order_ = new TopologicalOrderConcurrent<>(graph_);
+    order_.process(8, (data_) -> {
+      /* -- all dependencies must be already finished */
+      graph_.forEachSuccessor(new ID(Integer.toString(data_)), (id_, node_) -> {
+        if(!finished_.contains(node_.getData()))
+          violations_.incrementAndGet();
+      });
+      finished_.add(data_);
+    });
+
+    assertEquals(0, violations_.get());
+    assertEquals(TEST_SIZE, finished_.size());
+    assertTrue(order_.isEmpty());
+  }
+
+  @Test
+  public void waitingWorkers() throws Exception {
+    Graph<String> graph_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    graph_.addNode(id1_, "Node 1");
+    graph_.addNode(id2_, "Node 2");
+    graph_.addDependency(id2_, id1_);
+
+    var order_ = new TopologicalOrderConcurrent<>(graph_);
+    var leaf_ = order_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    assertNull(order_.tryCutLeaf());
+
+    /* -- the second worker is blocked until the first leaf is closed */
+    var result_ = new String[1];
+    var worker_ = new Thread(() -> {
+      try {
+        var leaf2_ = order_.cutLeaf();
+        result_[0] = leaf2_.getData();
+        leaf2_.closeLeaf();
+        assertNull(order_.cutLeaf());
+      }
+      catch(DependencyCycleException | InterruptedException exc_) {
+        result_[0] = null;
+      }
+    });
+    worker_.start();
+    Thread.sleep(50);
+    assertNull(result_[0]);
+
+    leaf_.closeLeaf();
+    worker_.join();
+    assertEquals("Node 2", result_[0]);
+    assertTrue(order_.isEmpty());
+  }
+
+  @Test
+  public void failingProcessor() {
+    var graph_ = createRandomGraph(100, 300);
+    var order_ = new TopologicalOrderConcurrent<>(graph_);
+    assertThrowsExactly(DependencyCycleException.class, () -> {
+      order_.process(4, (data_) -> {
+        if(data_ == 50)
+          throw new DependencyCycleException();
+      });
+    });
+    assertFalse(order_.isEmpty());
+  }
+
+  @Test
+  public void batchDependencies() throws DependencyCycleException {
+    var graph_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < 5; ++i_)
+      graph_.addNode(new ID(Integer.toString(i_)), i_);
+
+    var order_ = new TopologicalOrder<>(graph_);
+    var leaf_ = order_.cutLeaf();
+    var cut_ = leaf_.getData();
+    leaf_.closeLeaf();
+
+    /* -- the last white node depends on all other nodes (one of them
+     *    is already finished, one dependency is doubled) */
+    var from_ = cut_ == 4 ? 3 : 4;
+    var targets_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < 5; ++i_) {
+      if(i_ != from_)
+        targets_.add(new ID(Integer.toString(i_)));
+    }
+    targets_.add(targets_.get(0));
+    assertEquals(4, order_.addDependencies(new ID(Integer.toString(from_)), targets_));
+    assertEquals(4, graph_.getNode(new ID(Integer.toString(from_))).getOutDegree());
+
+    var processed_ = new ArrayList<Integer>();
+    while(!order_.isEmpty()) {
+      leaf_ = order_.cutLeaf();
+      assertNotNull(leaf_);
+      processed_.add(leaf_.getData());
+      leaf_.closeLeaf();
+    }
+    assertEquals(4, processed_.size());
+    assertEquals(from_, processed_.get(processed_.size() - 1));
+  }
+
+  @Test
+  public void discoveredDependencies() throws SMakeException, InterruptedException {
+    final int TEST_SIZE = 2000;
+
+    /* -- a binary tree, node i depends on node i / 2 */
+    var graph_ = new GraphFull<Integer>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_)
+      graph_.addNode(new ID(Integer.toString(i_)), i_);
+    for(int i_ = 1; i_ < TEST_SIZE; ++i_) {
+      graph_.addDependency(
+          new ID(Integer.toString(i_)), new ID(Integer.toString(i_ / 2)));
+    }
+
+    /* -- Processing of a node discovers new dependencies of its child
+     *    (which cannot be cut yet). The dependencies lead to lower
+     *    nodes, so no cycle can arise. */
+    var finish_order_ = Collections.synchronizedList(new ArrayList<Integer>());
+    var order_ = new TopologicalOrderConcurrent<>(graph_);
+    order_.process(8, (data_) -> {
+      var child_ = 2 * data_ + 1;
+      if(child_ < TEST_SIZE) {
+        var rnd_ = new Random(data_);
+        var targets_ = new ArrayList<ID>();
+        for(int i_ = 0; i_ < 20; ++i_)
+          targets_.add(new ID(Integer.toString(rnd_.nextInt(child_))));
+        order_.addDependencies(new ID(Integer.toString(child_)), targets_);
+      }
+      finish_order_.add(data_);
+    });
+
+    assertEquals(TEST_SIZE, finish_order_.size());
+    var positions_ = new int[TEST_SIZE];
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_)
+      positions_[finish_order_.get(i_)] = i_;
+    graph_.forEachNode((id_, node_) -> {
+      graph_.forEachSuccessor(id_, (succ_id_, succ_) -> {
+        assertTrue(positions_[succ_.getData()] < positions_[node_.getData()]);
+      });
+    });
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopologicalOrderIndexedTest {
+  @Test
+  public void simpleOrder() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    var id3_ = new ID("3");
+    graph_.addNode(id1_, "Node 1");
+    graph_.addNode(id2_, "Node 2");
+    graph_.addNode(id3_, "Node 3");
+    graph_.addDependency(id3_, id1_);
+    graph_.addDependency(id3_, id2_);
+    graph_.addDependency(id2_, id1_);
+
+    var to_ = new TopologicalOrderIndexed<>(GraphCompact.freeze(graph_));
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 2", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 3", leaf_.getData());
+    assertFalse(to_.isEmpty());
+    leaf_.closeLeaf();
+    assertNull(to_.cutLeaf());
+    assertTrue(to_.isEmpty());
+  }
+
+  @Test
+  public void cycle() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    var id3_ = new ID("3");
+    graph_.addNode(id1_, "Node 1");
+    graph_.addNode(id2_, "Node 2");
+    graph_.addNode(id3_, "Node 3");
+    graph_.addDependency(id2_, id1_);
+    graph_.addDependency(id3_, id2_);
+    graph_.addDependency(id2_, id3_);
+
+    var to_ = new TopologicalOrderIndexed<>(GraphCompact.freeze(graph_));
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    var exception_ = assertThrowsExactly(
+        DependencyCycleException.class, to_::cutLeaf);
+    assertEquals(List.of(id2_, id3_, id2_), exception_.getCycle());
+    assertFalse(to_.isEmpty());
+  }
+
+  @Test
+  public void criticalPath() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var root_ = new ID("root");
+    graph_.addNode(root_, "Root");
+    for(int i_ = 0; i_ < 5; ++i_) {
+      var id_ = new ID("leaf" + i_);
+      graph_.addNode(id_, "Leaf " + i_);
+      graph_.addDependency(root_, id_);
+    }
+    var chain1_ = new ID("chain1");
+    var chain2_ = new ID("chain2");
+    graph_.addNode(chain1_, "Chain 1");
+    graph_.addNode(chain2_, "Chain 2");
+    graph_.addDependency(root_, chain2_);
+    graph_.addDependency(chain2_, chain1_);
+    var compact_ = GraphCompact.freeze(graph_);
+
+    /* -- the beginning of the chain must be returned first */
+    var to_ = new TopologicalOrderIndexed<>(compact_, NodeWeight.uniform());
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Chain 1", leaf_.getData());
+
+    /* -- a heavy leaf has priority over the chain */
+    var weights_ = new HashMap<ID, Long>();
+    weights_.put(new ID("leaf2"), 10L);
+    to_ = new TopologicalOrderIndexed<>(compact_, NodeWeight.fromMap(weights_, 1));
+    leaf_ = to_.cutLeaf();
+    assertEquals("Leaf 2", leaf_.getData());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Chain 1", leaf_.getData());
+  }
+
+  @Test
+  public void randomGraph() throws DependencyCycleException {
+    final int TEST_SIZE = 1000;
+
+    Graph<Integer> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, i_);
+    }
+    var rnd_ = new Random(15);
+    for(int i_ = 0; i_ < TEST_SIZE * 10; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        graph_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+
+    /* -- cut the graph with several leaves opened at once */
+    var to_ = new TopologicalOrderIndexed<>(
+        GraphCompact.freeze(graph_), NodeWeight.uniform());
+    var finished_ = new HashSet<Integer>();
+    var opened_ = new ArrayDeque<LeafOrder.Leaf<Integer>>();
+    while(!to_.isEmpty()) {
+      LeafOrder.Leaf<Integer> leaf_;
+      while(opened_.size() < 4 && (leaf_ = to_.cutLeaf()) != null) {
+        graph_.forEachSuccessor(ids_.get(leaf_.getData()), (id_, node_) -> {
+          assertTrue(finished_.contains(node_.getData()));
+        });
+        opened_.add(leaf_);
+      }
+      leaf_ = opened_.poll();
+      assertNotNull(leaf_);
+      leaf_.closeLeaf();
+      finished_.add(leaf_.getData());
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+
+  @Test
+  public void retireNodes() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < 6; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, "Node " + i_);
+    }
+    /* -- 5 -> 4 -> {3, 2}, 3 -> 1 -> 0, 2 -> 0 */
+    graph_.addDependency(ids_.get(5), ids_.get(4));
+    graph_.addDependency(ids_.get(4), ids_.get(3));
+    graph_.addDependency(ids_.get(4), ids_.get(2));
+    graph_.addDependency(ids_.get(3), ids_.get(1));
+    graph_.addDependency(ids_.get(1), ids_.get(0));
+    graph_.addDependency(ids_.get(2), ids_.get(0));
+
+    var to_ = new TopologicalOrderIndexed<>(GraphCompact.freeze(graph_));
+    to_.retireNodes(Set.of(ids_.get(0), ids_.get(1), ids_.get(2)));
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 3", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 4", leaf_.getData());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 5", leaf_.getData());
+    leaf_.closeLeaf();
+    assertNull(to_.cutLeaf());
+    assertTrue(to_.isEmpty());
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.graph.tests;
+
+import net.staon.smake.core.dependencies.*;
+import net.staon.smake.core.exception.DependencyCycleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopologicalOrderKahnTest {
+  @Test
+  public void simpleOrder() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    var id3_ = new ID("3");
+    graph_.addNode(id1_, "Node 1");
+    graph_.addNode(id2_, "Node 2");
+    graph_.addNode(id3_, "Node 3");
+    graph_.addDependency(id3_, id1_);
+    graph_.addDependency(id3_, id2_);
+    graph_.addDependency(id2_, id1_);
+
+    var to_ = new TopologicalOrderKahn<>(graph_);
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 2", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    leaf_ = to_.cutLeaf();
+    assertEquals("Node 3", leaf_.getData());
+    assertFalse(to_.isEmpty());
+    leaf_.closeLeaf();
+    assertNull(to_.cutLeaf());
+    assertTrue(to_.isEmpty());
+  }
+
+  @Test
+  public void cycle() throws DependencyCycleException {
+    Graph<String> graph_ = new GraphFull<>();
+    var id1_ = new ID("1");
+    var id2_ = new ID("2");
+    var id3_ = new ID("3");
+    graph_.addNode(id1_, "Node 1");
+    graph_.addNode(id2_, "Node 2");
+    graph_.addNode(id3_, "Node 3");
+    graph_.addDependency(id2_, id1_);
+    graph_.addDependency(id3_, id2_);
+    graph_.addDependency(id2_, id3_);
+
+    var to_ = new TopologicalOrderKahn<>(graph_);
+    var leaf_ = to_.cutLeaf();
+    assertEquals("Node 1", leaf_.getData());
+    assertNull(to_.cutLeaf());
+    leaf_.closeLeaf();
+    assertThrowsExactly(DependencyCycleException.class, to_::cutLeaf);
+    assertFalse(to_.isEmpty());
+  }
+
+  @Test
+  public void randomDynamic() throws DependencyCycleException {
+    final int TEST_SIZE = 1000;
+
+    Graph<Integer> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, i_);
+    }
+    var rnd_ = new Random();
+    for(int i_ = 0; i_ < TEST_SIZE * 20; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        graph_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+
+    /* -- process the graph, add new dependencies between not yet cut
+     *    nodes in the meantime */
+    var to_ = new TopologicalOrderKahn<>(graph_);
+    var cut_ = new HashSet<Integer>();
+    var finished_ = new HashSet<Integer>();
+    var opened_ = new ArrayDeque<LeafOrder.Leaf<Integer>>();
+    while(!to_.isEmpty()) {
+      LeafOrder.Leaf<Integer> leaf_;
+      while((leaf_ = to_.cutLeaf()) != null) {
+        var data_ = leaf_.getData();
+        graph_.forEachSuccessor(ids_.get(data_), (id_, node_) -> {
+          assertTrue(finished_.contains(node_.getData()));
+        });
+        cut_.add(data_);
+        opened_.add(leaf_);
+      }
+
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_ && !cut_.contains(i2_))
+        to_.addDependency(ids_.get(i2_), ids_.get(i1_));
+
+      var closed_ = opened_.poll();
+      assertNotNull(closed_);
+      closed_.closeLeaf();
+      finished_.add(closed_.getData());
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+
+  @Test
+  public void indexedGraph() throws DependencyCycleException {
+    final int TEST_SIZE = 1000;
+
+    Graph<Integer> graph_ = new GraphFull<>();
+    var ids_ = new ArrayList<ID>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var id_ = new ID(Integer.toString(i_));
+      ids_.add(id_);
+      graph_.addNode(id_, i_);
+    }
+    var rnd_ = new Random(17);
+    for(int i_ = 0; i_ < TEST_SIZE * 20; ++i_) {
+      var i1_ = rnd_.nextInt(TEST_SIZE);
+      var i2_ = rnd_.nextInt(TEST_SIZE);
+      if(i1_ < i2_)
+        graph_.addDependency(ids_.get(i2_), ids_.get(i1_));
+    }
+
+    /* -- the order works over the dense indices of the compact graph */
+    var compact_ = GraphCompact.freeze(graph_);
+    var to_ = new TopologicalOrderKahn<>(compact_);
+    var finished_ = new HashSet<Integer>();
+    var opened_ = new ArrayDeque<LeafOrder.Leaf<Integer>>();
+    while(!to_.isEmpty()) {
+      LeafOrder.Leaf<Integer> leaf_;
+      while((leaf_ = to_.cutLeaf()) != null) {
+        compact_.forEachSuccessor(ids_.get(leaf_.getData()), (id_, node_) -> {
+          assertTrue(finished_.contains(node_.getData()));
+        });
+        opened_.add(leaf_);
+      }
+
+      var closed_ = opened_.poll();
+      assertNotNull(closed_);
+      closed_.closeLeaf();
+      finished_.add(closed_.getData());
+    }
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+
+  @Test
+  public void concurrentWorkers() throws Exception {
+    final int TEST_SIZE = 1000;
+
+    Graph<Integer> graph_ = new GraphFull<>();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      graph_.addNode(new ID(Integer.toString(i_)), i_);
+    }
+    for(int i_ = 1; i_ < TEST_SIZE; ++i_) {
+      graph_.addDependency(
+          new ID(Integer.toString(i_)), new ID(Integer.toString(i_ / 2)));
+    }
+
+    var finished_ = Collections.synchronizedSet(new HashSet<Integer>());
+    var order_ = new TopologicalOrderConcurrent<>(new TopologicalOrderKahn<>(graph_));
+    order_.process(4, (data_) -> {
+      if(data_ > 0)
+        assertTrue(finished_.contains(data_ / 2));
+      finished_.add(data_);
+    });
+    assertEquals(TEST_SIZE, finished_.size());
+  }
+}
@@ -238,4 +238,63 @@ class BinomialHeapTest {
   
     assertTrue(heap_.isEmpty());
   }
-}
\ No newline at end of file
+  
+  @Test
+  public void insertAllAndMeld() {
+    /* -- generate random items, half of them into each heap */
+    var values_ = new ArrayList<Item>();
+    var rnd_ = new Random(14);
+    for(int i_ = 0; i_ < 10001; ++i_) {
+      values_.add(new Item(rnd_.nextInt()));
+    }
+    
+    Heap<Item> heap_ = new BinomialHeap<>(Comparator.comparingInt(i -> i.value));
+    Heap<Item> other_ = new BinomialHeap<>(Comparator.comparingInt(i -> i.value));
+    heap_.insert(values_.get(0));
+    heap_.insertAll(values_.subList(1, 5000));
+    other_.insertAll(values_.subList(5000, values_.size()));
+    heap_.meld(other_);
+    assertTrue(other_.isEmpty());
+    
+    /* -- the handles must have been moved too */
+    for(var value_ : values_) {
+      value_.value = rnd_.nextInt();
+      heap_.update(value_);
+    }
+    
+    /* -- check ordering in the heap */
+    values_.sort(Comparator.comparingInt(i -> i.value));
+    for(var value_ : values_) {
+      assertEquals(value_.value, heap_.getMin().value);
+      assertEquals(value_.value, heap_.pollMin().value);
+    }
+  
+    assertTrue(heap_.isEmpty());
+  }
+
+  @Test
+  public void remove() {
+    var values_ = new ArrayList<Item>();
+    var rnd_ = new Random(21);
+    for(int i_ = 0; i_ < 1000; ++i_) {
+      values_.add(new Item(rnd_.nextInt(500)));
+    }
+
+    /* -- remove every third item, the rest keeps the order */
+    Heap<Item> heap_ = new BinomialHeap<>(Comparator.comparingInt(i -> i.value));
+    heap_.insertAll(values_);
+    var kept_ = new ArrayList<Item>();
+    for(int i_ = 0; i_ < values_.size(); ++i_) {
+      if(i_ % 3 == 0)
+        heap_.remove(values_.get(i_));
+      else
+        kept_.add(values_.get(i_));
+    }
+
+    kept_.sort(Comparator.comparingInt(i -> i.value));
+    for(var value_ : kept_) {
+      assertEquals(value_.value, heap_.pollMin().value);
+    }
+    assertTrue(heap_.isEmpty());
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap.tests;
+
+import net.staon.smake.core.heap.BinomialHeap;
+import net.staon.smake.core.heap.DaryHeap;
+import net.staon.smake.core.heap.Heap;
+import net.staon.smake.core.heap.HeapIndexer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaryHeapTest {
+  private static class Item {
+    public int value;
+    public int heap_index = HeapIndexer.NOT_IN_HEAP;
+    public Item(int value_) {
+      value = value_;
+    }
+  }
+
+  private static final HeapIndexer<Item> INDEXER = new HeapIndexer<>() {
+    @Override
+    public int getHeapIndex(Item item_) {
+      return item_.heap_index;
+    }
+
+    @Override
+    public void setHeapIndex(Item item_, int index_) {
+      item_.heap_index = index_;
+    }
+  };
+
+  private static Heap<Item> createHeap(int arity_) {
+    return new DaryHeap<>(arity_, Comparator.comparingInt(i -> i.value), INDEXER);
+  }
+
+  @Test
+  public void updateAllRevert() {
+    var heap_ = createHeap(DaryHeap.DEFAULT_ARITY);
+    var items_ = new ArrayList<Item>();
+    for(int i_ = 0; i_ < 7; ++i_) {
+      var item_ = new Item(7 - i_);
+      items_.add(item_);
+      heap_.insert(item_);
+    }
+    assertEquals(1, heap_.getMin().value);
+
+    for(int i_ = 0; i_ < 7; ++i_) {
+      items_.get(i_).value = i_;
+      heap_.update(items_.get(i_));
+    }
+    for(int i_ = 0; i_ < 7; ++i_) {
+      assertEquals(i_, heap_.getMin().value);
+      var item_ = heap_.pollMin();
+      assertEquals(i_, item_.value);
+      assertEquals(HeapIndexer.NOT_IN_HEAP, item_.heap_index);
+    }
+    assertTrue(heap_.isEmpty());
+
+    /* -- a polled item may be inserted again */
+    heap_.insert(items_.get(3));
+    assertSame(items_.get(3), heap_.pollMin());
+  }
+
+  @Test
+  public void randomTest() {
+    for(int arity_ = 2; arity_ <= 8; arity_ *= 2) {
+      /* -- generate random items */
+      var values_ = new ArrayList<Item>();
+      var rnd_ = new Random(arity_);
+      for(int i_ = 0; i_ < 10000; ++i_) {
+        values_.add(new Item(rnd_.nextInt()));
+      }
+
+      var heap_ = createHeap(arity_);
+      for(var value_ : values_) {
+        heap_.insert(value_);
+      }
+
+      /* -- update each value twice, decrease and increase the keys */
+      for(var value_ : values_) {
+        value_.value = rnd_.nextInt();
+        heap_.update(value_);
+      }
+      for(var value_ : values_) {
+        value_.value += rnd_.nextInt(2001) - 1000;
+        heap_.update(value_);
+      }
+
+      /* -- check ordering in the heap */
+      values_.sort(Comparator.comparingInt(i -> i.value));
+      for(var value_ : values_) {
+        assertEquals(value_.value, heap_.getMin().value);
+        assertEquals(value_.value, heap_.pollMin().value);
+      }
+      assertTrue(heap_.isEmpty());
+    }
+  }
+
+  @Test
+  public void insertAllAndMeld() {
+    var values_ = new ArrayList<Item>();
+    var rnd_ = new Random(14);
+    for(int i_ = 0; i_ < 10000; ++i_) {
+      values_.add(new Item(rnd_.nextInt()));
+    }
+
+    /* -- a bulk build, a few items into a big heap and a meld
+     *    of a binomial heap */
+    var heap_ = createHeap(DaryHeap.DEFAULT_ARITY);
+    heap_.insertAll(values_.subList(0, 6000));
+    heap_.insertAll(values_.subList(6000, 6010));
+    Heap<Item> other_ = new BinomialHeap<>(Comparator.comparingInt(i -> i.value));
+    other_.insertAll(values_.subList(6010, values_.size()));
+    heap_.meld(other_);
+    assertTrue(other_.isEmpty());
+
+    values_.sort(Comparator.comparingInt(i -> i.value));
+    for(var value_ : values_) {
+      assertEquals(value_.value, heap_.pollMin().value);
+    }
+    assertTrue(heap_.isEmpty());
+  }
+
+  @Test
+  public void remove() {
+    var values_ = new ArrayList<Item>();
+    var rnd_ = new Random(21);
+    for(int i_ = 0; i_ < 1000; ++i_) {
+      values_.add(new Item(rnd_.nextInt(500)));
+    }
+
+    /* -- remove every third item, the rest keeps the order */
+    var heap_ = createHeap(DaryHeap.DEFAULT_ARITY);
+    heap_.insertAll(values_);
+    var kept_ = new ArrayList<Item>();
+    for(int i_ = 0; i_ < values_.size(); ++i_) {
+      if(i_ % 3 == 0) {
+        heap_.remove(values_.get(i_));
+        assertEquals(HeapIndexer.NOT_IN_HEAP, values_.get(i_).heap_index);
+      }
+      else {
+        kept_.add(values_.get(i_));
+      }
+    }
+
+    kept_.sort(Comparator.comparingInt(i -> i.value));
+    for(var value_ : kept_) {
+      assertEquals(value_.value, heap_.pollMin().value);
+    }
+    assertTrue(heap_.isEmpty());
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap.tests;
+
+import net.staon.smake.core.heap.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiQueueHeapTest {
+  public static class Item {
+    public volatile int value;
+    public volatile int heap_index = HeapIndexer.NOT_IN_HEAP;
+    public Item(int value_) {
+      value = value_;
+    }
+  }
+
+  public static final HeapIndexer<Item> INDEXER = new HeapIndexer<>() {
+    @Override
+    public int getHeapIndex(Item item_) {
+      return item_.heap_index;
+    }
+
+    @Override
+    public void setHeapIndex(Item item_, int index_) {
+      item_.heap_index = index_;
+    }
+  };
+
+  public static final Comparator<Item> COMPARATOR =
+      Comparator.comparingInt(i -> i.value);
+
+  @Test
+  public void singleThread() {
+    var heap_ = new MultiQueueHeap<>(COMPARATOR, INDEXER, 2);
+    assertTrue(heap_.isEmpty());
+    assertNull(heap_.tryPollMin());
+
+    var items_ = new ArrayList<Item>();
+    var rnd_ = new Random(5);
+    for(int i_ = 0; i_ < 1000; ++i_) {
+      var item_ = new Item(rnd_.nextInt(100000));
+      items_.add(item_);
+      heap_.insert(item_);
+    }
+    assertEquals(1000, heap_.size());
+
+    /* -- update, then every item must be returned exactly once */
+    for(var item_ : items_) {
+      var value_ = rnd_.nextInt(100000);
+      heap_.update(item_, changed_ -> changed_.value = value_);
+    }
+    var polled_ = Collections.newSetFromMap(new IdentityHashMap<Item, Boolean>());
+    while(!heap_.isEmpty()) {
+      var item_ = heap_.tryPollMin();
+      assertNotNull(item_);
+      assertTrue(polled_.add(item_));
+      assertEquals(HeapIndexer.NOT_IN_HEAP, item_.heap_index);
+    }
+    assertEquals(1000, polled_.size());
+    assertNull(heap_.tryPollMin());
+  }
+
+  /**
+   * Run a scheduler-like workload on a heap
+   *
+   * Each thread polls an item, changes it and inserts it back. All items
+   * must be present in the heap at the end.
+   *
+   * @return Duration of the workload in nanoseconds
+   */
+  public static long runWorkload(
+      ConcurrentHeap<Item> heap_, int threads_, int operations_)
+      throws InterruptedException {
+    var items_ = new ArrayList<Item>();
+    var rnd_ = new Random(1);
+    for(int i_ = 0; i_ < 1000; ++i_) {
+      var item_ = new Item(rnd_.nextInt(1000));
+      items_.add(item_);
+      heap_.insert(item_);
+    }
+
+    var errors_ = new AtomicLong(0);
+    var workers_ = new ArrayList<Thread>();
+    var start_ = System.nanoTime();
+    for(int t_ = 0; t_ < threads_; ++t_) {
+      var thread_ = new Thread(() -> {
+        var local_rnd_ = new Random();
+        for(int i_ = 0; i_ < operations_; ++i_) {
+          var item_ = heap_.tryPollMin();
+          if(item_ == null) {
+            /* -- each thread holds one item at most, so the heap
+             *    is never empty */
+            errors_.incrementAndGet();
+            continue;
+          }
+          item_.value += local_rnd_.nextInt(1000);
+          heap_.insert(item_);
+        }
+      });
+      workers_.add(thread_);
+      thread_.start();
+    }
+    for(var thread_ : workers_)
+      thread_.join();
+    var duration_ = System.nanoTime() - start_;
+
+    /* -- all items must be still present exactly once */
+    var polled_ = Collections.newSetFromMap(new IdentityHashMap<Item, Boolean>());
+    Item item_;
+    while((item_ = heap_.tryPollMin()) != null)
+      assertTrue(polled_.add(item_));
+    assertTrue(heap_.isEmpty());
+    assertEquals(items_.size(), polled_.size());
+    assertEquals(0, errors_.get());
+
+    return duration_;
+  }
+
+  @Test
+  public void concurrentConservation() throws InterruptedException {
+    final int THREADS = 4;
+    final int OPERATIONS = 20000;
+
+    runWorkload(
+        new SynchronizedHeap<>(new BinomialHeap<>(COMPARATOR)),
+        THREADS, OPERATIONS);
+    runWorkload(
+        new MultiQueueHeap<>(COMPARATOR, INDEXER, THREADS),
+        THREADS, OPERATIONS);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.heap.tests;
+
+import net.staon.smake.core.heap.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import static net.staon.smake.core.heap.tests.MultiQueueHeapTest.*;
+
+/**
+ * Throughput of the concurrent heaps
+ *
+ * The benchmark is excluded from the regular test run. Run it by
+ * <code>mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none</code>.
+ */
+@Tag("benchmark")
+public class MultiQueueHeapThroughputTest {
+  private static final int THREADS = 8;
+  private static final int OPERATIONS = 200000;
+  private static final int ROUNDS = 5;
+
+  private static long measure(ConcurrentHeap<Item> heap_)
+      throws InterruptedException {
+    var duration_ = runWorkload(heap_, THREADS, OPERATIONS);
+    return (long) OPERATIONS * THREADS * 1_000_000_000L / Math.max(1, duration_);
+  }
+
+  @Test
+  public void throughputUnderContention(TestReporter reporter_)
+      throws InterruptedException {
+    /* -- the first round warms the JIT up */
+    for(int round_ = 0; round_ <= ROUNDS; ++round_) {
+      var synchronized_ = measure(
+          new SynchronizedHeap<>(new BinomialHeap<>(COMPARATOR)));
+      var multiqueue_ = measure(
+          new MultiQueueHeap<>(COMPARATOR, INDEXER, THREADS));
+      if(round_ > 0) {
+        reporter_.publishEntry("synchronized ops/s", Long.toString(synchronized_));
+        reporter_.publishEntry("multiqueue ops/s", Long.toString(multiqueue_));
+      }
+    }
+  }
+}
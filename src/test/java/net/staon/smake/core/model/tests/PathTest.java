@@ -77,4 +77,36 @@ public class PathTest {
     assertEquals(new Path("src/main.cpp/extension/submodule/weird-project"), Path.join(p1_, p2_));
     assertEquals(new Path("extension/submodule/weird-project/src/main.cpp"), Path.join(p2_, p1_));
   }
+  
+  @Test
+  public void internedPaths() throws InvalidPathException {
+    var p1_ = new Path("src/lib/main.cpp");
+    var p2_ = new Path("src").join(new Path("lib/main.cpp"));
+    assertEquals(p1_, p2_);
+    assertEquals(p1_.hashCode(), p2_.hashCode());
+    assertEquals("src/lib/main.cpp", p2_.asString());
+    assertEquals(new Path("src/lib"), p1_.getBasedir());
+    assertEquals(new Path("src/lib").hashCode(), p1_.getBasedir().hashCode());
+    assertNotEquals(new Path("src/lib"), new Path("lib/src"));
+    assertNotEquals(new Path("src/lib"), new Path("src/lib/main.cpp"));
+    assertNotEquals(new Path(), new Path("src"));
+    assertEquals(new Path(), new Path("src").getBasedir());
+  }
+  
+  @Test
+  public void collectedPaths() throws InvalidPathException {
+    /* -- the retained path keeps its node, the dropped ones may be
+     *    collected and interned again */
+    var retained_ = new Path("gc/retained/main.cpp");
+    for(int i_ = 0; i_ < 10000; ++i_)
+      new Path("gc/dropped/file" + i_ + ".cpp");
+    System.gc();
+    for(int i_ = 0; i_ < 100; ++i_) {
+      var path_ = new Path("gc/dropped/file" + i_ + ".cpp");
+      assertEquals(path_, new Path("gc/dropped").join(new Path("file" + i_ + ".cpp")));
+      assertEquals("gc/dropped/file" + i_ + ".cpp", path_.asString());
+    }
+    assertEquals(retained_, new Path("gc/retained/main.cpp"));
+    assertEquals(new Path("gc/retained"), retained_.getBasedir());
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver.tests;
+
+import net.staon.smake.core.resolver.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternTest {
+  @Test
+  public void globs() {
+    var cpp_ = new PatternGlob("*.cpp");
+    assertTrue(cpp_.matches("main.cpp"));
+    assertTrue(cpp_.matches(".cpp"));
+    assertFalse(cpp_.matches("src/main.cpp"));
+    assertFalse(cpp_.matches("main.cpp.o"));
+    assertFalse(cpp_.matches(null));
+    
+    var deep_ = new PatternGlob("src/**/*.cpp");
+    assertTrue(deep_.matches("src/main.cpp"));
+    assertTrue(deep_.matches("src/lib/main.cpp"));
+    assertTrue(deep_.matches("src/lib/util/main.cpp"));
+    assertFalse(deep_.matches("lib/main.cpp"));
+    assertFalse(deep_.matches("src/main.h"));
+    
+    var any_ = new PatternGlob("**.h");
+    assertTrue(any_.matches("a/b/c.h"));
+    assertTrue(any_.matches(".h"));
+    
+    var class_ = new PatternGlob("test?_[a-c0-9].[!o]");
+    assertTrue(class_.matches("test1_b.c"));
+    assertTrue(class_.matches("testX_7.h"));
+    assertFalse(class_.matches("test1_d.c"));
+    assertFalse(class_.matches("test1_b.o"));
+    assertFalse(class_.matches("test/_b.c"));
+    
+    var escaped_ = new PatternGlob("a\\*b[");
+    assertTrue(escaped_.matches("a*b["));
+    assertFalse(escaped_.matches("axb["));
+  }
+  
+  @Test
+  public void regex() {
+    var regex_ = new PatternRegex("src/.*\\.(cpp|cc)");
+    assertTrue(regex_.matches("src/main.cpp"));
+    assertTrue(regex_.matches("src/lib/main.cc"));
+    assertFalse(regex_.matches("src/main.c"));
+    assertFalse(regex_.matches(null));
+  }
+  
+  @Test
+  public void patternSet() {
+    var patterns_ = List.<Pattern>of(
+        new PatternGlob("*.cpp"),
+        new PatternGlob("src/**/*.cpp"),
+        new PatternExact("src/main.cpp"),
+        new PatternSuffix(".h"),
+        new PatternRegex(".*/util\\..*"),
+        new PatternGlob("**"),
+        new PatternGlob("src/*"),
+        new PatternSuffix(""),
+        new PatternNull());
+    var set_ = new PatternSet();
+    for(var pattern_ : patterns_)
+      set_.addPattern(pattern_);
+    
+    var texts_ = new ArrayList<String>(List.of(
+        "main.cpp", "src/main.cpp", "src/lib/main.cpp", "src/util.h",
+        "lib/util.cpp", "src", "", "main.h"));
+    texts_.add(null);
+    for(int round_ = 0; round_ < 2; ++round_) {
+      for(var text_ : texts_) {
+        var expected_ = new ArrayList<Integer>();
+        for(int i_ = 0; i_ < patterns_.size(); ++i_) {
+          if(text_ != null || !(patterns_.get(i_) instanceof PatternExact
+              || patterns_.get(i_) instanceof PatternSuffix)) {
+            if(patterns_.get(i_).matches(text_))
+              expected_.add(i_);
+          }
+        }
+        var found_ = new ArrayList<Integer>();
+        set_.forEachMatch(text_, found_::add);
+        found_.sort(null);
+        assertEquals(expected_, found_, "text " + text_);
+      }
+    }
+  }
+}
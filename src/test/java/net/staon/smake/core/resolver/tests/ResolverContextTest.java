@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver.tests;
+
+import net.staon.smake.core.exception.DuplicatedResourceException;
+import net.staon.smake.core.exception.InvalidPathException;
+import net.staon.smake.core.exception.SMakeException;
+import net.staon.smake.core.execution.*;
+import net.staon.smake.core.model.*;
+import net.staon.smake.core.resolver.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolverContextTest {
+  private static class Product implements ProductSpec {
+    private final Resource resource;
+    
+    public Product(Resource resource_) {
+      resource = resource_;
+    }
+    
+    @Override
+    public Resource getProductResource() {
+      return resource;
+    }
+    
+    @Override
+    public String getProductType() {
+      return "program";
+    }
+    
+    @Override
+    public Path mangleResourcePath(Path path_) {
+      return path_;
+    }
+  }
+  
+  private static class ProgramResolver implements ArtefactResolver {
+    @Override
+    public void resolveArtefact(ResolverContext context_, Artefact artefact_) {
+      try {
+        var resource_ = context_.createTargetResource(
+            new Path(artefact_.getName()), "binary");
+        context_.registerArtefactProduct(new Product(resource_));
+      }
+      catch(RuntimeException | Error exc_) {
+        throw exc_;
+      }
+      catch(Throwable exc_) {
+        throw new RuntimeException(exc_);
+      }
+    }
+  }
+  
+  private static ResolverLayer createResolvers(Map<String, Integer> resolved_) {
+    var layer_ = ResolverLayer.createConfigLayer(null);
+    layer_.addArtefactResolver("program", new ProgramResolver());
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact(ResolverContext.SOURCE_TYPE),
+            new PatternSuffix(".cpp"),
+            new PatternExact(ResolverContext.UNKNOWN_CONTENT)),
+        (context_, resource_) -> resolved_.merge(
+            resource_.getID().getPath().asString(), 1, Integer::sum));
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact(ResolverContext.TARGET_TYPE),
+            new PatternSuffix(""),
+            new PatternExact("binary")),
+        (context_, resource_) -> resolved_.merge(
+            resource_.getID().getPath().asString(), 1, Integer::sum));
+    return layer_;
+  }
+  
+  private static Project createProject(int artefacts_, boolean duplicated_)
+      throws InvalidPathException {
+    var project_ = new Project("test");
+    var block_ = new ProjectBlock();
+    project_.addChild(block_);
+    for(int i_ = 0; i_ < artefacts_; ++i_) {
+      var artefact_ = new Artefact(
+          duplicated_ && i_ == artefacts_ - 1 ? "app0" : "app" + i_,
+          "program");
+      for(int j_ = 0; j_ < 10; ++j_)
+        artefact_.addSource(new Source(new Path("app" + i_ + "/src" + j_ + ".cpp")));
+      artefact_.addSource(new Source(new Path("common.cpp")));
+      if(i_ % 2 == 0)
+        project_.addChild(artefact_);
+      else
+        block_.addChild(artefact_);
+    }
+    return project_;
+  }
+  
+  private static TreeSet<String> resourceNames(ResourceMap map_) {
+    var names_ = new TreeSet<String>();
+    map_.forEachResource(resource_ -> names_.add(resource_.getID().toString()));
+    return names_;
+  }
+  
+  @Test
+  public void parallelResolution() throws SMakeException {
+    final int ARTEFACTS = 50;
+    
+    var sequential_resolved_ = new ConcurrentHashMap<String, Integer>();
+    var sequential_map_ = new ResourceMap();
+    new ResolverContext(createResolvers(sequential_resolved_), sequential_map_)
+        .resolveProject(createProject(ARTEFACTS, false));
+    
+    var parallel_resolved_ = new ConcurrentHashMap<String, Integer>();
+    var parallel_map_ = new ResourceMapConcurrent();
+    var pool_ = new ForkJoinPool(4);
+    try {
+      new ResolverContext(
+          createResolvers(parallel_resolved_), parallel_map_, pool_)
+          .resolveProject(createProject(ARTEFACTS, false));
+    }
+    finally {
+      pool_.shutdown();
+    }
+    
+    /* -- ARTEFACTS products, 10 sources per artefact and one shared source */
+    assertEquals(ARTEFACTS * 11 + 1, sequential_map_.getResourceCount());
+    assertEquals(
+        resourceNames(sequential_map_),
+        resourceNames(parallel_map_.createResourceMap()));
+    assertEquals(sequential_resolved_, parallel_resolved_);
+    assertEquals(ARTEFACTS, parallel_resolved_.get("common.cpp"));
+  }
+  
+  @Test
+  public void duplicatedProduct() throws InvalidPathException {
+    var pool_ = new ForkJoinPool(4);
+    try {
+      var context_ = new ResolverContext(
+          createResolvers(new ConcurrentHashMap<>()), new ResourceMapConcurrent(), pool_);
+      var project_ = createProject(20, true);
+      var exc_ = assertThrows(
+          RuntimeException.class, () -> context_.resolveProject(project_));
+      assertInstanceOf(DuplicatedResourceException.class, exc_.getCause());
+    }
+    finally {
+      pool_.shutdown();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver.tests;
+
+import net.staon.smake.core.exception.InvalidPathException;
+import net.staon.smake.core.execution.Resource;
+import net.staon.smake.core.execution.ResourcePhysical;
+import net.staon.smake.core.model.Artefact;
+import net.staon.smake.core.model.Path;
+import net.staon.smake.core.resolver.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolverLayerTest {
+  private static class NamedResolver
+      implements ResourceResolver, ArtefactResolver {
+    private final String name;
+    
+    public NamedResolver(String name_) {
+      name = name_;
+    }
+    
+    @Override
+    public void resolveResource(ResolverContext context_, Resource resource_) {
+    }
+    
+    @Override
+    public void resolveArtefact(ResolverContext context_, Artefact artefact_) {
+    }
+    
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+  
+  private static List<String> search(ResolverLayer layer_, Resource resource_) {
+    var groups_ = new ResourceResolverGroups();
+    layer_.searchResourceResolvers(groups_, resource_);
+    var result_ = new ArrayList<String>();
+    for(var resolver_ : groups_)
+      result_.add(resolver_.toString());
+    return result_;
+  }
+  
+  private static ResourceMask fileMask(String suffix_) {
+    return new ResourceMask(
+        new PatternExact("file"),
+        new PatternSuffix(suffix_),
+        new PatternSuffix(""));
+  }
+  
+  @Test
+  public void cachedLookups() throws InvalidPathException {
+    var config_ = ResolverLayer.createConfigLayer(null);
+    config_.addResourceResolver(fileMask(".cpp"), "compiler", new NamedResolver("gcc"));
+    var project_ = ResolverLayer.createProjectLayer(config_);
+    project_.addResourceResolver(fileMask("main.cpp"), new NamedResolver("main"));
+    
+    var main_ = new ResourcePhysical("file", new Path("src/main.cpp"), "text/x-c");
+    var util_ = new ResourcePhysical("file", new Path("src/util.cpp"), "text/x-c");
+    var other_main_ = new ResourcePhysical("file", new Path("lib/main.cpp"), "text/x-c");
+    assertEquals(List.of("gcc", "main"), search(project_, main_));
+    assertEquals(List.of("gcc"), search(project_, util_));
+    assertEquals(List.of("gcc", "main"), search(project_, other_main_));
+    assertEquals(List.of("gcc"), search(config_, main_));
+    
+    /* -- a group registered in the nested layer wins */
+    project_.addResourceResolver(fileMask(".cpp"), "compiler", new NamedResolver("clang"));
+    assertEquals(List.of("clang", "main"), search(project_, main_));
+    assertEquals(List.of("gcc"), search(config_, main_));
+    
+    /* -- the cache of the nested layer is dropped by an addition
+     *    into the parent */
+    config_.addResourceResolver(fileMask("util.cpp"), new NamedResolver("util"));
+    assertEquals(List.of("clang", "util"), search(project_, util_));
+    
+    /* -- exact path pattern needs the whole path */
+    config_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact("file"),
+            new PatternExact("lib/main.cpp"),
+            new PatternSuffix("")),
+        new NamedResolver("lib"));
+    assertEquals(List.of("clang", "main"), search(project_, main_));
+    assertEquals(List.of("clang", "main", "lib"), search(project_, other_main_));
+  }
+  
+  @Test
+  public void artefactLookups() {
+    var config_ = ResolverLayer.createConfigLayer(null);
+    var gcc_ = new NamedResolver("gcc");
+    config_.addArtefactResolver("program", gcc_);
+    var project_ = ResolverLayer.createProjectLayer(config_);
+    var program_ = new Artefact("app", "program");
+    var library_ = new Artefact("lib", "library");
+    assertSame(gcc_, project_.searchArtefactResolvers(program_));
+    assertNull(project_.searchArtefactResolvers(library_));
+    
+    var ar_ = new NamedResolver("ar");
+    config_.addArtefactResolver("library", ar_);
+    assertSame(ar_, project_.searchArtefactResolvers(library_));
+    
+    var clang_ = new NamedResolver("clang");
+    project_.addArtefactResolver("program", clang_);
+    assertSame(clang_, project_.searchArtefactResolvers(program_));
+    assertSame(gcc_, config_.searchArtefactResolvers(program_));
+  }
+}
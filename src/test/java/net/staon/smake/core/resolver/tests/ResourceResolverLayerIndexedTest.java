@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 Ondrej Starek (Staon)
+ *
+ * This file is part of smake2.
+ *
+ * SMake2 is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * smake2 is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with smake2.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.staon.smake.core.resolver.tests;
+
+import net.staon.smake.core.exception.InvalidPathException;
+import net.staon.smake.core.execution.Resource;
+import net.staon.smake.core.execution.ResourceID;
+import net.staon.smake.core.model.Path;
+import net.staon.smake.core.resolver.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceResolverLayerIndexedTest {
+  private static class NamedResolver implements ResourceResolver {
+    private final String name;
+    
+    public NamedResolver(String name_) {
+      name = name_;
+    }
+    
+    @Override
+    public void resolveResource(ResolverContext context_, Resource resource_) {
+    }
+    
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+  
+  private static List<String> search(
+      ResourceResolverLayer layer_, ResourceID id_, String content_type_) {
+    var groups_ = new ResourceResolverGroups();
+    layer_.searchResolvers(groups_, id_, content_type_);
+    var result_ = new ArrayList<String>();
+    for(var resolver_ : groups_)
+      result_.add(resolver_.toString());
+    return result_;
+  }
+  
+  @Test
+  public void simpleSearch() throws InvalidPathException {
+    var layer_ = new ResourceResolverLayerIndexed();
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact("file"),
+            new PatternSuffix(".cpp"),
+            new PatternSuffix("")),
+        "compiler",
+        new NamedResolver("gcc"));
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact("file"),
+            new PatternSuffix(".cpp"),
+            new PatternSuffix("")),
+        "compiler",
+        new NamedResolver("clang"));
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternExact("file"),
+            new PatternSuffix(""),
+            new PatternExact("text/x-c")),
+        new NamedResolver("indent"));
+    layer_.addResourceResolver(
+        new ResourceMask(
+            new PatternSuffix(""),
+            new PatternSuffix("main.cpp"),
+            new PatternSuffix("")),
+        new NamedResolver("main"));
+    
+    var cpp_ = new ResourceID("file", new Path("src/main.cpp"));
+    assertEquals(List.of("gcc", "main"), search(layer_, cpp_, "text/plain"));
+    assertEquals(
+        List.of("gcc", "indent", "main"), search(layer_, cpp_, "text/x-c"));
+    var h_ = new ResourceID("file", new Path("src/main.h"));
+    assertEquals(List.of("indent"), search(layer_, h_, "text/x-c"));
+    var dir_ = new ResourceID("dir", new Path("src/main.cpp"));
+    assertEquals(List.of("main"), search(layer_, dir_, "text/x-c"));
+  }
+  
+  @Test
+  public void randomResolvers() throws InvalidPathException {
+    final int TEST_SIZE = 500;
+    final String[] TYPES = {"file", "dir", "lib"};
+    final String[] SUFFIXES = {"", ".cpp", ".h", "main.cpp", "p", ".c"};
+    final String[] CONTENTS = {"text/x-c", "text/plain", "binary"};
+    final String[] GROUPS = {null, "", "compiler", "linker"};
+    final String[] GLOBS = {"*.cpp", "src/**/*.c", "**/util.?", "*", "**"};
+    final String[] PATHS = {
+        "main.cpp", "src/main.cpp", "src/util.h", "src/util.c", "lib/app",
+        "doc/readme.txt", "cpp", "p"};
+    
+    var rnd_ = new Random(21);
+    var simple_ = new ResourceResolverLayerSimple();
+    var indexed_ = new ResourceResolverLayerIndexed();
+    for(int i_ = 0; i_ < TEST_SIZE; ++i_) {
+      var type_ = rnd_.nextBoolean()
+          ? new PatternExact(TYPES[rnd_.nextInt(TYPES.length)])
+          : new PatternSuffix("");
+      Pattern path_;
+      switch(rnd_.nextInt(6)) {
+        case 0 -> path_ = new PatternExact(PATHS[rnd_.nextInt(PATHS.length)]);
+        case 1 -> path_ = new PatternGlob(GLOBS[rnd_.nextInt(GLOBS.length)]);
+        case 2 -> path_ = new PatternRegex(".*/.*\\.(c|h)");
+        default -> path_ = new PatternSuffix(
+            SUFFIXES[rnd_.nextInt(SUFFIXES.length)]);
+      }
+      var content_ = rnd_.nextBoolean()
+          ? new PatternExact(CONTENTS[rnd_.nextInt(CONTENTS.length)])
+          : new PatternSuffix("");
+      var mask_ = new ResourceMask(type_, path_, content_);
+      var group_ = GROUPS[rnd_.nextInt(GROUPS.length)];
+      var resolver_ = new NamedResolver("r" + i_);
+      simple_.addResourceResolver(mask_, group_, resolver_);
+      indexed_.addResourceResolver(mask_, group_, resolver_);
+    }
+    
+    for(var type_ : TYPES) {
+      for(var path_ : PATHS) {
+        for(var content_ : CONTENTS) {
+          var id_ = new ResourceID(type_, new Path(path_));
+          assertEquals(
+              search(simple_, id_, content_), search(indexed_, id_, content_));
+        }
+      }
+    }
+  }
+}